@@ -0,0 +1,154 @@
+package com.tealium.digitalvelocity.agenda;
+
+import android.test.AndroidTestCase;
+import android.view.View;
+
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.event.ChangedEvent;
+import com.tealium.digitalvelocity.event.LoadedEvent;
+
+import junit.framework.Assert;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+public class AgendaAdapterTest extends AndroidTestCase {
+
+    private Category mKeynotes;
+    private Category mBreakouts;
+    private Category mWorkshops;
+    private Map<String, AgendaItem> mItems;
+    private AgendaAdapter mAdapter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mKeynotes = category("keynotes", 1);
+        mBreakouts = category("breakouts", 2);
+        mWorkshops = category("workshops", 3);
+
+        mItems = new LinkedHashMap<>();
+        put(item("k1", "Opening", 9, mKeynotes));
+        put(item("k2", "Closing", 17, mKeynotes));
+        put(item("b1", "Data layers", 10, mBreakouts));
+        put(item("b2", "Audiences", 11, mBreakouts));
+        put(item("b3", "Consent", 11, mBreakouts));
+
+        mAdapter = load(mItems.values());
+    }
+
+    public void testAdd() throws Exception {
+        apply(Arrays.asList(
+                item("b4", "Attribution", 10, mBreakouts),
+                item("w1", "Hands on", 13, mWorkshops)),
+                Collections.<AgendaItem>emptyList(),
+                Collections.<String>emptyList());
+    }
+
+    public void testAddToANewCategoryBetweenOthers() throws Exception {
+        mItems.remove("b1");
+        mItems.remove("b2");
+        mItems.remove("b3");
+        put(item("w1", "Hands on", 13, mWorkshops));
+        mAdapter = load(mItems.values());
+
+        apply(Arrays.asList(item("b1", "Data layers", 10, mBreakouts)),
+                Collections.<AgendaItem>emptyList(),
+                Collections.<String>emptyList());
+    }
+
+    public void testUpdate() throws Exception {
+        // Now sorts first in its category.
+        apply(Collections.<AgendaItem>emptyList(),
+                Arrays.asList(item("b3", "Consent", 8, mBreakouts)),
+                Collections.<String>emptyList());
+    }
+
+    public void testRemove() throws Exception {
+        apply(Collections.<AgendaItem>emptyList(),
+                Collections.<AgendaItem>emptyList(),
+                Arrays.asList("b2", "k1", "k2", "missing"));
+        // The emptied category's header went with its last item.
+        Assert.assertSame(mBreakouts, mAdapter.getItem(0));
+    }
+
+    public void testMoveBetweenCategories() throws Exception {
+        apply(Collections.<AgendaItem>emptyList(),
+                Arrays.asList(
+                        item("b1", "Data layers", 10, mKeynotes),
+                        item("k2", "Closing", 17, mWorkshops)),
+                Collections.<String>emptyList());
+    }
+
+    /**
+     * Applies the change in place, and checks the rows match a full load of the result.
+     */
+    private void apply(List<AgendaItem> added, List<AgendaItem> updated, List<String> removedIds)
+            throws Exception {
+        mAdapter.onEventMainThread(new ChangedEvent.Agenda(added, updated, removedIds));
+
+        for (String id : removedIds) {
+            mItems.remove(id);
+        }
+        for (AgendaItem item : added) {
+            put(item);
+        }
+        for (AgendaItem item : updated) {
+            put(item);
+        }
+
+        final AgendaAdapter expected = load(mItems.values());
+        Assert.assertEquals(mItems.size(), mAdapter.getAgendaItemCount());
+        Assert.assertEquals(expected.getCount(), mAdapter.getCount());
+        for (int i = 0; i < expected.getCount(); i++) {
+            Assert.assertSame("Row " + i, expected.getItem(i), mAdapter.getItem(i));
+            Assert.assertEquals(expected.isEnabled(i), mAdapter.isEnabled(i));
+        }
+    }
+
+    private AgendaAdapter load(Collection<AgendaItem> items) {
+        final AgendaAdapter adapter = new AgendaAdapter(new View(getContext()));
+        adapter.onEventMainThread(new LoadedEvent.Agenda(new ArrayList<>(items), 1));
+        return adapter;
+    }
+
+    private void put(AgendaItem item) {
+        mItems.put(item.getId(), item);
+    }
+
+    private static Category category(String id, int priority) throws Exception {
+        return new Category(row(id)
+                .put("title", id)
+                .put("priority", priority));
+    }
+
+    private static AgendaItem item(String id, String title, int hour, Category category)
+            throws Exception {
+        return new AgendaItem(row(id)
+                .put("title", title)
+                .put("startDate", date(hour))
+                .put("endDate", date(hour + 1)), category);
+    }
+
+    private static JSONObject row(String id) throws Exception {
+        return new JSONObject()
+                .put("objectId", id)
+                .put("createdAt", "2016-08-01T12:00:00.000Z")
+                .put("updatedAt", "2016-08-02T12:00:00.000Z");
+    }
+
+    private static JSONObject date(int hour) throws Exception {
+        return new JSONObject()
+                .put("__type", "Date")
+                .put("iso", String.format(Locale.ROOT, "2016-09-01T%02d:00:00.000Z", hour));
+    }
+}
@@ -0,0 +1,155 @@
+package com.tealium.digitalvelocity.data;
+
+import android.test.AndroidTestCase;
+
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+import com.tealium.digitalvelocity.event.LoadRequest;
+import com.tealium.digitalvelocity.event.LoadedEvent;
+import com.tealium.digitalvelocity.event.Purge;
+import com.tealium.digitalvelocity.event.SaveRequest;
+
+import junit.framework.Assert;
+
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import de.greenrobot.event.EventBus;
+
+public class IOManagerTest extends AndroidTestCase {
+
+    private static final int ROWS = 2000;
+
+    private File mRecordsDir;
+    private List<Integer> mLoadedSizes;
+    private Object mSubscriber;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mRecordsDir = IOUtils.getRecordsDir(getContext());
+        delete(mRecordsDir);
+
+        mLoadedSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        mSubscriber = new Object() {
+            @SuppressWarnings("unused")
+            public void onEvent(LoadedEvent.Sponsors event) {
+                mLoadedSizes.add(event.getItems().size());
+            }
+        };
+        EventBus.getDefault().register(mSubscriber);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EventBus.getDefault().unregister(mSubscriber);
+        delete(mRecordsDir);
+        super.tearDown();
+    }
+
+    public void testGenerationIsOpenedOnFirstUse() throws Exception {
+        final IOManager manager = new IOManager(getContext());
+        Assert.assertFalse(mRecordsDir.exists());
+
+        manager.onEventBackgroundThread(new LoadRequest.Sponsors());
+        Assert.assertTrue(new File(mRecordsDir, "CURRENT").exists());
+        Assert.assertEquals(Collections.singletonList(0), mLoadedSizes);
+    }
+
+    public void testPurgeOnFirstUseKeepsTheNewGeneration() throws Exception {
+        final IOManager manager = new IOManager(getContext());
+        // What the first launch after an update does: opens and advances at once.
+        manager.onEventBackgroundThread(new Purge());
+
+        // Both reclaims queued by then have run once the first generation is gone.
+        final File first = new File(mRecordsDir, "gen-1");
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (first.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertFalse(first.exists());
+        Assert.assertTrue(new File(mRecordsDir, "gen-2").isDirectory());
+
+        manager.onEventBackgroundThread(new SaveRequest.Batch<>(Sponsor.class, sponsors(3)));
+        new IOManager(getContext()).onEventBackgroundThread(new LoadRequest.Sponsors());
+        Assert.assertEquals(Collections.singletonList(3), mLoadedSizes);
+    }
+
+    public void testPurgeWhileReading() throws Exception {
+        final IOManager manager = new IOManager(getContext());
+        manager.onEventBackgroundThread(new SaveRequest.Batch<>(Sponsor.class, sponsors(ROWS)));
+
+        final AtomicBoolean isPurged = new AtomicBoolean();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch done = new CountDownLatch(4);
+
+        for (int i = 0; i < 4; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // Keep reading until a read has started after the purge completed.
+                        boolean isReadAfterPurge = false;
+                        while (!isReadAfterPurge) {
+                            isReadAfterPurge = isPurged.get();
+                            manager.onEventBackgroundThread(new LoadRequest.Sponsors());
+                        }
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        Thread.sleep(50);
+        manager.onEventBackgroundThread(new Purge());
+        isPurged.set(true);
+
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.<Throwable>emptyList(), failures);
+
+        // Every read saw one generation or the other, never a mix.
+        for (Integer size : new ArrayList<>(mLoadedSizes)) {
+            Assert.assertTrue("Loaded " + size, size == ROWS || size == 0);
+        }
+        mLoadedSizes.clear();
+        manager.onEventBackgroundThread(new LoadRequest.Sponsors());
+        Assert.assertEquals(Collections.singletonList(0), mLoadedSizes);
+
+        // Writes go to the new generation, which a restart opens.
+        manager.onEventBackgroundThread(new SaveRequest.Batch<>(Sponsor.class, sponsors(3)));
+        mLoadedSizes.clear();
+        new IOManager(getContext()).onEventBackgroundThread(new LoadRequest.Sponsors());
+        Assert.assertEquals(Collections.singletonList(3), mLoadedSizes);
+    }
+
+    private static List<Sponsor> sponsors(int count) throws Exception {
+        final List<Sponsor> sponsors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sponsors.add(new Sponsor(new JSONObject()
+                    .put("objectId", "sponsor" + i)
+                    .put("createdAt", "2016-08-01T12:00:00.000Z")
+                    .put("updatedAt", "2016-08-02T12:00:00.000Z")
+                    .put("title", "Sponsor " + i), null));
+        }
+        return sponsors;
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,357 @@
+package com.tealium.digitalvelocity.data;
+
+import android.test.AndroidTestCase;
+
+import com.tealium.digitalvelocity.parse.LocalServer;
+import com.tealium.digitalvelocity.util.HttpClient;
+
+import junit.framework.Assert;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ImageDownloaderTest extends AndroidTestCase {
+
+    private static final byte[] IMAGE = "GIF89a-not-really".getBytes();
+
+    private final List<String> mRequested = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> mDownloaded = Collections.synchronizedList(new ArrayList<String>());
+    private final List<String> mDownloadedUrls =
+            Collections.synchronizedList(new ArrayList<String>());
+
+    private File mDir;
+    private LocalServer mServer;
+    private CountDownLatch mRelease;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDir = new File(getContext().getCacheDir(), "image-downloader-test");
+        delete(mDir);
+        Assert.assertTrue(mDir.mkdirs());
+
+        mRelease = new CountDownLatch(1);
+        // Serves one request at a time, each only once released.
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                mRequested.add(path.substring(1, path.lastIndexOf('.')));
+                mRelease.await(5, TimeUnit.SECONDS);
+                return new Object[]{200, IMAGE};
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        delete(mDir);
+        super.tearDown();
+    }
+
+    public void testInFlightDownloadIsNotStartedTwice() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ImageDownloader downloader = createDownloader(1, done);
+
+        Assert.assertTrue(downloader.enqueue("a", url("a")));
+        Assert.assertFalse(downloader.enqueue("a", url("a")));
+        waitForRequests(1);
+        // What a wake during a slow download would do.
+        Assert.assertFalse(downloader.enqueue("a", url("a")));
+
+        mRelease.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(1, mServer.getRequestCount());
+        Assert.assertEquals(Collections.singletonList("a"), mDownloaded);
+        Assert.assertTrue(new File(mDir, "a.gif").exists());
+        Assert.assertFalse(new File(mDir, "a.gif.part").exists());
+        Assert.assertEquals(0, downloader.getQueueDepth());
+    }
+
+    public void testVisibleRowsJumpTheQueue() throws Exception {
+        final CountDownLatch done = new CountDownLatch(4);
+        final ImageDownloader downloader = createDownloader(1, done);
+
+        downloader.enqueue("first", url("first"));
+        waitForRequests(1);
+
+        downloader.enqueue("b", url("b"));
+        downloader.enqueue("c", url("c"));
+        downloader.enqueue("d", url("d"));
+        Assert.assertEquals(3, downloader.getQueueDepth());
+        Assert.assertEquals(1, downloader.getInFlightCount());
+
+        downloader.prioritize("c");
+        downloader.prioritize("d");
+
+        mRelease.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // The row bound last is the one most likely still on screen.
+        Assert.assertEquals(Arrays.asList("first", "d", "c", "b"), mRequested);
+    }
+
+    public void testCancelledDownloadsAreDropped() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ImageDownloader downloader = createDownloader(1, done);
+
+        downloader.enqueue("running", url("running"));
+        downloader.enqueue("queued", url("queued"));
+        downloader.enqueue("kept", url("kept"));
+        waitForRequests(1);
+
+        Assert.assertTrue(downloader.cancel("running"));
+        Assert.assertTrue(downloader.cancel("queued"));
+        Assert.assertFalse(downloader.cancel("unknown"));
+
+        mRelease.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("running", "kept"), mRequested);
+        Assert.assertEquals(Collections.singletonList("kept"), mDownloaded);
+        Assert.assertFalse(new File(mDir, "running.gif").exists());
+        Assert.assertFalse(new File(mDir, "running.gif.part").exists());
+    }
+
+    public void testReEnqueuedDownloadWaitsForTheCancelledOne() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ImageDownloader downloader = createDownloader(2, done);
+
+        downloader.enqueue("a", url("a"));
+        waitForRequests(1);
+        Assert.assertTrue(downloader.cancel("a"));
+
+        // Would share the part file with the transfer still running.
+        Assert.assertTrue(downloader.enqueue("a", url("a")));
+        Thread.sleep(100);
+        Assert.assertEquals(1, mRequested.size());
+        Assert.assertEquals(1, downloader.getQueueDepth());
+        Assert.assertEquals(1, downloader.getInFlightCount());
+
+        mRelease.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("a", "a"), mRequested);
+        Assert.assertEquals(Collections.singletonList("a"), mDownloaded);
+        Assert.assertTrue(Arrays.equals(IMAGE, read(new File(mDir, "a.gif"))));
+        Assert.assertFalse(new File(mDir, "a.gif.part").exists());
+    }
+
+    public void testUrlChangedMidDownloadIsDownloadedInstead() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final ImageDownloader downloader = createDownloader(1, done);
+
+        downloader.enqueue("a", url("a"));
+        waitForRequests(1);
+        // The row synced with a new image while the old one downloads.
+        Assert.assertTrue(downloader.enqueue("a", url("a2")));
+        Assert.assertFalse(downloader.enqueue("a", url("a2")));
+
+        mRelease.countDown();
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("a", "a2"), mRequested);
+        Assert.assertEquals(Collections.singletonList(url("a2")), mDownloadedUrls);
+        Assert.assertTrue(new File(mDir, "a.gif").exists());
+        Assert.assertFalse(new File(mDir, "a.gif.part").exists());
+    }
+
+    public void testListenerIsCalledUnlocked() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        final ImageDownloader downloader = new ImageDownloader(
+                HttpClient.getInstance(), mDir, 1, new ImageDownloader.Listener() {
+                    @Override
+                    public void onDownloaded(
+                            String id, String url, File file, String hash, String validator) {
+                        entered.countDown();
+                        try {
+                            // As slow as storing the image can be.
+                            proceed.await(5, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            throw new AssertionError(e);
+                        }
+                        mDownloaded.add(id);
+                    }
+
+                    @Override
+                    public void onNotModified(String id, String url) {
+                        throw new AssertionError(id);
+                    }
+
+                    @Override
+                    public void onFailed(String id, String url, Throwable t) {
+                        throw new AssertionError(t);
+                    }
+                });
+
+        mRelease.countDown();
+        downloader.enqueue("a", url("a"));
+        Assert.assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+        // What binding a row does on the UI thread.
+        downloader.prioritize("b");
+        Assert.assertTrue(downloader.enqueue("b", url("b")));
+        downloader.prioritize("b");
+
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                downloader.cancel("a");
+                cancelled.countDown();
+            }
+        }).start();
+        // Removing the image must wait until it is stored.
+        Assert.assertFalse(cancelled.await(100, TimeUnit.MILLISECONDS));
+
+        proceed.countDown();
+        Assert.assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals("a", mDownloaded.get(0));
+    }
+
+    public void testDroppedDownloadResumesWhereItStopped() throws Exception {
+        final byte[] image = new byte[20000];
+        new Random(1).nextBytes(image);
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+        mServer.shutdown();
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                final String range = headers.get("range");
+                ranges.add(range);
+                if (range == null) {
+                    // Drops the connection two fifths in.
+                    return new Object[]{200, image, "ETag: \"v1\"", 8000};
+                }
+
+                Assert.assertEquals("\"v1\"", headers.get("if-range"));
+                final int first = Integer.parseInt(range.substring(6, range.length() - 1));
+                return new Object[]{206, Arrays.copyOfRange(image, first, image.length),
+                        "Content-Range: bytes " + first + "-" + (image.length - 1) + "/" +
+                                image.length};
+            }
+        });
+
+        final CountDownLatch done = new CountDownLatch(1);
+        createDownloader(1, done).enqueue("floor", url("floor"));
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(2, ranges.size());
+        Assert.assertNull(ranges.get(0));
+        Assert.assertNotNull(ranges.get(1));
+        Assert.assertTrue(Arrays.equals(image, read(new File(mDir, "floor.gif"))));
+        Assert.assertFalse(new File(mDir, "floor.gif.part").exists());
+        Assert.assertFalse(new File(mDir, "floor.gif.part.validator").exists());
+    }
+
+    public void testUnchangedImageIsNotDownloadedAgain() throws Exception {
+        final List<String> conditions = Collections.synchronizedList(new ArrayList<String>());
+
+        mServer.shutdown();
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                conditions.add(headers.get("if-none-match"));
+                return "\"v1\"".equals(headers.get("if-none-match")) ?
+                        new Object[]{304, null, "ETag: \"v1\""} :
+                        new Object[]{200, IMAGE, "ETag: \"v2\""};
+            }
+        });
+
+        final CountDownLatch done = new CountDownLatch(2);
+        final ImageDownloader downloader = createDownloader(1, done);
+        downloader.enqueue("same", url("same"), "\"v1\"");
+        downloader.enqueue("changed", url("changed"), "\"v0\"");
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("\"v1\"", "\"v0\""), conditions);
+        Assert.assertEquals(Arrays.asList("same not modified", "changed"), mDownloaded);
+        Assert.assertFalse(new File(mDir, "same.gif").exists());
+        Assert.assertTrue(new File(mDir, "changed.gif").exists());
+    }
+
+    public void testParseContentRange() {
+        Assert.assertTrue(Arrays.equals(new long[]{1000, 5000},
+                ImageDownloader.parseContentRange("bytes 1000-4999/5000")));
+        Assert.assertTrue(Arrays.equals(new long[]{0, -1},
+                ImageDownloader.parseContentRange("bytes 0-99/*")));
+        Assert.assertNull(ImageDownloader.parseContentRange("bytes */5000"));
+        Assert.assertNull(ImageDownloader.parseContentRange(null));
+    }
+
+    private ImageDownloader createDownloader(int maxConcurrent, final CountDownLatch done) {
+        return new ImageDownloader(HttpClient.getInstance(), mDir, maxConcurrent,
+                new ImageDownloader.Listener() {
+                    @Override
+                    public void onDownloaded(
+                            String id, String url, File file, String hash, String validator) {
+                        mDownloaded.add(id);
+                        mDownloadedUrls.add(url);
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onNotModified(String id, String url) {
+                        mDownloaded.add(id + " not modified");
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void onFailed(String id, String url, Throwable t) {
+                        throw new AssertionError(t);
+                    }
+                });
+    }
+
+    private String url(String id) {
+        return mServer.getBaseUrl() + "/" + id + ".gif";
+    }
+
+    private void waitForRequests(int count) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (mRequested.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(count, mRequested.size());
+    }
+
+    private static byte[] read(File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void delete(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,203 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.test.AndroidTestCase;
+
+import com.tealium.digitalvelocity.event.SyncCompleteEvent;
+
+import junit.framework.Assert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import de.greenrobot.event.EventBus;
+
+public class ImageStoreTest extends AndroidTestCase {
+
+    private static final String URL_A = "http://files.example.com/a/logo.png";
+    private static final String URL_B = "http://files.example.com/b/logo.png";
+
+    private File mLegacyDir;
+    private File mDir;
+    private SharedPreferences mManifest;
+    private SharedPreferences mUrls;
+    private ImageStore mStore;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mLegacyDir = new File(getContext().getCacheDir(), "image-store-test");
+        mDir = new File(mLegacyDir, "images");
+        delete(mDir);
+        delete(mLegacyDir);
+        Assert.assertTrue(mLegacyDir.mkdirs());
+
+        mManifest = getContext().getSharedPreferences("image_store_test_manifest", 0);
+        mUrls = getContext().getSharedPreferences("image_store_test_urls", 0);
+        mManifest.edit().clear().commit();
+        mUrls.edit().clear().commit();
+
+        mStore = new ImageStore(mDir, mLegacyDir, mManifest, mUrls);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mManifest.edit().clear().commit();
+        mUrls.edit().clear().commit();
+        delete(mDir);
+        delete(mLegacyDir);
+        super.tearDown();
+    }
+
+    public void testSharedLogoIsStoredOnce() throws Exception {
+        final File a = put("sponsorA", URL_A, "same logo");
+        final File b = put("sponsorB", URL_B, "same logo");
+
+        Assert.assertEquals(a, b);
+        Assert.assertEquals(1, mDir.listFiles().length);
+        Assert.assertEquals(a, mStore.get("sponsorA"));
+        Assert.assertEquals(a, mStore.get("sponsorB"));
+
+        mStore.remove("sponsorA");
+        Assert.assertNull(mStore.get("sponsorA"));
+        Assert.assertTrue(b.exists());
+
+        mStore.remove("sponsorB");
+        Assert.assertFalse(b.exists());
+        Assert.assertNull(mStore.getValidator(URL_B));
+    }
+
+    public void testRememberedUrlIsReused() throws Exception {
+        final File stored = put("sponsorA", URL_A, "logo");
+
+        Assert.assertFalse(mStore.reuse("sponsorB", URL_B));
+        Assert.assertTrue(mStore.reuse("sponsorB", URL_A));
+        Assert.assertEquals(stored, mStore.get("sponsorB"));
+        Assert.assertEquals("\"etag\"", mStore.getValidator(URL_A));
+
+        // A new image for the item releases the old one.
+        mStore.remove("sponsorA");
+        final File replaced = put("sponsorB", URL_B, "new logo");
+        Assert.assertFalse(stored.exists());
+        Assert.assertEquals(replaced, mStore.get("sponsorB"));
+        Assert.assertFalse(mStore.reuse("sponsorC", URL_A));
+    }
+
+    public void testImagesKeptByIdAreMigrated() throws Exception {
+        write(new File(mLegacyDir, "floor1.png"), "floor");
+        write(new File(mLegacyDir, "floor2.png"), "floor");
+        write(new File(mLegacyDir, "floor3.png.part"), "flo");
+
+        // Bound before the load, without waiting for it.
+        Assert.assertEquals(new File(mLegacyDir, "floor1.png"), mStore.get("floor1"));
+        Assert.assertNull(mStore.get("floor3"));
+
+        final List<String> moved = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(2);
+        final Object subscriber = new Object() {
+            @SuppressWarnings("unused")
+            public void onEvent(SyncCompleteEvent.Image event) {
+                moved.add(event.getId());
+                done.countDown();
+            }
+        };
+        EventBus.getDefault().register(subscriber);
+        try {
+            mStore.loadInBackground();
+            Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            EventBus.getDefault().unregister(subscriber);
+        }
+        Collections.sort(moved);
+        Assert.assertEquals(Arrays.asList("floor1", "floor2"), moved);
+
+        final File file = mStore.get("floor1");
+        Assert.assertNotNull(file);
+        Assert.assertEquals(file, mStore.get("floor2"));
+        Assert.assertEquals(ImageStore.hash(file) + ".png", file.getName());
+        Assert.assertEquals(1, mDir.listFiles().length);
+        Assert.assertEquals(1, mLegacyDir.listFiles().length);
+    }
+
+    public void testRowsGetTheSmallestVariantThatFits() throws Exception {
+        mStore = new ImageStore(mDir, mLegacyDir, mManifest, mUrls, 50, 200);
+
+        final Bitmap bitmap = Bitmap.createBitmap(400, 100, Bitmap.Config.ARGB_8888);
+        final File file = new File(mDir, "floor.png");
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+        }
+        final File stored = mStore.put("floor", URL_A, file, ImageStore.hash(file), null);
+        Assert.assertEquals(stored, mStore.get("floor", 40));
+
+        final CountDownLatch done = new CountDownLatch(1);
+        mStore.createVariantsInBackground(stored, new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        final File small = mStore.get("floor", 40);
+        Assert.assertTrue(small.getName().endsWith("@50w.png"));
+        Assert.assertEquals(50, BitmapFactory.decodeFile(small.getPath()).getWidth());
+        Assert.assertTrue(mStore.get("floor", 100).getName().endsWith("@200w.png"));
+        Assert.assertEquals(stored, mStore.get("floor", 300));
+
+        // Binds don't look on disk; a new launch learns of the variants in the background.
+        final ImageStore relaunched = new ImageStore(mDir, mLegacyDir, mManifest, mUrls, 50, 200);
+        Assert.assertEquals(stored, relaunched.get("floor", 40));
+        final CountDownLatch found = new CountDownLatch(1);
+        relaunched.createVariantsInBackground(stored, new Runnable() {
+            @Override
+            public void run() {
+                found.countDown();
+            }
+        });
+        Assert.assertTrue(found.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(small, relaunched.get("floor", 40));
+
+        mStore.remove("floor");
+        Assert.assertEquals(0, mDir.listFiles().length);
+    }
+
+    private File put(String id, String url, String contents) throws IOException {
+        final File file = new File(mDir, id + ".png");
+        write(file, contents);
+        return mStore.put(id, url, file, ImageStore.hash(file), "\"etag\"");
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        file.getParentFile().mkdirs();
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void delete(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
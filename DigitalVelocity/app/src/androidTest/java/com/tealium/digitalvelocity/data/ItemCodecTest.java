@@ -0,0 +1,222 @@
+package com.tealium.digitalvelocity.data;
+
+import android.test.AndroidTestCase;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.Coordinates;
+import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
+import com.tealium.digitalvelocity.data.gson.Notification;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.data.gson.Question;
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+import com.tealium.digitalvelocity.data.gson.Survey;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ItemCodecTest extends AndroidTestCase {
+
+    private Gson mGson;
+    private Category mCategory;
+    private Map<String, Category> mCategories;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mGson = JsonAdapters.register(new GsonBuilder()).create();
+        mCategory = new Category(row("category1")
+                .put("title", "Keynotes")
+                .put("priority", 2)
+                .put("eventDate", date("2016-09-01T09:00:00.000Z")));
+        mCategories = new HashMap<>();
+        mCategories.put(mCategory.getId(), mCategory);
+    }
+
+    public void testAgendaItem() throws Exception {
+        final AgendaItem item = new AgendaItem(row("agenda1")
+                .put("title", "Opening keynote")
+                .put("subTitle", "Main stage")
+                .put("description", "Welcome \u2014 and what's new.")
+                .put("url", "https://example.com/agenda/1")
+                .put("locationId", "location1")
+                .put("imageFontAwesome", "fa-star")
+                .put("roomName", "Hall A")
+                .put("startDate", date("2016-09-01T09:00:00.000Z"))
+                .put("endDate", date("2016-09-01T10:00:00.000Z"))
+                .put("imageData", new JSONObject().put("url", "https://files.example.com/1.png")),
+                mCategory);
+
+        final AgendaItem decoded = assertRoundTrip(AgendaItem.class, item);
+        Assert.assertEquals("Opening keynote", decoded.getTitle());
+        Assert.assertEquals("Welcome \u2014 and what's new.", decoded.getDescription());
+        Assert.assertEquals(item.getStart(), decoded.getStart());
+        Assert.assertEquals(item.getEnd(), decoded.getEnd());
+        // Stored as a reference, resolved to the indexed category.
+        Assert.assertSame(mCategory, decoded.getCategory());
+    }
+
+    public void testAgendaItemWithoutOptionalFields() throws Exception {
+        final AgendaItem item = new AgendaItem(row("agenda2")
+                .put("title", "Lunch")
+                .put("startDate", date("2016-09-01T12:00:00.000Z"))
+                .put("endDate", date("2016-09-01T13:00:00.000Z")),
+                null);
+
+        final AgendaItem decoded = assertRoundTrip(AgendaItem.class, item);
+        Assert.assertNull(decoded.getSubtitle());
+        Assert.assertNull(decoded.getImageURL());
+        Assert.assertNull(decoded.getCategory());
+    }
+
+    public void testSponsor() throws Exception {
+        final Sponsor sponsor = new Sponsor(row("sponsor1")
+                .put("title", "Acme")
+                .put("subTitle", "Anvils")
+                .put("url", "https://acme.example.com")
+                .put("email", "demo@acme.example.com")
+                .put("imageData", new JSONObject().put("url", "https://files.example.com/acme.png")),
+                mCategory);
+
+        final Sponsor decoded = assertRoundTrip(Sponsor.class, sponsor);
+        Assert.assertEquals("Acme", decoded.getName());
+        Assert.assertEquals("I'm interested in a demo.", decoded.getEmailMessage());
+        Assert.assertEquals("https://files.example.com/acme.png", decoded.getLogoUri());
+        Assert.assertSame(mCategory, decoded.getCategory());
+    }
+
+    public void testCategory() throws Exception {
+        final Category decoded = assertRoundTrip(Category.class, mCategory);
+        Assert.assertEquals("Keynotes", decoded.getName());
+        Assert.assertEquals(mCategory.getEventDate(), decoded.getEventDate());
+
+        final Category undated = new Category(row("category2")
+                .put("title", "Breakouts")
+                .put("priority", 3));
+        Assert.assertNull(assertRoundTrip(Category.class, undated).getEventDate());
+    }
+
+    public void testFloor() throws Exception {
+        final Floor floor = new Floor(row("floor1")
+                .put("title", "Level 1")
+                .put("priority", 1)
+                .put("imageData", new JSONObject().put("url", "https://files.example.com/l1.png")));
+
+        final Floor decoded = assertRoundTrip(Floor.class, floor);
+        Assert.assertEquals("Level 1", decoded.getName());
+        Assert.assertEquals("https://files.example.com/l1.png", decoded.getImageUri());
+    }
+
+    public void testCoordinates() throws Exception {
+        final Coordinates coordinates = new Coordinates(row("coordinates1")
+                .put("title", "Venue")
+                .put("latitude", 37.3861)
+                .put("longitude", -122.0839)
+                .put("priority", 1));
+
+        final Coordinates decoded = assertRoundTrip(Coordinates.class, coordinates);
+        Assert.assertEquals(coordinates.toLatLng(), decoded.toLatLng());
+    }
+
+    public void testSurvey() throws Exception {
+        final Survey survey = new Survey(row("survey1")
+                .put("title", "Feedback")
+                .put("questionIds", new JSONArray(Arrays.asList("q1", "q2"))));
+
+        final Survey decoded = assertRoundTrip(Survey.class, survey);
+        Assert.assertEquals(Arrays.asList("q1", "q2"), decoded.getQuestionIds());
+
+        final Survey empty = new Survey(row("survey2").put("title", "Empty"));
+        Assert.assertTrue(assertRoundTrip(Survey.class, empty).getQuestionIds().isEmpty());
+    }
+
+    public void testQuestion() throws Exception {
+        final Question question = new Question(row("question1")
+                .put("title", "How was it?")
+                .put("answers", new JSONArray(Arrays.asList("Great", "Good", "Meh"))));
+
+        final Question decoded = assertRoundTrip(Question.class, question);
+        Assert.assertEquals("How was it?", decoded.getTitle());
+        Assert.assertEquals(Arrays.asList("Great", "Good", "Meh"), decoded.getAnswers());
+    }
+
+    public void testNotification() throws Exception {
+        final Notification notification = new Notification(row("notification1")
+                .put("title", "Doors open at 8"));
+
+        final Notification decoded = assertRoundTrip(Notification.class, notification);
+        Assert.assertEquals("Doors open at 8", decoded.getText());
+        Assert.assertTrue(decoded.isFromParseTable());
+    }
+
+    public void testMalformedPayloads() throws Exception {
+        final ItemCodec<Category> codec = ItemCodec.create(Category.class, mGson, null);
+        final byte[] payload = codec.encode(mCategory);
+
+        assertMalformed(codec, new byte[0]);
+        assertMalformed(codec, Arrays.copyOf(payload, payload.length / 2));
+
+        payload[0] = ItemCodec.FORMAT_VERSION + 1;
+        assertMalformed(codec, payload);
+        assertMalformed(codec, "{\"mId\":".getBytes("UTF-8"));
+    }
+
+    /**
+     * Checks the binary round trip, and that the JSON earlier versions stored decodes to the
+     * same item; both are compared by their encoding, which covers every field.
+     */
+    private <T extends ParseItem> T assertRoundTrip(Class<T> itemClass, T item) throws Exception {
+        final ItemCodec<T> codec = ItemCodec.create(itemClass, mGson, mCategories);
+        final byte[] encoded = codec.encode(item);
+        Assert.assertEquals(ItemCodec.FORMAT_VERSION, encoded[0]);
+
+        final T decoded = codec.decode(ByteBuffer.wrap(encoded));
+        Assert.assertEquals(item.getId(), decoded.getId());
+        Assert.assertEquals(item.isVisible(), decoded.isVisible());
+        Assert.assertEquals(item.getCreatedAt(), decoded.getCreatedAt());
+        Assert.assertEquals(item.getUpdatedAt(), decoded.getUpdatedAt());
+        Assert.assertTrue(Arrays.equals(encoded, codec.encode(decoded)));
+
+        // Legacy stores hold what reflective Gson wrote.
+        final byte[] legacy = new Gson().toJson(item).getBytes("UTF-8");
+        final T fromLegacy = codec.decode(ByteBuffer.wrap(legacy));
+        Assert.assertTrue(Arrays.equals(encoded, codec.encode(fromLegacy)));
+        // The typed adapters only read; writing stays reflective.
+        Assert.assertEquals(new String(legacy, "UTF-8"), mGson.toJson(item));
+
+        return decoded;
+    }
+
+    private static void assertMalformed(ItemCodec<?> codec, byte[] payload) {
+        try {
+            codec.decode(ByteBuffer.wrap(payload));
+            Assert.fail("Decoded a malformed payload");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    private static JSONObject row(String id) throws Exception {
+        return new JSONObject()
+                .put("objectId", id)
+                .put("createdAt", "2016-08-01T12:00:00.000Z")
+                .put("updatedAt", "2016-08-02T12:30:15.250Z");
+    }
+
+    private static JSONObject date(String iso) throws Exception {
+        return new JSONObject()
+                .put("__type", "Date")
+                .put("iso", iso);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.SharedPreferences;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.util.Constant;
+
+import junit.framework.Assert;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Times the settings a beacon enter reads, through a {@link ModelSnapshot} and through the
+ * {@link SharedPreferences} lookups {@link Model}'s getters made before it, and logs both under
+ * {@link Constant#TAG}, e.g. "Beacon enter settings x10000: SharedPreferences 412 ms, ...".
+ */
+public class ModelSnapshotBenchmarkTest extends AndroidTestCase {
+
+    private static final int ITERATIONS = 10000;
+    private static final int ROUNDS = 5;
+    private static final int VIP_KEYS = 20;
+
+    private SharedPreferences mSharedPreferences;
+    private SharedPreferences mVipPreferences;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mSharedPreferences = getContext().getSharedPreferences("model_snapshot_benchmark", 0);
+        mVipPreferences = getContext().getSharedPreferences("model_snapshot_benchmark_vip", 0);
+
+        mSharedPreferences.edit()
+                .clear()
+                .putInt(Constant.SP.KEY_MONITORING_START_HOUR, 7)
+                .putInt(Constant.SP.KEY_MONITORING_STOP_HOUR, 20)
+                .putLong(Constant.SP.KEY_MONITORING_START_DATE, 1472688000000L)
+                .putLong(Constant.SP.KEY_MONITORING_STOP_DATE, 1472947200000L)
+                .putString(Constant.SP.KEY_DEMO_INSTANCE_ID, "demo")
+                .commit();
+
+        final SharedPreferences.Editor vip = mVipPreferences.edit().clear();
+        for (int i = 0; i < VIP_KEYS; i++) {
+            vip.putString("vip_key_" + i, "value " + i);
+        }
+        vip.commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mSharedPreferences.edit().clear().commit();
+        mVipPreferences.edit().clear().commit();
+        super.tearDown();
+    }
+
+    public void testBeaconEnterSettings() throws Exception {
+        final ModelSnapshot snapshot = new ModelSnapshot(
+                mSharedPreferences, mVipPreferences, getContext().getResources());
+
+        long referenceNanos = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        long referenceSum = 0;
+        long sum = 0;
+
+        // The best of several rounds, so that the JIT has warmed up both.
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            referenceSum = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                referenceSum += readThroughSharedPreferences();
+            }
+            referenceNanos = Math.min(referenceNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sum = 0;
+            for (int i = 0; i < ITERATIONS; i++) {
+                sum += readThroughSnapshot(snapshot);
+            }
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+
+        Assert.assertEquals(referenceSum, sum);
+        Log.i(Constant.TAG, String.format(Locale.ROOT,
+                "Beacon enter settings x%d: SharedPreferences %d ms, ModelSnapshot %d ms (%.1fx)",
+                ITERATIONS, referenceNanos / 1000000L, nanos / 1000000L,
+                referenceNanos / (double) nanos));
+    }
+
+    /**
+     * What the getters did before the snapshot; getAll() copies the whole map.
+     */
+    private long readThroughSharedPreferences() {
+        final Map<String, Object> data = new HashMap<>(VIP_KEYS + 8);
+        data.putAll(mVipPreferences.getAll());
+        data.put("instance", mSharedPreferences.getString(Constant.SP.KEY_DEMO_INSTANCE_ID, null));
+
+        return data.size() +
+                mSharedPreferences.getInt(Constant.SP.KEY_MONITORING_START_HOUR, 0) +
+                mSharedPreferences.getInt(Constant.SP.KEY_MONITORING_STOP_HOUR, 23) +
+                mSharedPreferences.getLong(Constant.SP.KEY_MONITORING_START_DATE, 0) +
+                mSharedPreferences.getLong(Constant.SP.KEY_MONITORING_STOP_DATE, Long.MAX_VALUE);
+    }
+
+    private static long readThroughSnapshot(ModelSnapshot snapshot) {
+        final Map<String, Object> data = new HashMap<>(VIP_KEYS + 8);
+        data.putAll(snapshot.getVipData());
+        data.put("instance", snapshot.getDemoInstanceId());
+
+        return data.size() +
+                snapshot.getMonitoringStartHour() +
+                snapshot.getMonitoringStopHour() +
+                snapshot.getMonitoringStartDate() +
+                snapshot.getMonitoringStopDate();
+    }
+}
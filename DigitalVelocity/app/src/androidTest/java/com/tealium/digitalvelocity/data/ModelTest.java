@@ -78,6 +78,23 @@ public class ModelTest extends ApplicationTestCase<Application> {
         Assert.assertFalse(Model.getInstance().isFirstLaunchSinceUpdate());
     }
 
+    public void testSnapshotRebuiltOnWrite() throws Exception {
+
+        final Model model = Model.getInstance();
+        model.setUsageDataEnabled(true);
+
+        final ModelSnapshot before = model.getSnapshot();
+        Assert.assertTrue(before.isUsageDataEnabled());
+
+        model.setUsageDataEnabled(false);
+
+        // Published snapshots are immutable; the write replaced it.
+        Assert.assertTrue(before.isUsageDataEnabled());
+        Assert.assertFalse(model.getSnapshot().isUsageDataEnabled());
+        Assert.assertFalse(model.isUsageDataEnabled());
+        Assert.assertSame(model.getSnapshot().getVipData(), model.getVipData());
+    }
+
     public static void clearModel(Model model) {
         Model.Test.clear(model);
     }
@@ -0,0 +1,121 @@
+package com.tealium.digitalvelocity.data;
+
+import android.app.Application;
+import android.test.ApplicationTestCase;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
+
+import junit.framework.Assert;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+
+public class RecordStoreTest extends ApplicationTestCase<Application> {
+
+    private File file;
+
+    public RecordStoreTest() {
+        super(Application.class);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        this.createApplication();
+
+        this.file = new File(getApplication().getCacheDir(), "test" + RecordStore.FILE_SUFFIX);
+        this.file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.file.delete();
+        super.tearDown();
+    }
+
+    public void testPutGetRemove() throws Exception {
+
+        RecordStore<Category> store = createStore();
+        store.put(new Category("a", 0, 1, "A", 1));
+        store.put(new Category("b", 0, 1, "B", 2));
+        store.put(new Category("a", 0, 2, "A2", 1));
+        store.remove("b");
+
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals("A2", store.get("a").getName());
+        Assert.assertNull(store.get("b"));
+        Assert.assertEquals(1, store.getAll().size());
+
+        // Index is rebuilt from the segment.
+        store.close();
+        store = createStore();
+
+        Assert.assertEquals(1, store.size());
+        Assert.assertEquals(2, store.get("a").getUpdatedAt());
+        Assert.assertEquals(Collections.singleton("a"), store.ids());
+        store.close();
+    }
+
+    public void testTornTailIsDropped() throws Exception {
+
+        RecordStore<Category> store = createStore();
+        store.put(new Category("a", 0, 1, "A", 1));
+        store.put(new Category("b", 0, 1, "B", 2));
+        store.close();
+
+        RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        store = createStore();
+        Assert.assertEquals(1, store.size());
+        Assert.assertNotNull(store.get("a"));
+
+        store.put(new Category("c", 0, 1, "C", 3));
+        Assert.assertEquals(2, store.getAll().size());
+        store.close();
+    }
+
+    public void testCompact() throws Exception {
+
+        RecordStore<Category> store = createStore();
+        for (int i = 0; i < 5000; i++) {
+            store.put(new Category("id" + (i % 10), 0, i, "Name", i));
+        }
+
+        Assert.assertTrue(store.needsCompaction());
+        final long before = this.file.length();
+
+        store.compact();
+
+        Assert.assertFalse(store.needsCompaction());
+        Assert.assertTrue(this.file.length() < before);
+        Assert.assertEquals(10, store.getAll().size());
+        Assert.assertEquals(4999, store.get("id9").getUpdatedAt());
+        store.close();
+    }
+
+    public void testLegacyJsonPayload() throws Exception {
+
+        final Category legacy = new Category("a", 0, 1, "A", 1);
+
+        RecordStore<Category> store = createStore();
+        store.putRaw("a", new Gson().toJson(legacy).getBytes("UTF-8"));
+        store.put(new Category("b", 0, 1, "B", 2));
+
+        Assert.assertEquals("A", store.get("a").getName());
+        Assert.assertEquals("B", store.get("b").getName());
+        Assert.assertEquals(2, store.getAll().size());
+        store.close();
+    }
+
+    private RecordStore<Category> createStore() {
+        return new RecordStore<>(this.file, ItemCodec.create(Category.class,
+                JsonAdapters.register(new GsonBuilder()).create(), null));
+    }
+}
@@ -0,0 +1,126 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.ComponentCallbacks2;
+import android.test.AndroidTestCase;
+
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+
+import junit.framework.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class TableCacheTest extends AndroidTestCase {
+
+    public void testLoadRacingAWriteIsNotCached() {
+        final TableCache cache = new TableCache(100);
+
+        final long generation = cache.generation(Category.class);
+        cache.invalidate(Category.class);
+        final TableCache.Table<Category> stale = cache.put(Category.class, generation,
+                Arrays.asList(category("a", 1)), 10);
+
+        // Still handed back to the loader, just not kept.
+        Assert.assertEquals(1, stale.getItems().size());
+        Assert.assertNull(cache.get(Category.class));
+
+        cache.put(Category.class, cache.generation(Category.class),
+                Arrays.asList(category("a", 2)), 10);
+        Assert.assertEquals(2, cache.get(Category.class).getLatestUpdatedAt());
+    }
+
+    public void testWriteInvalidatesOnlyItsTable() {
+        final TableCache cache = new TableCache(100);
+        put(cache, Category.class, 10);
+        put(cache, Sponsor.class, 10);
+
+        cache.invalidate(Category.class);
+
+        Assert.assertNull(cache.get(Category.class));
+        Assert.assertNotNull(cache.get(Sponsor.class));
+    }
+
+    public void testPurgeInvalidatesLoadsInProgress() {
+        final TableCache cache = new TableCache(100);
+        put(cache, Sponsor.class, 10);
+        final long generation = cache.generation(Category.class);
+
+        cache.invalidateAll();
+
+        Assert.assertNull(cache.get(Sponsor.class));
+        cache.put(Category.class, generation, new ArrayList<Category>(0), 10);
+        Assert.assertNull(cache.get(Category.class));
+        Assert.assertTrue(cache.generation(Category.class) != generation);
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        final TableCache cache = new TableCache(100);
+        put(cache, Category.class, 40);
+        put(cache, Sponsor.class, 40);
+
+        // Read, so Sponsor is now the least recently used.
+        Assert.assertNotNull(cache.get(Category.class));
+        put(cache, Floor.class, 40);
+
+        Assert.assertNotNull(cache.get(Category.class));
+        Assert.assertNull(cache.get(Sponsor.class));
+        Assert.assertNotNull(cache.get(Floor.class));
+    }
+
+    public void testTableLargerThanTheBudgetIsNotCached() {
+        final TableCache cache = new TableCache(100);
+        put(cache, Category.class, 40);
+
+        put(cache, AgendaItem.class, 101);
+
+        Assert.assertNull(cache.get(AgendaItem.class));
+        Assert.assertNotNull(cache.get(Category.class));
+    }
+
+    public void testTrimMemory() {
+        final TableCache cache = new TableCache(100);
+        put(cache, Category.class, 30);
+        put(cache, Sponsor.class, 30);
+        put(cache, Floor.class, 30);
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        Assert.assertNotNull(cache.get(Category.class));
+        Assert.assertNotNull(cache.get(Sponsor.class));
+        Assert.assertNotNull(cache.get(Floor.class));
+
+        // Down to half the budget, least recently used first.
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        Assert.assertNull(cache.get(Category.class));
+        Assert.assertNull(cache.get(Sponsor.class));
+        Assert.assertNotNull(cache.get(Floor.class));
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE);
+        Assert.assertNull(cache.get(Floor.class));
+
+        // Trimming doesn't invalidate: the next load is cached again.
+        put(cache, Floor.class, 30);
+        Assert.assertNotNull(cache.get(Floor.class));
+    }
+
+    public void testFind() {
+        final TableCache.Table<Category> table = new TableCache.Table<>(
+                Arrays.asList(category("a", 3), category("b", 7), category("c", 5)), 10);
+
+        Assert.assertEquals("b", table.find("b").getId());
+        Assert.assertNull(table.find("d"));
+        Assert.assertEquals(7, table.getLatestUpdatedAt());
+    }
+
+    private static <T extends ParseItem> void put(TableCache cache, Class<T> itemClass,
+                                                  long sizeBytes) {
+        cache.put(itemClass, cache.generation(itemClass), new ArrayList<T>(0), sizeBytes);
+    }
+
+    private static Category category(String id, long updatedAt) {
+        return new Category(id, 0, updatedAt, "Category " + id, 0);
+    }
+}
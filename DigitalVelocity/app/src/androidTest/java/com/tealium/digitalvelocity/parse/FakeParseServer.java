@@ -0,0 +1,472 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.net.Uri;
+
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Iso8601;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * In-memory stand-in for the parts of the Parse REST API the app uses: class queries under
+ * /1/classes with keys, where (including $or), order on one or more fields and limit,
+ * /1/batch, and /1/installations. Point the app at it with
+ * {@link ParseHelper#setEndpoint(String)}.
+ * <p/>
+ * Rows come from {@link #populate} or from a recorded response dump through {@link #load}, and
+ * {@link #put} stamps updatedAt like the backend, so incremental syncs see only what changed.
+ * Responses carry an ETag of their body and are answered "304 Not Modified" when it matches.
+ * Synthetic rows have no images, so a sync against it measures the Parse traffic alone.
+ */
+final class FakeParseServer implements LocalServer.Handler {
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 1000;
+
+    private final LocalServer mServer;
+    private final Map<String, TreeMap<String, JSONObject>> mClasses;
+    private final List<JSONObject> mInstallations;
+    private long mLastUpdate;
+    private int mNextId;
+
+    FakeParseServer() throws IOException {
+        mClasses = new HashMap<>();
+        mInstallations = new ArrayList<>();
+        mServer = new LocalServer(this, HttpClient.MAX_REQUESTS_PER_HOST);
+    }
+
+    String getBaseUrl() {
+        return mServer.getBaseUrl();
+    }
+
+    int getRequestCount() {
+        return mServer.getRequestCount();
+    }
+
+    synchronized List<JSONObject> getInstallations() {
+        return new ArrayList<>(mInstallations);
+    }
+
+    void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    /**
+     * Inserts or replaces the row, assigning an objectId if it has none and stamping updatedAt
+     * (and createdAt, when new) with a time later than any before.
+     *
+     * @return the stored row.
+     */
+    synchronized JSONObject put(String className, JSONObject row) throws JSONException {
+        final TreeMap<String, JSONObject> rows = getRows(className);
+
+        if (!row.has("objectId")) {
+            row.put("objectId", String.format(Locale.ROOT, "%s%06d",
+                    className.substring(0, 1).toLowerCase(Locale.ROOT), mNextId++));
+        }
+
+        // Strictly increasing, so that a watermark never hides a later change.
+        mLastUpdate = Math.max(mLastUpdate + 1, System.currentTimeMillis());
+        final String now = Iso8601.format(mLastUpdate);
+        final JSONObject previous = rows.get(row.getString("objectId"));
+
+        row.put("createdAt", previous == null ? now : previous.getString("createdAt"));
+        row.put("updatedAt", now);
+        rows.put(row.getString("objectId"), row);
+        return row;
+    }
+
+    synchronized JSONObject get(String className, String objectId) {
+        return getRows(className).get(objectId);
+    }
+
+    synchronized List<String> getIds(String className) {
+        return new ArrayList<>(getRows(className).keySet());
+    }
+
+    synchronized void delete(String className, String objectId) {
+        getRows(className).remove(objectId);
+    }
+
+    /**
+     * Loads rows recorded from the real backend: an object mapping each class name to either an
+     * array of rows or a query response, {"results": [...]}. Recorded timestamps are kept.
+     */
+    synchronized void load(InputStream recorded) throws IOException, JSONException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int len;
+        while ((len = recorded.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+
+        final JSONObject dump = new JSONObject(out.toString("UTF-8"));
+        final Iterator<String> classNames = dump.keys();
+        while (classNames.hasNext()) {
+            final String className = classNames.next();
+            final Object value = dump.get(className);
+            final JSONArray rows = value instanceof JSONArray ?
+                    (JSONArray) value : ((JSONObject) value).getJSONArray("results");
+
+            for (int i = 0; i < rows.length(); i++) {
+                final JSONObject row = rows.getJSONObject(i);
+                if (row.has("updatedAt")) {
+                    getRows(className).put(row.getString("objectId"), row);
+                } else {
+                    put(className, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fills every class the app syncs with deterministic rows: one Config and Contact, a few
+     * Categories, Surveys and Questions, and the given number of Events, Companies and Locations.
+     */
+    synchronized void populate(int rowsPerTable, long seed) throws JSONException {
+        final Random random = new Random(seed);
+        final long eventStart = Iso8601.parse("2016-05-16T16:00:00.000Z");
+
+        put("Config", new JSONObject()
+                .put("syncRate", 15)
+                .put("welcomeYear", "2016")
+                .put("purge", false));
+
+        put("Contact", new JSONObject()
+                .put(ParseHelper.Column.EMAIL, "info@example.com")
+                .put(ParseHelper.Column.VISIBLE, true));
+
+        final List<String> categoryIds = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            categoryIds.add(put("Category", new JSONObject()
+                    .put("title", "Category " + i)
+                    .put("priority", i)
+                    .put("eventDate", date(eventStart + i * 86400000L))).getString("objectId"));
+        }
+
+        final List<String> questionIds = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            questionIds.add(put("Question", new JSONObject()
+                    .put("title", "Question " + i + "?")
+                    .put("answers", new JSONArray().put("Yes").put("No").put("Maybe")))
+                    .getString("objectId"));
+        }
+
+        for (int i = 0; i < 4; i++) {
+            put("Survey", new JSONObject()
+                    .put("title", "Survey " + i)
+                    .put("questionIds", new JSONArray(questionIds.subList(i * 5, i * 5 + 5)))
+                    .put("visible", true));
+        }
+
+        final List<String> locationIds = new ArrayList<>();
+        for (int i = 0; i < rowsPerTable; i++) {
+            locationIds.add(put("Location", new JSONObject()
+                    .put("title", "Room " + i)
+                    .put("subTitle", "Floor " + (i % 4))
+                    .put("latitude", 37.7 + random.nextDouble() / 100)
+                    .put("longitude", -122.4 + random.nextDouble() / 100)
+                    .put("priority", i)
+                    .put("visible", true)).getString("objectId"));
+        }
+
+        for (int i = 0; i < rowsPerTable; i++) {
+            final long start = eventStart + random.nextInt(3 * 24) * 3600000L;
+            put("Event", new JSONObject()
+                    .put("title", "Session " + i)
+                    .put("subTitle", "Track " + (i % 5))
+                    .put("description", text(random, 40))
+                    .put("startDate", date(start))
+                    .put("endDate", date(start + 3600000L))
+                    .put("categoryId", categoryIds.get(random.nextInt(categoryIds.size())))
+                    .put("locationId", locationIds.get(random.nextInt(locationIds.size())))
+                    .put("roomName", "Room " + random.nextInt(rowsPerTable))
+                    .put("visible", true));
+        }
+
+        for (int i = 0; i < rowsPerTable; i++) {
+            put("Company", new JSONObject()
+                    .put("title", "Company " + i)
+                    .put("subTitle", text(random, 12))
+                    .put("categoryId", categoryIds.get(random.nextInt(categoryIds.size())))
+                    .put("url", "https://example.com/" + i)
+                    .put("email", "sales" + i + "@example.com")
+                    .put("visible", true));
+        }
+    }
+
+    @Override
+    public Object[] handle(String method, String path, Map<String, String> headers, String body)
+            throws Exception {
+
+        final Uri uri = Uri.parse(path);
+        final List<String> segments = uri.getPathSegments();
+
+        if ("POST".equals(method) && "/1/batch".equals(uri.getPath())) {
+            return respond(batch(new JSONObject(body).getJSONArray("requests")), headers);
+        }
+
+        if ("POST".equals(method) && "/1/installations".equals(uri.getPath())) {
+            final JSONObject installation = new JSONObject(body);
+            synchronized (this) {
+                installation.put("objectId", "i" + mInstallations.size());
+                mInstallations.add(installation);
+            }
+            return new Object[]{201, new JSONObject()
+                    .put("objectId", installation.getString("objectId"))
+                    .put("createdAt", Iso8601.format(System.currentTimeMillis()))};
+        }
+
+        if ("GET".equals(method) && segments.size() == 3 && "classes".equals(segments.get(1))) {
+            final JSONObject params = new JSONObject();
+            for (String name : uri.getQueryParameterNames()) {
+                params.put(name, uri.getQueryParameter(name));
+            }
+            return respond(query(segments.get(2), params), headers);
+        }
+
+        return new Object[]{404, new JSONObject().put("code", 119).put("error", "Not found")};
+    }
+
+    private static Object[] respond(Object response, Map<String, String> headers) {
+        final String body = response.toString();
+        final String eTag = '"' + Integer.toHexString(body.hashCode()) + '"';
+
+        if (eTag.equals(headers.get("if-none-match"))) {
+            return new Object[]{304, null, "ETag: " + eTag};
+        }
+        return new Object[]{200, body, "ETag: " + eTag};
+    }
+
+    private JSONArray batch(JSONArray requests) throws JSONException {
+        final JSONArray results = new JSONArray();
+        for (int i = 0; i < requests.length(); i++) {
+            final JSONObject request = requests.getJSONObject(i);
+            final List<String> segments = Uri.parse(request.getString("path")).getPathSegments();
+            if (segments.size() == 3 && "classes".equals(segments.get(1))) {
+                results.put(new JSONObject().put("success",
+                        query(segments.get(2), request.optJSONObject("body"))));
+            } else {
+                results.put(new JSONObject().put("error", new JSONObject()
+                        .put("code", 119).put("error", "Unsupported in batch")));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * @param params keys, where, order and limit, either as strings or already parsed.
+     */
+    private synchronized JSONObject query(String className, JSONObject params)
+            throws JSONException {
+
+        if (params == null) {
+            params = new JSONObject();
+        }
+
+        final Object whereParam = params.opt("where");
+        final JSONObject where = whereParam instanceof String ?
+                new JSONObject((String) whereParam) : (JSONObject) whereParam;
+        final String keys = params.optString("keys", null);
+        final int limit = Math.min(MAX_LIMIT, params.optInt("limit", DEFAULT_LIMIT));
+
+        final List<JSONObject> matches = new ArrayList<>();
+        for (JSONObject row : getRows(className).values()) {
+            if (where == null || matches(row, where)) {
+                matches.add(row);
+            }
+        }
+
+        final String order = params.optString("order", null);
+        if (order != null) {
+            final String[] fields = order.split(",");
+            Collections.sort(matches, new Comparator<JSONObject>() {
+                @Override
+                public int compare(JSONObject a, JSONObject b) {
+                    for (String field : fields) {
+                        final boolean isDescending = field.startsWith("-");
+                        final String name = isDescending ? field.substring(1) : field;
+                        final int c = compareValues(a.opt(name), b.opt(name));
+                        if (c != 0) {
+                            return isDescending ? -c : c;
+                        }
+                    }
+                    return 0;
+                }
+            });
+        }
+
+        final JSONArray results = new JSONArray();
+        for (int i = 0; i < Math.min(limit, matches.size()); i++) {
+            results.put(project(matches.get(i), keys));
+        }
+        return new JSONObject().put("results", results);
+    }
+
+    private static boolean matches(JSONObject row, JSONObject where) throws JSONException {
+        final Iterator<String> fields = where.keys();
+        while (fields.hasNext()) {
+            final String field = fields.next();
+            final Object condition = where.get(field);
+            final Object value = row.opt(field);
+
+            if ("$or".equals(field)) {
+                if (!matchesAny(row, (JSONArray) condition)) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (!(condition instanceof JSONObject) || ((JSONObject) condition).has("__type")) {
+                if (compareValues(value, condition) != 0) {
+                    return false;
+                }
+                continue;
+            }
+
+            final JSONObject operators = (JSONObject) condition;
+            final Iterator<String> names = operators.keys();
+            while (names.hasNext()) {
+                final String operator = names.next();
+                final Object operand = operators.get(operator);
+
+                final boolean isMatch;
+                switch (operator) {
+                    case "$gt":
+                        isMatch = value != null && compareValues(value, operand) > 0;
+                        break;
+                    case "$gte":
+                        isMatch = value != null && compareValues(value, operand) >= 0;
+                        break;
+                    case "$lt":
+                        isMatch = value != null && compareValues(value, operand) < 0;
+                        break;
+                    case "$lte":
+                        isMatch = value != null && compareValues(value, operand) <= 0;
+                        break;
+                    case "$ne":
+                        isMatch = compareValues(value, operand) != 0;
+                        break;
+                    case "$in":
+                        isMatch = contains((JSONArray) operand, value);
+                        break;
+                    case "$exists":
+                        isMatch = (value != null) == (Boolean) operand;
+                        break;
+                    default:
+                        throw new JSONException("Unsupported operator " + operator);
+                }
+
+                if (!isMatch) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesAny(JSONObject row, JSONArray clauses) throws JSONException {
+        for (int i = 0; i < clauses.length(); i++) {
+            if (matches(row, clauses.getJSONObject(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(JSONArray values, Object value) {
+        for (int i = 0; i < values.length(); i++) {
+            if (compareValues(values.opt(i), value) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Orders numbers numerically, dates (strings or {"__type": "Date"}) chronologically and
+     * anything else by its string form; a missing value sorts first.
+     */
+    private static int compareValues(Object a, Object b) {
+        if (a == null || a == JSONObject.NULL || b == null || b == JSONObject.NULL) {
+            final boolean aIsNull = a == null || a == JSONObject.NULL;
+            final boolean bIsNull = b == null || b == JSONObject.NULL;
+            return aIsNull == bIsNull ? 0 : aIsNull ? -1 : 1;
+        }
+
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+
+        final long aDate = toDate(a);
+        final long bDate = toDate(b);
+        if (aDate != Long.MIN_VALUE && bDate != Long.MIN_VALUE) {
+            return aDate < bDate ? -1 : aDate == bDate ? 0 : 1;
+        }
+
+        return String.valueOf(a).compareTo(String.valueOf(b));
+    }
+
+    private static long toDate(Object value) {
+        if (value instanceof JSONObject) {
+            return Iso8601.parse(((JSONObject) value).optString("iso", null), Long.MIN_VALUE);
+        }
+        return value instanceof String ? Iso8601.parse((String) value, Long.MIN_VALUE) :
+                Long.MIN_VALUE;
+    }
+
+    private static JSONObject project(JSONObject row, String keys) throws JSONException {
+        if (keys == null) {
+            return row;
+        }
+
+        final JSONObject projected = new JSONObject();
+        for (String key : ("objectId,createdAt,updatedAt," + keys).split(",")) {
+            if (key.length() > 0 && row.has(key)) {
+                projected.put(key, row.get(key));
+            }
+        }
+        return projected;
+    }
+
+    private TreeMap<String, JSONObject> getRows(String className) {
+        TreeMap<String, JSONObject> rows = mClasses.get(className);
+        if (rows == null) {
+            mClasses.put(className, rows = new TreeMap<>());
+        }
+        return rows;
+    }
+
+    private static JSONObject date(long millis) throws JSONException {
+        return new JSONObject().put("__type", "Date").put("iso", Iso8601.format(millis));
+    }
+
+    private static String text(Random random, int words) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            for (int j = 2 + random.nextInt(8); j > 0; j--) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,147 @@
+package com.tealium.digitalvelocity.parse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 stand-in for the Parse backend that answers one request per connection and
+ * counts round trips. Connections are served one at a time unless a concurrency is given.
+ */
+public final class LocalServer implements Runnable {
+
+    public interface Handler {
+        /**
+         * @param headers request headers, names in lower case.
+         * @return {status, body} or {status, body, extra header lines}; a byte[] body is sent
+         * as is, anything else as its UTF-8 string. A fourth element, if any, is the number of
+         * body bytes to send before dropping the connection.
+         */
+        Object[] handle(String method, String path, Map<String, String> headers, String body)
+                throws Exception;
+    }
+
+    private final ServerSocket mServerSocket;
+    private final Handler mHandler;
+    private final AtomicInteger mRequestCount;
+    private final ExecutorService mWorkers;
+
+    public LocalServer(Handler handler) throws IOException {
+        this(handler, 1);
+    }
+
+    /**
+     * @param concurrency how many connections are served at once, like a real backend would.
+     */
+    public LocalServer(Handler handler, int concurrency) throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mHandler = handler;
+        mRequestCount = new AtomicInteger();
+        mWorkers = concurrency > 1 ? Executors.newFixedThreadPool(concurrency) : null;
+
+        final Thread thread = new Thread(this, "LocalServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    public void shutdown() throws IOException {
+        mServerSocket.close();
+        if (mWorkers != null) {
+            mWorkers.shutdownNow();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                if (mWorkers == null) {
+                    serveAndClose(socket);
+                } else {
+                    mWorkers.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            serveAndClose(socket);
+                        }
+                    });
+                }
+            } catch (Exception e) {
+                // Closed.
+            }
+        }
+    }
+
+    private void serveAndClose(Socket socket) {
+        try {
+            try {
+                serve(socket);
+            } finally {
+                socket.close();
+            }
+        } catch (Exception e) {
+            // Closed or a malformed request.
+        }
+    }
+
+    private void serve(Socket socket) throws Exception {
+        final BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "UTF-8"));
+
+        final String[] requestLine = in.readLine().split(" ");
+        final Map<String, String> headers = new HashMap<>();
+        String line;
+        while ((line = in.readLine()) != null && line.length() > 0) {
+            final int colon = line.indexOf(':');
+            headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                    line.substring(colon + 1).trim());
+        }
+
+        final int contentLength = headers.containsKey("content-length") ?
+                Integer.parseInt(headers.get("content-length")) : 0;
+
+        final char[] body = new char[contentLength];
+        int read = 0;
+        while (read < contentLength) {
+            final int len = in.read(body, read, contentLength - read);
+            if (len == -1) {
+                break;
+            }
+            read += len;
+        }
+
+        mRequestCount.incrementAndGet();
+        final Object[] result = mHandler.handle(
+                requestLine[0], requestLine[1], headers, new String(body, 0, read));
+
+        final byte[] payload = result[1] == null ? new byte[0] :
+                result[1] instanceof byte[] ? (byte[]) result[1] :
+                        String.valueOf(result[1]).getBytes("UTF-8");
+        final OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + result[0] + " X\r\n" +
+                (result.length > 2 ? result[2] + "\r\n" : "") +
+                "Content-Type: application/json; charset=utf-8\r\n" +
+                "Content-Length: " + payload.length + "\r\n" +
+                "Connection: close\r\n\r\n").getBytes("UTF-8"));
+        out.write(payload, 0, result.length > 3 ? (Integer) result[3] : payload.length);
+        out.flush();
+    }
+}
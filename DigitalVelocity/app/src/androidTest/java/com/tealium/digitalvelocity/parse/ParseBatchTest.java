@@ -0,0 +1,114 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.test.AndroidTestCase;
+
+import com.squareup.okhttp.Request;
+import com.tealium.digitalvelocity.util.HttpClient;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class ParseBatchTest extends AndroidTestCase {
+
+    private LocalServer mServer;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mServer != null) {
+            mServer.shutdown();
+        }
+        super.tearDown();
+    }
+
+    public void testQueriesShareOneRoundTrip() throws Exception {
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                Assert.assertEquals("/1/batch", path);
+
+                final JSONArray requests = new JSONObject(body).getJSONArray("requests");
+                final JSONArray results = new JSONArray();
+                for (int i = 0; i < requests.length(); i++) {
+                    final JSONObject request = requests.getJSONObject(i);
+                    Assert.assertEquals("GET", request.getString("method"));
+                    // The where clause travels as JSON, not as a string.
+                    request.getJSONObject("body").getJSONObject("where");
+
+                    results.put(new JSONObject().put("success", new JSONObject().put("results",
+                            new JSONArray().put(new JSONObject().put("path", request.getString("path"))))));
+                }
+                return new Object[]{200, results};
+            }
+        });
+
+        final ParseBatch batch = new ParseBatch(HttpClient.getInstance());
+        final List<ParseResponse> responses = batch.execute(
+                Arrays.asList(Table.Event, Table.Location, Table.Company),
+                Arrays.asList(query("Event"), query("Location"), query("Company")));
+
+        Assert.assertEquals(1, mServer.getRequestCount());
+        Assert.assertTrue(batch.isSupported());
+        Assert.assertEquals(Table.Location, responses.get(1).getTable());
+        Assert.assertEquals("/1/classes/Company", responses.get(2).getData()
+                .getJSONArray("results").getJSONObject(0).getString("path"));
+    }
+
+    public void testFailedSubrequestIsLeftForRetry() throws Exception {
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                return new Object[]{200, new JSONArray()
+                        .put(new JSONObject().put("success", new JSONObject().put("results", new JSONArray())))
+                        .put(new JSONObject().put("error", new JSONObject().put("code", 101)))};
+            }
+        });
+
+        final ParseBatch batch = new ParseBatch(HttpClient.getInstance());
+        final List<ParseResponse> responses = batch.execute(
+                Arrays.asList(Table.Survey, Table.Question),
+                Arrays.asList(query("Survey"), query("Question")));
+
+        Assert.assertEquals(1, mServer.getRequestCount());
+        Assert.assertTrue(batch.isSupported());
+        Assert.assertNotNull(responses.get(0));
+        Assert.assertNull(responses.get(1));
+    }
+
+    public void testUnsupportedBatchDisablesBatching() throws Exception {
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                return new Object[]{404, new JSONObject().put("error", "unauthorized")};
+            }
+        });
+
+        final ParseBatch batch = new ParseBatch(HttpClient.getInstance());
+        final List<ParseResponse> responses = batch.execute(
+                Arrays.asList(Table.Event, Table.Location),
+                Arrays.asList(query("Event"), query("Location")));
+
+        Assert.assertEquals(1, mServer.getRequestCount());
+        Assert.assertFalse(batch.isSupported());
+        Assert.assertNull(responses.get(0));
+        Assert.assertNull(responses.get(1));
+    }
+
+    private Request query(String className) {
+        return new Request.Builder()
+                .url(mServer.getBaseUrl() + "/1/classes/" + className +
+                        "?keys=objectId&where=%7B%22visible%22%3Atrue%7D")
+                .build();
+    }
+}
@@ -0,0 +1,249 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.test.AndroidTestCase;
+
+import com.squareup.okhttp.Request;
+import com.tealium.digitalvelocity.util.HttpCache;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Iso8601;
+
+import junit.framework.Assert;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParsePagerTest extends AndroidTestCase {
+
+    private static final int ROW_COUNT = 20000;
+
+    private LocalServer mServer;
+    private FakeParseServer mParseServer;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (mServer != null) {
+            mServer.shutdown();
+        }
+        if (mParseServer != null) {
+            mParseServer.shutdown();
+        }
+        super.tearDown();
+    }
+
+    public void testLargeTableIsWalkedCompletely() throws Exception {
+        // Rows share a handful of update times, so pages split runs of equal updatedAt.
+        final JSONArray rows = new JSONArray();
+        for (int i = 0; i < ROW_COUNT; i++) {
+            rows.put(new JSONObject()
+                    .put("objectId", String.format(Locale.ROOT, "e%05d", i))
+                    .put("createdAt", "2016-08-01T12:00:00.000Z")
+                    .put("updatedAt", String.format(Locale.ROOT,
+                            "2016-08-0%dT12:00:00.000Z", 2 + i % 7))
+                    .put("title", "Event " + i)
+                    .put("visible", true));
+        }
+        mParseServer = new FakeParseServer();
+        mParseServer.load(new ByteArrayInputStream(
+                new JSONObject().put("Event", rows).toString().getBytes("UTF-8")));
+
+        final Request query = new Request.Builder()
+                .url(mParseServer.getBaseUrl() + "/1/classes/Event?keys=objectId%2Ctitle" +
+                        "&where=%7B%22visible%22%3Atrue%7D")
+                .build();
+
+        final int[] rowCount = new int[1];
+        final int[] largestPage = new int[1];
+        final int[] lastPages = new int[1];
+        final String[] previous = new String[1];
+
+        new ParsePager(HttpClient.getInstance(), null).fetch(Table.Event, query, null,
+                new ParsePager.Listener() {
+                    @Override
+                    public void onPage(ParseResponse page) {
+                        final JSONArray results = page.getData().optJSONArray("results");
+                        largestPage[0] = Math.max(largestPage[0], results.length());
+
+                        for (int i = 0; i < results.length(); i++) {
+                            final JSONObject row = results.optJSONObject(i);
+                            // The dates are all of the same length, so they sort as text.
+                            final String key = row.optString("updatedAt") + ' ' +
+                                    row.optString("objectId");
+                            if (previous[0] != null) {
+                                Assert.assertTrue(key, key.compareTo(previous[0]) > 0);
+                            }
+                            previous[0] = key;
+                            rowCount[0]++;
+                        }
+
+                        if (page.isLastPage()) {
+                            lastPages[0]++;
+                        }
+                    }
+                });
+
+        Assert.assertEquals(ROW_COUNT, rowCount[0]);
+        Assert.assertEquals(1, lastPages[0]);
+        // No more than a page of rows is ever held at once.
+        Assert.assertEquals(ParsePager.PAGE_SIZE, largestPage[0]);
+        // Twenty full pages, then an empty one.
+        Assert.assertEquals(ROW_COUNT / ParsePager.PAGE_SIZE + 1, mParseServer.getRequestCount());
+    }
+
+    public void testRowEditedDuringWalkIsSeenLast() throws Exception {
+        final int rowCount = 3 * ParsePager.PAGE_SIZE;
+        mParseServer = new FakeParseServer();
+        for (int i = 0; i < rowCount; i++) {
+            mParseServer.put("Event", new JSONObject().put("title", "Event " + i));
+        }
+
+        final Request query = new Request.Builder()
+                .url(mParseServer.getBaseUrl() + "/1/classes/Event?keys=title")
+                .build();
+        final List<JSONObject> seen = new ArrayList<>();
+
+        new ParsePager(HttpClient.getInstance(), null).fetch(Table.Event, query, null,
+                new ParsePager.Listener() {
+                    @Override
+                    public void onPage(ParseResponse page) throws JSONException {
+                        final JSONArray results = page.getData().getJSONArray("results");
+                        if (seen.isEmpty()) {
+                            // Already walked past; an objectId walk would never see the edit.
+                            final JSONObject first = results.getJSONObject(0);
+                            mParseServer.put("Event", new JSONObject(first.toString())
+                                    .put("title", "Edited"));
+                        }
+                        for (int i = 0; i < results.length(); i++) {
+                            seen.add(results.getJSONObject(i));
+                        }
+                    }
+                });
+
+        Assert.assertEquals(rowCount + 1, seen.size());
+        final JSONObject last = seen.get(seen.size() - 1);
+        Assert.assertEquals(seen.get(0).getString("objectId"), last.getString("objectId"));
+        Assert.assertEquals("Edited", last.getString("title"));
+
+        // So the newest updatedAt seen, the watermark, is the last row's.
+        long newest = 0;
+        for (JSONObject row : seen) {
+            newest = Math.max(newest, Iso8601.parse(row.getString("updatedAt")));
+        }
+        Assert.assertEquals(newest, Iso8601.parse(last.getString("updatedAt")));
+    }
+
+    public void testNextPageIsRequestedOncePersisted() throws Exception {
+        final int pageCount = 5;
+        final AtomicInteger persisted = new AtomicInteger();
+        final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+        mServer = new LocalServer(new LocalServer.Handler() {
+            private final AtomicInteger mRequests = new AtomicInteger();
+
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                final int page = mRequests.getAndIncrement();
+                if (persisted.get() != page) {
+                    failures.add("Page " + page + " requested with " + persisted.get() +
+                            " persisted");
+                }
+
+                final JSONArray results = new JSONArray();
+                final int size = page < pageCount - 1 ? ParsePager.PAGE_SIZE : 1;
+                for (int i = 0; i < size; i++) {
+                    results.put(new JSONObject()
+                            .put("objectId", String.format(Locale.ROOT, "e%02d%05d", page, i))
+                            .put("updatedAt", "2016-08-02T12:00:00.000Z"));
+                }
+                return new Object[]{200, new JSONObject().put("results", results)};
+            }
+        });
+
+        final Request query = new Request.Builder()
+                .url(mServer.getBaseUrl() + "/1/classes/Event?keys=objectId")
+                .build();
+        final File out = new File(getContext().getCacheDir(), "pager-test");
+
+        new ParsePager(HttpClient.getInstance(), null).fetch(Table.Event, query, null,
+                new ParsePager.Listener() {
+                    @Override
+                    public void onPage(ParseResponse page) throws IOException {
+                        // Slower than the server, as a write to flash can be.
+                        final FileOutputStream stream = new FileOutputStream(out);
+                        try {
+                            stream.write(page.getData().toString().getBytes("UTF-8"));
+                            stream.getFD().sync();
+                            Thread.sleep(50);
+                        } catch (InterruptedException e) {
+                            throw new IOException(e);
+                        } finally {
+                            stream.close();
+                        }
+                        persisted.incrementAndGet();
+                    }
+                });
+
+        out.delete();
+        Assert.assertEquals(Collections.<String>emptyList(), failures);
+        Assert.assertEquals(pageCount, persisted.get());
+        Assert.assertEquals(pageCount, mServer.getRequestCount());
+    }
+
+    public void testUnchangedPageIsNotModified() throws Exception {
+        mServer = new LocalServer(new LocalServer.Handler() {
+            @Override
+            public Object[] handle(
+                    String method, String path, Map<String, String> headers, String body)
+                    throws Exception {
+                if ("\"v1\"".equals(headers.get("if-none-match"))) {
+                    return new Object[]{304, null, "ETag: \"v1\""};
+                }
+                return new Object[]{200, new JSONObject().put("results", new JSONArray()
+                        .put(new JSONObject().put("objectId", "s1"))), "ETag: \"v1\""};
+            }
+        });
+
+        final HttpCache cache = new HttpCache(
+                new File(getContext().getCacheDir(), "http-test"), HttpCache.MAX_SIZE_BYTES);
+        cache.clear();
+
+        final Request query = new Request.Builder()
+                .url(mServer.getBaseUrl() + "/1/classes/Survey?keys=title")
+                .build();
+        final ParsePager pager = new ParsePager(HttpClient.getInstance(), cache);
+        final ParseResponse[] received = new ParseResponse[1];
+        final ParsePager.Listener listener = new ParsePager.Listener() {
+            @Override
+            public void onPage(ParseResponse page) {
+                received[0] = page;
+            }
+        };
+
+        Assert.assertFalse(pager.hasValidators());
+        pager.fetch(Table.Survey, query, null, listener);
+        Assert.assertFalse(received[0].isNotModified());
+        Assert.assertTrue(pager.hasValidators());
+
+        pager.fetch(Table.Survey, query, null, listener);
+        Assert.assertTrue(received[0].isNotModified());
+        Assert.assertTrue(received[0].isLastPage());
+
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, mServer.getRequestCount());
+        cache.clear();
+    }
+}
@@ -0,0 +1,159 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.content.SharedPreferences;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.data.Model;
+import com.tealium.digitalvelocity.event.Purge;
+import com.tealium.digitalvelocity.event.SyncRequest;
+import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Metrics;
+
+import junit.framework.Assert;
+
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Runs a cold and then an incremental sync through the app's {@link SyncManager} against a
+ * {@link FakeParseServer}, and logs the wall time, round trips, bytes and allocations of each
+ * under {@link Constant#TAG}, e.g. "Cold sync: 2113 ms, 31 requests, ...".
+ */
+public class SyncBenchmarkTest extends AndroidTestCase {
+
+    private static final int ROWS_PER_TABLE = 2000;
+    private static final int CHANGED_EVENTS = 50;
+    private static final long TIMEOUT_MS = 120000;
+
+    private static final Table[] GRAPH_TABLES = {
+            Table.Category, Table.Event, Table.Company, Table.Location,
+            Table.Survey, Table.Question, Table.Contact};
+
+    private FakeParseServer mServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new FakeParseServer();
+        mServer.populate(ROWS_PER_TABLE, 1);
+        ParseHelper.setEndpoint(mServer.getBaseUrl());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ParseHelper.setEndpoint(null);
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testColdThenIncrementalSync() throws Exception {
+        // Cold: nothing stored, no watermarks and no validators.
+        EventBus.getDefault().post(new Purge());
+        final SharedPreferences.Editor editor = Model.getInstance().getSharedPreferences().edit();
+        for (Table table : Table.values()) {
+            if (table.getSPKey() != null) {
+                editor.remove(table.getSPKey());
+            }
+        }
+        editor.commit();
+
+        final Run cold = sync("Cold");
+        Assert.assertEquals(ROWS_PER_TABLE, cold.getRows(Table.Event));
+        Assert.assertEquals(ROWS_PER_TABLE, cold.getRows(Table.Company));
+        Assert.assertEquals(ROWS_PER_TABLE, cold.getRows(Table.Location));
+
+        final List<String> eventIds = mServer.getIds("Event");
+        for (int i = 0; i < CHANGED_EVENTS; i++) {
+            final JSONObject event = mServer.get("Event", eventIds.get(i * 7));
+            mServer.put("Event", new JSONObject(event.toString()).put("title", "Renamed " + i));
+        }
+
+        final Run incremental = sync("Incremental");
+        Assert.assertEquals(CHANGED_EVENTS, incremental.getRows(Table.Event));
+        Assert.assertEquals(0, incremental.getRows(Table.Company));
+        Assert.assertTrue(incremental.mBytes < cold.mBytes / 10);
+    }
+
+    /**
+     * Forces a sync of every table and waits for each fetch to have finished.
+     */
+    @SuppressWarnings("deprecation")
+    private Run sync(String name) throws Exception {
+        final Metrics metrics = Metrics.getInstance();
+        final Map<Table, Long> fetchesBefore = new EnumMap<>(Table.class);
+        final Map<Table, Long> rowsBefore = new EnumMap<>(Table.class);
+        for (Table table : GRAPH_TABLES) {
+            fetchesBefore.put(table, getFetchCount(table));
+            rowsBefore.put(table, metrics.getCount("sync." + table.name() + ".rows"));
+        }
+
+        final HttpClient httpClient = HttpClient.getInstance();
+        final long bytesBefore = httpClient.getBytesReceived();
+        final int requestsBefore = mServer.getRequestCount();
+
+        Debug.resetAllCounts();
+        Debug.startAllocCounting();
+        final long start = SystemClock.uptimeMillis();
+
+        // Handled on this thread up to the fetches, which run in the background.
+        EventBus.getDefault().post(new SyncRequest(true));
+
+        for (Table table : GRAPH_TABLES) {
+            while (getFetchCount(table) == fetchesBefore.get(table)) {
+                if (SystemClock.uptimeMillis() - start > TIMEOUT_MS) {
+                    Debug.stopAllocCounting();
+                    Assert.fail(table.name() + " was not fetched within " + TIMEOUT_MS + " ms");
+                }
+                SystemClock.sleep(10);
+            }
+        }
+
+        final Run run = new Run();
+        run.mWallMs = SystemClock.uptimeMillis() - start;
+        Debug.stopAllocCounting();
+        run.mAllocations = Debug.getGlobalAllocCount();
+        run.mAllocatedBytes = Debug.getGlobalAllocSize();
+        run.mRequests = mServer.getRequestCount() - requestsBefore;
+        run.mBytes = httpClient.getBytesReceived() - bytesBefore;
+        for (Table table : GRAPH_TABLES) {
+            run.mRows.put(table,
+                    metrics.getCount("sync." + table.name() + ".rows") - rowsBefore.get(table));
+        }
+
+        Log.i(Constant.TAG, String.format(Locale.ROOT,
+                "%s sync: %d ms, %d requests, %d bytes, %d allocations (%d bytes), rows %s",
+                name, run.mWallMs, run.mRequests, run.mBytes, run.mAllocations,
+                run.mAllocatedBytes, run.mRows));
+        return run;
+    }
+
+    private static long getFetchCount(Table table) {
+        final Metrics.Histogram fetches =
+                Metrics.getInstance().getHistogram("sync." + table.name() + ".fetch_ms");
+        return fetches == null ? 0 : fetches.getCount();
+    }
+
+    private static final class Run {
+        private final Map<Table, Long> mRows = new EnumMap<>(Table.class);
+        private long mWallMs;
+        private int mRequests;
+        private long mBytes;
+        private int mAllocations;
+        private int mAllocatedBytes;
+
+        private long getRows(Table table) {
+            final Long rows = mRows.get(table);
+            return rows == null ? 0 : rows;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.tealium.digitalvelocity.data.Model;
+import com.tealium.digitalvelocity.event.LoadRequest;
+import com.tealium.digitalvelocity.event.LoadedEvent;
+import com.tealium.digitalvelocity.event.Purge;
+import com.tealium.digitalvelocity.event.SyncRequest;
+import com.tealium.digitalvelocity.util.Metrics;
+
+import junit.framework.Assert;
+
+import org.json.JSONObject;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import de.greenrobot.event.EventBus;
+
+public class SyncManagerTest extends AndroidTestCase {
+
+    private static final int ROWS_PER_TABLE = 300;
+    private static final long TIMEOUT_MS = 60000;
+
+    private static final Table[] DATA_TABLES = {
+            Table.Category, Table.Event, Table.Company, Table.Location,
+            Table.Survey, Table.Question};
+
+    private FakeParseServer mServer;
+    private Object mSubscriber;
+    private int mAgendaSize;
+    private int mSponsorCount;
+    private int mCoordinateCount;
+    private int mSurveyCount;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new FakeParseServer();
+        mServer.populate(ROWS_PER_TABLE, 1);
+        ParseHelper.setEndpoint(mServer.getBaseUrl());
+
+        mSubscriber = new Object() {
+            @SuppressWarnings("unused")
+            public void onEvent(LoadedEvent.Agenda event) {
+                mAgendaSize = event.getItems().size();
+            }
+
+            @SuppressWarnings("unused")
+            public void onEvent(LoadedEvent.Sponsors event) {
+                mSponsorCount = event.getItems().size();
+            }
+
+            @SuppressWarnings("unused")
+            public void onEvent(LoadedEvent.CoordinateData event) {
+                mCoordinateCount = event.getItems().size();
+            }
+
+            @SuppressWarnings("unused")
+            public void onEvent(LoadedEvent.Surveys event) {
+                mSurveyCount = event.getItems().size();
+            }
+        };
+        EventBus.getDefault().register(mSubscriber);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        EventBus.getDefault().unregister(mSubscriber);
+        ParseHelper.setEndpoint(null);
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testPurgeFromConfigRepopulatesTables() throws Exception {
+        EventBus.getDefault().post(new Purge());
+        final SharedPreferences.Editor editor = Model.getInstance().getSharedPreferences().edit();
+        for (Table table : Table.values()) {
+            if (table.getSPKey() != null) {
+                editor.remove(table.getSPKey());
+            }
+        }
+        editor.commit();
+
+        sync();
+        assertStored();
+
+        // Nothing but the Config changes, so only the purge can have the rows sent again.
+        final JSONObject config = mServer.get("Config", mServer.getIds("Config").get(0));
+        mServer.put("Config", new JSONObject(config.toString()).put("purge", true));
+
+        sync();
+        assertStored();
+    }
+
+    /**
+     * Loads every purged table back from the stores, on this thread.
+     */
+    private void assertStored() {
+        final EventBus bus = EventBus.getDefault();
+        bus.post(new LoadRequest.Agenda());
+        bus.post(new LoadRequest.Sponsors());
+        bus.post(new LoadRequest.Coordinates());
+        bus.post(new LoadRequest.Surveys());
+
+        Assert.assertEquals(ROWS_PER_TABLE, mAgendaSize);
+        Assert.assertEquals(ROWS_PER_TABLE, mSponsorCount);
+        Assert.assertEquals(ROWS_PER_TABLE, mCoordinateCount);
+        Assert.assertEquals(4, mSurveyCount);
+    }
+
+    /**
+     * Forces a sync and waits for every data table to have been fetched.
+     */
+    private void sync() {
+        final Map<Table, Long> fetchesBefore = new EnumMap<>(Table.class);
+        for (Table table : DATA_TABLES) {
+            fetchesBefore.put(table, getFetchCount(table));
+        }
+
+        final long start = SystemClock.uptimeMillis();
+        EventBus.getDefault().post(new SyncRequest(true));
+
+        for (Table table : DATA_TABLES) {
+            while (getFetchCount(table) == fetchesBefore.get(table)) {
+                if (SystemClock.uptimeMillis() - start > TIMEOUT_MS) {
+                    Assert.fail(table.name() + " was not fetched within " + TIMEOUT_MS + " ms");
+                }
+                SystemClock.sleep(10);
+            }
+        }
+    }
+
+    private static long getFetchCount(Table table) {
+        final Metrics.Histogram fetches =
+                Metrics.getInstance().getHistogram("sync." + table.name() + ".fetch_ms");
+        return fetches == null ? 0 : fetches.getCount();
+    }
+}
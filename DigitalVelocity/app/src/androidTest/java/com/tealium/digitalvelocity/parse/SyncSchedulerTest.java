@@ -0,0 +1,79 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.content.Context;
+import android.test.AndroidTestCase;
+
+import junit.framework.Assert;
+
+import java.util.Random;
+
+public class SyncSchedulerTest extends AndroidTestCase {
+
+    private static final long SYNC_RATE = 15 * 60000L;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        clear();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        clear();
+        super.tearDown();
+    }
+
+    public void testFailuresBackOffUpToTheSyncRate() throws Exception {
+        final SyncScheduler scheduler = new SyncScheduler(getContext(), new Random(1));
+        final long now = 1000000L;
+
+        long previous = 0;
+        for (int failures = 1; failures <= 40; failures++) {
+            final long backoff = SyncScheduler.getBackoff(failures, SYNC_RATE);
+            Assert.assertTrue(backoff >= previous);
+            previous = backoff;
+
+            final long retryIn = scheduler.onFailure(Table.Event, now, SYNC_RATE) - now;
+            Assert.assertTrue(retryIn >= backoff / 2);
+            Assert.assertTrue(retryIn <= backoff);
+        }
+
+        Assert.assertEquals(SyncScheduler.BASE_BACKOFF_MS, SyncScheduler.getBackoff(1, SYNC_RATE));
+        Assert.assertTrue(previous <= SYNC_RATE + SYNC_RATE / 10 + 1);
+        Assert.assertEquals(40, scheduler.getFailureCount(Table.Event));
+    }
+
+    public void testRetriesAreSpreadOut() throws Exception {
+        final SyncScheduler scheduler = new SyncScheduler(getContext(), new Random(2));
+        final long now = 1000000L;
+
+        long earliest = Long.MAX_VALUE;
+        long latest = 0;
+        for (int device = 0; device < 100; device++) {
+            scheduler.reset(Table.Survey);
+            final long next = scheduler.onFailure(Table.Survey, now, SYNC_RATE);
+            earliest = Math.min(earliest, next);
+            latest = Math.max(latest, next);
+        }
+
+        // A hundred devices failing together do not all come back at the same moment.
+        Assert.assertTrue(latest - earliest > SyncScheduler.BASE_BACKOFF_MS / 4);
+    }
+
+    public void testStateSurvivesANewInstance() throws Exception {
+        final long now = 1000000L;
+        new SyncScheduler(getContext()).onSuccess(Table.Location, now, SYNC_RATE);
+
+        final SyncScheduler restored = new SyncScheduler(getContext());
+        Assert.assertEquals(now, restored.getLastSuccess(Table.Location));
+        Assert.assertFalse(restored.isDue(Table.Location, now + SYNC_RATE - 1, SYNC_RATE));
+        Assert.assertTrue(restored.isDue(Table.Location, now + 2 * SYNC_RATE, SYNC_RATE));
+        // The clock went back further than any schedule reaches.
+        Assert.assertTrue(restored.isDue(Table.Location, now - 2 * SYNC_RATE, SYNC_RATE));
+    }
+
+    private void clear() {
+        getContext().getSharedPreferences(SyncScheduler.SP_NAME, Context.MODE_PRIVATE)
+                .edit().clear().commit();
+    }
+}
@@ -0,0 +1,117 @@
+package com.tealium.digitalvelocity.util;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+
+import junit.framework.Assert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class BitmapDecoderTest extends AndroidTestCase {
+
+    private File mFloor;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFloor = new File(getContext().getCacheDir(), "bitmap-decoder-test.png");
+
+        final Bitmap bitmap = Bitmap.createBitmap(1600, 1200, Bitmap.Config.ARGB_8888);
+        final FileOutputStream out = new FileOutputStream(mFloor);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        } finally {
+            out.close();
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mFloor.delete();
+        super.tearDown();
+    }
+
+    public void testSampleSize() {
+        Assert.assertEquals(1, BitmapDecoder.getSampleSize(1600, 1200, 0, 0));
+        Assert.assertEquals(1, BitmapDecoder.getSampleSize(1600, 1200, 1600, 1200));
+        Assert.assertEquals(2, BitmapDecoder.getSampleSize(1600, 1200, 800, 600));
+        // Never below the requested size in either dimension.
+        Assert.assertEquals(2, BitmapDecoder.getSampleSize(1600, 1200, 400, 600));
+        Assert.assertEquals(4, BitmapDecoder.getSampleSize(1600, 1200, 400, 0));
+    }
+
+    public void testDecodesNoLargerThanShown() throws Exception {
+        final Bitmap bitmap = new BitmapDecoder(Long.MAX_VALUE).decode(mFloor, 400, 300);
+        Assert.assertEquals(400, bitmap.getWidth());
+        Assert.assertEquals(300, bitmap.getHeight());
+        Assert.assertTrue(bitmap.isMutable());
+    }
+
+    public void testReleasedBitmapIsDecodedInto() throws Exception {
+        final BitmapDecoder decoder = new BitmapDecoder(Long.MAX_VALUE);
+        final Bitmap first = decoder.decode(mFloor, 0, 0);
+        decoder.release(first);
+
+        final Bitmap second = decoder.decode(mFloor, 0, 0);
+        Assert.assertSame(first, second);
+        Assert.assertFalse(second.isRecycled());
+    }
+
+    public void testBudgetIsKept() throws Exception {
+        // Room for one full-size decode and a quarter.
+        final BitmapDecoder decoder = new BitmapDecoder(1600 * 1200 * 5);
+
+        final Bitmap first = decoder.decode(mFloor, 0, 0);
+        Assert.assertEquals(1600, first.getWidth());
+
+        final Bitmap second = decoder.decode(mFloor, 0, 0);
+        Assert.assertEquals(800, second.getWidth());
+    }
+
+    public void testBudgetIsKeptByConcurrentDecodes() throws Exception {
+        final BitmapDecoder decoder = new BitmapDecoder(1600 * 1200 * 5);
+        final List<Bitmap> bitmaps = Collections.synchronizedList(new ArrayList<Bitmap>());
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+
+        // Room for one full-size decode and a quarter, between them.
+        for (int i = 0; i < 2; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        bitmaps.add(decoder.decode(mFloor, 0, 0));
+                    } catch (Throwable t) {
+                        failures.add(t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(Collections.<Throwable>emptyList(), failures);
+
+        // The second found room only once the first had reserved its own.
+        long bytes = 0;
+        int fullSize = 0;
+        for (Bitmap bitmap : bitmaps) {
+            bytes += bitmap.getByteCount();
+            if (bitmap.getWidth() == 1600) {
+                fullSize++;
+            }
+        }
+        Assert.assertTrue("Decoded " + bytes + " bytes", bytes <= decoder.getMaxBytes());
+        Assert.assertEquals(1, fullSize);
+    }
+}
@@ -87,7 +87,14 @@ public final class AgendaActivity extends DrawerLayoutActivity {
 
     @SuppressWarnings("unused")
     public void onEventMainThread(SyncCompleteEvent.ParseEvent event) {
-        EventBus.getDefault().post(new LoadRequest.Agenda());
+        if (!this.adapter.isLoaded()) {
+            EventBus.getDefault().post(new LoadRequest.Agenda());
+            return;
+        }
+
+        // The adapter has already applied the sync's ChangedEvent.Agenda.
+        findViewById(R.id.agenda_label_none)
+                .setVisibility(this.adapter.getAgendaItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
     @SuppressWarnings("unused")
@@ -134,7 +134,8 @@ public final class AgendaDetailActivity extends Activity {
         this.favoriteCheckBox.setChecked(Model.getInstance().isAgendaFavorite(item));
         this.favoriteCheckBox.setOnCheckedChangeListener(createCheckedChangeListener(item));
 
-        final File file = IOUtils.getImageFile(this.imageView.getContext(), item.getId());
+        final File file = IOUtils.getImageFile(this.imageView.getContext(), item.getId(),
+                getResources().getDimensionPixelSize(R.dimen.agenda_detail_image_width));
         final boolean hasFAValue = !Util.isEmptyOrNull(item.getFontAwesomeValue());
         final boolean imgExists = file != null;
 
@@ -38,7 +38,7 @@ public final class AlarmReceiver extends BroadcastReceiver {
                 Util.attemptToStartMonitoringBeacons(context);
                 break;
             case REQUEST_STOP:
-                final EstimoteManager estimoteManager = EstimoteManager.getInstance();
+                final EstimoteManager estimoteManager = Model.getInstance().getEstimoteManager();
                 if (estimoteManager.isListening()) {
                     estimoteManager.stop();
                 }
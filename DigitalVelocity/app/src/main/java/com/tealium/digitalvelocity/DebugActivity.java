@@ -6,6 +6,7 @@ import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -22,7 +23,10 @@ import com.tealium.beacon.event.BeaconEntered;
 import com.tealium.beacon.event.BeaconExited;
 import com.tealium.beacon.event.BeaconUpdate;
 import com.tealium.digitalvelocity.data.IOUtils;
+import com.tealium.digitalvelocity.event.ZipEvent;
 import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpCache;
+import com.tealium.digitalvelocity.util.Metrics;
 
 import org.json.JSONObject;
 
@@ -83,7 +87,7 @@ public final class DebugActivity extends Activity {
 
     private AdapterView.OnItemSelectedListener createOptionListener() {
 
-        final Map<String, Controller> controllers = new HashMap<>(3);
+        final Map<String, Controller> controllers = new HashMap<>(6);
 
         controllers.put(
                 this.getString(R.string.debug_option_beacon_events),
@@ -97,6 +101,13 @@ public final class DebugActivity extends Activity {
                 getString(R.string.debug_option_sp),
                 new SPController());
 
+        controllers.put(
+                getString(R.string.debug_option_http_cache),
+                new HttpCacheController());
+
+        controllers.put(
+                getString(R.string.debug_option_metrics),
+                new MetricsController());
 
         return new AdapterView.OnItemSelectedListener() {
             @Override
@@ -253,6 +264,153 @@ public final class DebugActivity extends Activity {
 
     }
 
+    private class HttpCacheController implements Controller {
+
+        private final ExpandableListView expListView;
+
+        private HttpCacheController() {
+            this.expListView = (ExpandableListView) findViewById(R.id.debug_content_exp_list);
+        }
+
+        @Override
+        public void onSelection() {
+            final HttpCache cache = HttpCache.getInstance(DebugActivity.this);
+            final int hits = cache.getHitCount();
+            final int misses = cache.getMissCount();
+
+            this.expListView.setAdapter(new LinesAdapter(
+                    "Hits: " + hits,
+                    "Misses: " + misses,
+                    "Hit rate: " + (hits + misses == 0 ? "-" : (100 * hits / (hits + misses)) + "%"),
+                    "Entries: " + cache.getEntryCount(),
+                    "Size: " + cache.getSizeBytes() + " / " + HttpCache.MAX_SIZE_BYTES + " bytes"));
+            this.expListView.setVisibility(View.VISIBLE);
+        }
+
+        @Override
+        public void onDeselection() {
+            this.expListView.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Shows {@link Metrics} refreshed every second; tapping a line exports them with the
+     * {@link ZipEvent} bundle.
+     */
+    private class MetricsController implements Controller, Runnable,
+            ExpandableListView.OnGroupClickListener {
+
+        private static final long REFRESH_MS = 1000;
+
+        private final ExpandableListView expListView;
+        private final Handler handler;
+
+        private MetricsController() {
+            this.expListView = (ExpandableListView) findViewById(R.id.debug_content_exp_list);
+            this.handler = new Handler();
+        }
+
+        @Override
+        public void onSelection() {
+            this.run();
+            this.expListView.setVisibility(View.VISIBLE);
+            this.expListView.setOnGroupClickListener(this);
+        }
+
+        @Override
+        public void onDeselection() {
+            this.handler.removeCallbacks(this);
+            this.expListView.setVisibility(View.GONE);
+            this.expListView.setOnGroupClickListener(null);
+        }
+
+        @Override
+        public void run() {
+            final List<String> lines = Metrics.getInstance().describe();
+            if (lines.isEmpty()) {
+                lines.add("Nothing recorded yet");
+            }
+
+            this.expListView.setAdapter(new LinesAdapter(lines.toArray(new String[lines.size()])));
+            this.handler.postDelayed(this, REFRESH_MS);
+        }
+
+        @Override
+        public boolean onGroupClick(ExpandableListView parent, View v, int groupPosition, long id) {
+            EventBus.getDefault().post(new ZipEvent());
+            Toast.makeText(DebugActivity.this, "Exporting to DigitalVelocity.zip", Toast.LENGTH_SHORT).show();
+            return true;
+        }
+    }
+
+    private static class LinesAdapter extends BaseExpandableListAdapter {
+
+        private final String[] lines;
+
+        private LinesAdapter(String... lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public int getGroupCount() {
+            return this.lines.length;
+        }
+
+        @Override
+        public int getChildrenCount(int groupPosition) {
+            return 0;
+        }
+
+        @Override
+        public Object getGroup(int groupPosition) {
+            return this.lines[groupPosition];
+        }
+
+        @Override
+        public Object getChild(int groupPosition, int childPosition) {
+            return null;
+        }
+
+        @Override
+        public long getGroupId(int groupPosition) {
+            return groupPosition;
+        }
+
+        @Override
+        public long getChildId(int groupPosition, int childPosition) {
+            return 0;
+        }
+
+        @Override
+        public boolean hasStableIds() {
+            return false;
+        }
+
+        @Override
+        public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+
+            TextView label = (TextView) convertView;
+            if (label == null) {
+                label = (TextView) LayoutInflater.from(parent.getContext())
+                        .inflate(R.layout.item_debug_sp_group, parent, false);
+            }
+
+            label.setText(this.lines[groupPosition]);
+
+            return label;
+        }
+
+        @Override
+        public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+            return null;
+        }
+
+        @Override
+        public boolean isChildSelectable(int groupPosition, int childPosition) {
+            return false;
+        }
+    }
+
     private class SPController implements Controller {
 
         private final ExpandableListView expListView;
@@ -10,6 +10,7 @@ import com.tealium.digitalvelocity.data.Model;
 import com.tealium.digitalvelocity.data.TrackingManager;
 import com.tealium.digitalvelocity.push.gcm.PushListenerService;
 import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.StartupGraph;
 
 import de.greenrobot.event.EventBus;
 
@@ -34,13 +35,43 @@ public final class DigitalVelocityApp extends MultiDexApplication {
 
         PushListenerService.setPendingIntentActivityClass(NotificationsActivity.class);
 
-        Model.setup(this);
-        TrackingManager tm = new TrackingManager(this);
-        this.registerActivityLifecycleCallbacks(tm);
-        EventBus.getDefault().register(tm);
+        final StartupGraph startup = new StartupGraph();
 
-        BeaconService.start(this);
-        AlarmReceiver.setup(this);
+        startup.run("model", new Runnable() {
+            @Override
+            public void run() {
+                Model.setup(DigitalVelocityApp.this);
+            }
+        });
+
+        // Registered before the first activity starts so its resume is tracked.
+        startup.run("tracking", new Runnable() {
+            @Override
+            public void run() {
+                TrackingManager tm = new TrackingManager(DigitalVelocityApp.this);
+                registerActivityLifecycleCallbacks(tm);
+                EventBus.getDefault().register(tm);
+            }
+        });
+
+        startup.addBackground("keys", new Runnable() {
+            @Override
+            public void run() {
+                Model.getInstance().getKeyManager();
+            }
+        }).addMain("beacons", new Runnable() {
+            @Override
+            public void run() {
+                // Estimote's BeaconManager needs a Looper thread.
+                Model.getInstance().getEstimoteManager();
+            }
+        }, "keys").addMain("monitoring", new Runnable() {
+            @Override
+            public void run() {
+                BeaconService.start(DigitalVelocityApp.this);
+                AlarmReceiver.setup(DigitalVelocityApp.this);
+            }
+        }, "beacons").start();
 
         if (BuildConfig.DEBUG) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
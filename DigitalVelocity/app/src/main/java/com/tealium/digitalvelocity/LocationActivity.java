@@ -78,6 +78,8 @@ public final class LocationActivity extends DrawerLayoutActivity {
         bus.unregister(mMapController);
         bus.unregister(mLayoutController);
         bus.unregister(this);
+        // Decoded again when the floors are loaded on the next start.
+        mLayoutController.releaseImage();
 
         super.onStop();
     }
@@ -12,31 +12,64 @@ import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.Model;
 import com.tealium.digitalvelocity.data.gson.AgendaItem;
 import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.event.ChangedEvent;
 import com.tealium.digitalvelocity.event.LoadedEvent;
+import com.tealium.digitalvelocity.event.Purge;
 import com.tealium.digitalvelocity.util.Constant;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 public final class AgendaAdapter extends BaseAdapter {
 
-    private final TreeMap<Category, List<AgendaItem>> source;
+    // Items sharing a start time and title are still distinct rows.
+    private static final Comparator<AgendaItem> ITEM_ORDER = new Comparator<AgendaItem>() {
+        @Override
+        public int compare(AgendaItem lhs, AgendaItem rhs) {
+            final int result = lhs.compareTo(rhs);
+            return result == 0 ? lhs.getId().compareTo(rhs.getId()) : result;
+        }
+    };
+
+    private final TreeMap<Category, TreeSet<AgendaItem>> source;
+    private final Map<String, AgendaItem> itemsById;
     private final ArrayList<Comparable> stagedItems;
+    // Row of each staged category's header in stagedItems; its items follow it in ITEM_ORDER.
+    private final TreeMap<Category, Integer> stagedOffsets;
     private final View noFavoritesLabel;
 
     private boolean isFilteringFavorites;
+    private boolean isLoaded;
 
     private long latestUpdated;
 
     public AgendaAdapter(@NonNull View noFavoritesLabel) {
         this.noFavoritesLabel = noFavoritesLabel;
         this.source = new TreeMap<>();
+        this.itemsById = new HashMap<>();
         this.stagedItems = new ArrayList<>();
+        this.stagedOffsets = new TreeMap<>();
+    }
+
+    /**
+     * @return whether a full agenda has been loaded, after which changes are applied in place.
+     */
+    public boolean isLoaded() {
+        return this.isLoaded;
+    }
+
+    /**
+     * @return the number of agenda items, regardless of filtering.
+     */
+    public int getAgendaItemCount() {
+        return this.itemsById.size();
     }
 
     @Override
@@ -123,28 +156,173 @@ public final class AgendaAdapter extends BaseAdapter {
             return; // no changes.
         }
 
+        this.isLoaded = true;
         this.latestUpdated = event.getLatestUpdatedAt();
         this.source.clear();
+        this.itemsById.clear();
 
         for (AgendaItem item : event.getItems()) {
+            this.addItem(item);
+        }
 
-            if (item.getCategory() == null) {
-                Log.e(Constant.TAG, "Null category for " + item.getId(), new IllegalArgumentException());
-                continue;
-            }
+        this.stageItems(this.source.size() + this.itemsById.size());
+        this.notifyDataSetChanged();
+    }
 
-            List<AgendaItem> list = this.source.get(item.getCategory());
-            if (list == null) {
-                this.source.put(item.getCategory(), list = new LinkedList<>());
-            }
+    @SuppressWarnings("unused")
+    public void onEventMainThread(ChangedEvent.Agenda event) {
+
+        if (!this.isLoaded) {
+            return; // the pending full load includes these changes.
+        }
+
+        for (String id : event.getRemovedIds()) {
+            this.unstageItem(this.removeItem(id));
+        }
+
+        for (AgendaItem item : event.getAdded()) {
+            this.unstageItem(this.removeItem(item.getId()));
+            this.stageItem(this.addItem(item));
+        }
 
-            list.add(item);
+        for (AgendaItem item : event.getUpdated()) {
+            this.unstageItem(this.removeItem(item.getId()));
+            this.stageItem(this.addItem(item));
         }
 
-        this.stageItems(this.source.size() + event.getItems().size());
+        this.updateNoFavoritesLabel();
+        this.notifyDataSetChanged();
+    }
+
+    @SuppressWarnings("unused")
+    public void onEventMainThread(Purge event) {
+        this.latestUpdated = 0;
+        this.source.clear();
+        this.itemsById.clear();
+        this.stageItems(0);
         this.notifyDataSetChanged();
     }
 
+    /**
+     * @return the item, or null if it can't be shown.
+     */
+    private AgendaItem addItem(AgendaItem item) {
+
+        if (item.getCategory() == null) {
+            Log.e(Constant.TAG, "Null category for " + item.getId(), new IllegalArgumentException());
+            return null;
+        }
+
+        TreeSet<AgendaItem> items = this.source.get(item.getCategory());
+        if (items == null) {
+            this.source.put(item.getCategory(), items = new TreeSet<>(ITEM_ORDER));
+        }
+
+        items.add(item);
+        this.itemsById.put(item.getId(), item);
+        this.latestUpdated = Math.max(this.latestUpdated, item.getUpdatedAt());
+        return item;
+    }
+
+    /**
+     * @return the removed item, or null if there was none.
+     */
+    private AgendaItem removeItem(String id) {
+
+        final AgendaItem item = this.itemsById.remove(id);
+        if (item == null) {
+            return null;
+        }
+
+        final TreeSet<AgendaItem> items = this.source.get(item.getCategory());
+        if (items != null && items.remove(item) && items.isEmpty()) {
+            this.source.remove(item.getCategory());
+        }
+        return item;
+    }
+
+    /**
+     * Inserts the item's row, and its category's header if it's the first shown, shifting only
+     * the categories after it.
+     */
+    private void stageItem(AgendaItem item) {
+
+        if (item == null) {
+            return;
+        }
+
+        if (this.isFilteringFavorites && !Model.getInstance().isAgendaFavorite(item)) {
+            return;
+        }
+
+        // The source's key, as a full staging would show.
+        final Category category = this.source.ceilingKey(item.getCategory());
+        final Integer offset = this.stagedOffsets.get(category);
+
+        if (offset == null) {
+            final Map.Entry<Category, Integer> next = this.stagedOffsets.higherEntry(category);
+            final int row = next == null ? this.stagedItems.size() : next.getValue();
+            this.stagedItems.add(row, item);
+            this.stagedItems.add(row, category);
+            this.stagedOffsets.put(category, row);
+            this.shiftOffsetsAfter(category, 2);
+            return;
+        }
+
+        final List<AgendaItem> rows = this.getStagedItems(category, offset);
+        final int index = Collections.binarySearch(rows, item, ITEM_ORDER);
+        this.stagedItems.add(offset + 1 + (index < 0 ? -(index + 1) : index), item);
+        this.shiftOffsetsAfter(category, 1);
+    }
+
+    /**
+     * Removes the item's row if shown, and its category's header if it was the last one.
+     */
+    private void unstageItem(AgendaItem item) {
+
+        if (item == null) {
+            return;
+        }
+
+        final Category category = item.getCategory();
+        final Integer offset = this.stagedOffsets.get(category);
+        if (offset == null) {
+            return;
+        }
+
+        final List<AgendaItem> rows = this.getStagedItems(category, offset);
+        final int index = Collections.binarySearch(rows, item, ITEM_ORDER);
+        if (index < 0) {
+            return; // filtered out.
+        }
+
+        if (rows.size() == 1) {
+            this.stagedItems.subList(offset, offset + 2).clear();
+            this.stagedOffsets.remove(category);
+            this.shiftOffsetsAfter(category, -2);
+        } else {
+            this.stagedItems.remove(offset + 1 + index);
+            this.shiftOffsetsAfter(category, -1);
+        }
+    }
+
+    /**
+     * @return a view of the item rows under the category's header.
+     */
+    @SuppressWarnings("unchecked")
+    private List<AgendaItem> getStagedItems(Category category, int offset) {
+        final Map.Entry<Category, Integer> next = this.stagedOffsets.higherEntry(category);
+        final int end = next == null ? this.stagedItems.size() : next.getValue();
+        return (List<AgendaItem>) (List<?>) this.stagedItems.subList(offset + 1, end);
+    }
+
+    private void shiftOffsetsAfter(Category category, int rows) {
+        for (Map.Entry<Category, Integer> entry :
+                this.stagedOffsets.tailMap(category, false).entrySet()) {
+            entry.setValue(entry.getValue() + rows);
+        }
+    }
+
     /**
      * Stages available data based on filter settings.
      *
@@ -153,23 +331,21 @@ public final class AgendaAdapter extends BaseAdapter {
     private void stageItems(int capacity) {
 
         this.stagedItems.clear();
+        this.stagedOffsets.clear();
 
         if (this.source.size() == 0) {
+            this.updateNoFavoritesLabel();
             return;
         }
 
         this.stagedItems.ensureCapacity(capacity);
 
-        Set<Category> categorySet = this.source.keySet();
-        Category[] categories = categorySet.toArray(new Category[categorySet.size()]);
-        Arrays.sort(categories);
-
         final Model model = Model.getInstance();
 
-        for (int i = 0; i < categories.length; i++) {
-            Category category = categories[i];
-            List<AgendaItem> agendaItems = this.source.get(category);
-            Collections.sort(agendaItems);
+        // The source is keyed in category order.
+        for (Map.Entry<Category, TreeSet<AgendaItem>> entry : this.source.entrySet()) {
+            Category category = entry.getKey();
+            TreeSet<AgendaItem> agendaItems = entry.getValue();
 
             if (this.isFilteringFavorites) {
 
@@ -179,6 +355,7 @@ public final class AgendaAdapter extends BaseAdapter {
                     if (model.isAgendaFavorite(item)) {
                         if (!isCategoryStaged) {
                             // Only add if there's eligible items
+                            this.stagedOffsets.put(category, this.stagedItems.size());
                             this.stagedItems.add(category);
                             isCategoryStaged = true;
                         }
@@ -187,11 +364,16 @@ public final class AgendaAdapter extends BaseAdapter {
                     }
                 }
             } else {
+                this.stagedOffsets.put(category, this.stagedItems.size());
                 this.stagedItems.add(category);
                 this.stagedItems.addAll(agendaItems);
             }
         }
 
+        this.updateNoFavoritesLabel();
+    }
+
+    private void updateNoFavoritesLabel() {
         if (this.isFilteringFavorites && this.stagedItems.size() == 0) {
             this.noFavoritesLabel.setVisibility(View.VISIBLE);
         } else {
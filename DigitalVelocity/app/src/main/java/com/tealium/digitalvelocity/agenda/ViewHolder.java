@@ -10,7 +10,6 @@ import android.widget.TextView;
 
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.RequestCreator;
 import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.IOUtils;
 import com.tealium.digitalvelocity.data.Model;
@@ -33,6 +32,7 @@ final class ViewHolder implements View.OnClickListener, Animation.AnimationListe
     private final View mFavoriteImage;
     private final int mColorPast;
     private final int mColorFuture;
+    private final int mImageSize;
     private String mItemId;
     private String mLocationId;
 
@@ -45,6 +45,7 @@ final class ViewHolder implements View.OnClickListener, Animation.AnimationListe
         mSubtitleLabel = (TextView) view.findViewById(R.id.item_agenda_label_subtitle);
         mLocationButton = (TextView) view.findViewById(R.id.item_agenda_button_location);
         mFavoriteImage = view.findViewById(R.id.item_agenda_label_favorite);
+        mImageSize = view.getResources().getDimensionPixelSize(R.dimen.item_image_size);
 
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -84,7 +85,7 @@ final class ViewHolder implements View.OnClickListener, Animation.AnimationListe
         mLocationButton.setVisibility((mLocationId = item.getLocationId()) == null ?
                 View.GONE : View.VISIBLE);
 
-        final File file = IOUtils.getImageFile(mImageView.getContext(), mItemId);
+        final File file = IOUtils.getImageFile(mImageView.getContext(), mItemId, mImageSize);
         final boolean hasFAValue = !Util.isEmptyOrNull(item.getFontAwesomeValue());
         final boolean imgExists = file != null;
 
@@ -97,16 +98,17 @@ final class ViewHolder implements View.OnClickListener, Animation.AnimationListe
             mImageView.setImageBitmap(null);
 
             if (imgExists) {
-                RequestCreator req = Picasso.with(mImageView.getContext())
+                // Only the original until its thumbnail is made, which this then scales.
+                Picasso.with(mImageView.getContext())
                         .load(file)
-                        .tag(item.getId());
-
-                if (mImageView.getWidth() > 0 && mImageView.getHeight() > 0) {
-                    req.resize(mImageView.getWidth(), mImageView.getHeight())
-                            .centerInside();
-                }
-
-                req.into(mImageView, this);
+                        .tag(item.getId())
+                        .resize(mImageSize, mImageSize)
+                        .centerInside()
+                        .onlyScaleDown()
+                        .into(mImageView, this);
+            } else {
+                // On screen, so ahead of the images of rows that are not.
+                Model.getInstance().prioritizeImageDownload(mItemId);
             }
         } else {
             mDefaultImageView.setVisibility(View.INVISIBLE);
@@ -0,0 +1,238 @@
+package com.tealium.digitalvelocity.data;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.util.Constant;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Versioned data directories ("generations") under the records dir.
+ * <p/>
+ * The {@code CURRENT} file names the active generation. A purge starts a new, empty generation
+ * by rewriting that pointer through a synced temp file and a rename, so it costs the same no
+ * matter how much data there is. Superseded generations are deleted later on a low-priority
+ * thread.
+ */
+final class Generations {
+
+    private static final String POINTER = "CURRENT";
+    private static final String PREFIX = "gen-";
+
+    private final File mRoot;
+    private final ExecutorService mReclaimer;
+
+    private int mCurrent;
+
+    Generations(File root) {
+        mRoot = root;
+        mReclaimer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                        r.run();
+                    }
+                }, "Reclaimer");
+            }
+        });
+    }
+
+    /**
+     * Reads the pointer, creating the first generation if there is none, and queues any
+     * generation left over from an interrupted reclaim.
+     *
+     * @return the directory of the active generation.
+     */
+    synchronized File open() throws IOException {
+
+        if (!mRoot.isDirectory() && !mRoot.mkdirs()) {
+            throw new IOException("Unable to create " + mRoot.getAbsolutePath());
+        }
+
+        final File pointer = new File(mRoot, POINTER);
+        if (pointer.exists()) {
+            final DataInputStream in = new DataInputStream(new FileInputStream(pointer));
+            try {
+                mCurrent = in.readInt();
+            } finally {
+                in.close();
+            }
+        } else {
+            mCurrent = 1;
+            adoptUnversionedFiles(getDir(mCurrent));
+            writePointer(mCurrent);
+        }
+
+        final File current = getDir(mCurrent);
+        if (!current.isDirectory() && !current.mkdirs()) {
+            throw new IOException("Unable to create " + current.getAbsolutePath());
+        }
+
+        reclaimStale();
+        return current;
+    }
+
+    /**
+     * Switches to a new, empty generation and queues the previous one for deletion.
+     *
+     * @return the directory of the new generation.
+     */
+    synchronized File advance() throws IOException {
+
+        final int next = mCurrent + 1;
+        final File dir = getDir(next);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+
+        writePointer(next);
+        mCurrent = next;
+
+        reclaimStale();
+        return dir;
+    }
+
+    /**
+     * Deletes the files in the background, renaming each first.
+     */
+    void reclaim(final Collection<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+
+        mReclaimer.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (File file : files) {
+                    delete(file);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues the deletion of the generations older than the one active when it runs, so that
+     * one made by an {@link #advance} after this was queued is kept.
+     */
+    private void reclaimStale() {
+        mReclaimer.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int current;
+                synchronized (Generations.this) {
+                    current = mCurrent;
+                }
+
+                final File[] dirs = mRoot.listFiles();
+                if (dirs == null) {
+                    return;
+                }
+
+                for (File dir : dirs) {
+                    if (dir.isDirectory() && getGeneration(dir.getName()) < current) {
+                        delete(dir);
+                        if (BuildConfig.DEBUG) {
+                            Log.d(Constant.TAG, "# Reclaimed " + dir.getAbsolutePath());
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    File getDir(int generation) {
+        return new File(mRoot, PREFIX + generation);
+    }
+
+    /**
+     * @return the generation the directory name is of, or {@link Integer#MAX_VALUE} if it is
+     * not one, so that it is never taken for a stale one.
+     */
+    private static int getGeneration(String name) {
+        if (!name.startsWith(PREFIX)) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private void writePointer(int generation) throws IOException {
+        final File temp = new File(mRoot, POINTER + ".tmp");
+        final FileOutputStream fileOut = new FileOutputStream(temp);
+        final DataOutputStream out = new DataOutputStream(fileOut);
+
+        try {
+            out.writeInt(generation);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(new File(mRoot, POINTER))) {
+            temp.delete();
+            throw new IOException("Unable to switch to generation " + generation);
+        }
+    }
+
+    /**
+     * Stores written before generations existed live directly in the root.
+     */
+    private void adoptUnversionedFiles(File dir) throws IOException {
+        final File[] files = mRoot.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir.getAbsolutePath());
+        }
+
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(RecordStore.FILE_SUFFIX)) {
+                file.renameTo(new File(dir, file.getName()));
+            }
+        }
+    }
+
+    private static void delete(File file) {
+        final File target;
+
+        if (file.isDirectory()) {
+            target = file;
+            final File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    delete(child);
+                }
+            }
+        } else {
+            // Without renaming EBUSY IO Errors can occur.
+            final File renamed = new File(
+                    file.getParentFile(),
+                    System.currentTimeMillis() + "." + file.getName());
+            target = file.renameTo(renamed) ? renamed : file;
+        }
+
+        if (!target.delete() && target.exists()) {
+            Log.e(Constant.TAG, "! Unable to delete " + target.getAbsolutePath());
+        }
+    }
+}
@@ -1,149 +1,225 @@
 package com.tealium.digitalvelocity.data;
 
+import android.app.ActivityManager;
 import android.content.Context;
-import android.graphics.BitmapFactory;
+import android.graphics.Bitmap;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.util.DisplayMetrics;
 import android.util.Log;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.GsonBuilder;
 import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
 import com.tealium.digitalvelocity.data.gson.Coordinates;
 import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
 import com.tealium.digitalvelocity.data.gson.Notification;
 import com.tealium.digitalvelocity.data.gson.ParseItem;
 import com.tealium.digitalvelocity.data.gson.Question;
 import com.tealium.digitalvelocity.data.gson.Sponsor;
 import com.tealium.digitalvelocity.data.gson.Survey;
+import com.tealium.digitalvelocity.event.ChangedEvent;
 import com.tealium.digitalvelocity.event.LoadRequest;
 import com.tealium.digitalvelocity.event.LoadedEvent;
 import com.tealium.digitalvelocity.event.Purge;
 import com.tealium.digitalvelocity.event.SaveRequest;
 import com.tealium.digitalvelocity.event.ZipEvent;
 import com.tealium.digitalvelocity.push.event.PushMessage;
+import com.tealium.digitalvelocity.util.BitmapDecoder;
 import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.Metrics;
 import com.tealium.digitalvelocity.util.Zipper;
 
+import org.json.JSONException;
+
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import de.greenrobot.event.EventBus;
 
 final class IOManager {
 
+    private static final String MIGRATED_MARKER = ".migrated";
+    private static final String METRICS_FILE_NAME = "metrics.json";
+    private static final int DECODE_WORKERS = Runtime.getRuntime().availableProcessors();
+    // Share of the memory class given to cached tables.
+    private static final int TABLE_CACHE_DIVISOR = 16;
+    // Decoded items take several times their encoded size on the heap.
+    private static final int HEAP_BYTES_PER_RECORD_BYTE = 4;
+
     private final Context mContext;
     private final Gson mGson;
+    private final ExecutorService mDecodePool;
+    private final TableCache mTableCache;
+    private final Generations mGenerations;
+    // Held for reading by every store access and for writing by a purge's generation switch.
+    private final ReadWriteLock mGenerationLock;
+    private final Map<String, Category> mCategoryIndex;
+    private final RecordStore<Category> mCategories;
+    private final RecordStore<AgendaItem> mAgendaItems;
+    private final RecordStore<Sponsor> mSponsors;
+    private final RecordStore<Floor> mFloors;
+    private final RecordStore<Coordinates> mCoordinates;
+    private final RecordStore<Survey> mSurveys;
+    private final RecordStore<Question> mQuestions;
+    private final RecordStore<Notification> mNotifications;
+    private final Map<String, RecordStore<?>> mStoresBySuffix;
+    private final Map<Class<?>, RecordStore<?>> mStoresByClass;
+
+    // Set once the stores point into the active generation; see openGeneration().
+    private volatile boolean mIsOpen;
+    private boolean mIsMigrated;
+    private boolean mIsCategoryIndexLoaded;
 
     public IOManager(Context context) {
         mContext = context.getApplicationContext();
-        mGson = new Gson();
+        mGson = JsonAdapters.register(new GsonBuilder()).create();
+        mDecodePool = createDecodePool();
+        mTableCache = new TableCache(getTableCacheBudget(mContext));
+        mContext.registerComponentCallbacks(mTableCache);
+        mContext.registerComponentCallbacks(BitmapDecoder.getInstance());
+        mGenerations = new Generations(IOUtils.getRecordsDir(mContext));
+        mGenerationLock = new ReentrantReadWriteLock();
+        mStoresBySuffix = new HashMap<>(8);
+        mStoresByClass = new HashMap<>(8);
+        mCategoryIndex = new ConcurrentHashMap<>();
+        mCategories = createStore(Category.class, IOUtils.SUFFIX_CATEGORY);
+        mAgendaItems = createStore(AgendaItem.class, IOUtils.SUFFIX_AGENDA_ITEM);
+        mSponsors = createStore(Sponsor.class, IOUtils.SUFFIX_SPONSOR);
+        mFloors = createStore(Floor.class, IOUtils.SUFFIX_FLOOR);
+        mCoordinates = createStore(Coordinates.class, IOUtils.SUFFIX_COORDINATES);
+        mSurveys = createStore(Survey.class, IOUtils.SUFFIX_SURVEY);
+        mQuestions = createStore(Question.class, IOUtils.SUFFIX_QUESTION);
+        mNotifications = createStore(Notification.class, IOUtils.SUFFIX_NOTIFICATION);
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(ZipEvent event) {
+        exportMetrics(new File(mContext.getFilesDir(), METRICS_FILE_NAME));
         Zipper.zip(mContext.getFilesDir());
     }
 
+    /**
+     * Writes a snapshot of {@link Metrics} alongside the stores, so the bundle carries it.
+     */
+    private static void exportMetrics(File dst) {
+        try {
+            final Writer out = new OutputStreamWriter(new FileOutputStream(dst), "UTF-8");
+            try {
+                out.write(Metrics.getInstance().toJSON().toString(2));
+            } finally {
+                out.close();
+            }
+        } catch (IOException | JSONException e) {
+            Log.e(Constant.TAG, "! Error exporting metrics", e);
+        }
+    }
+
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(Purge event) {
 
-        FileReader reader;
-        ParseItem item;
-        File renamed;
-
-        for (File file : mContext.getFilesDir().listFiles(IOUtils.createPurgeFilter())) {
-            // Without renaming EBUSY IO Errors can occur.
-            renamed = new File(
-                    file.getParentFile(),
-                    System.currentTimeMillis() + "." + file.getName());
-            file.renameTo(renamed);
-            renamed.delete();
-            if (BuildConfig.DEBUG) {
-                Log.d(Constant.TAG, "Deleted " + file.getAbsolutePath());
+        openGeneration();
+        migrateLegacyFiles(false);
+
+        final long start = SystemClock.elapsedRealtime();
+
+        mGenerationLock.writeLock().lock();
+        try {
+            final File dir = mGenerations.advance();
+            for (Map.Entry<String, RecordStore<?>> entry : mStoresBySuffix.entrySet()) {
+                entry.getValue().relocate(getStoreFile(dir, entry.getKey()));
             }
+
+            mCategoryIndex.clear();
+            mTableCache.invalidateAll();
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error purging", e);
+            return;
+        } finally {
+            mGenerationLock.writeLock().unlock();
+        }
+
+        if (BuildConfig.DEBUG) {
+            Log.d(Constant.TAG, "# Purged in " + (SystemClock.elapsedRealtime() - start) + " ms.");
         }
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(PushMessage event) {
-
-        Notification pushNotification = Notification.createNotification(event);
-
-        saveFile(
-                IOUtils.createNotificationFile(mContext, pushNotification.getId()),
-                mGson.toJson(pushNotification));
+        save(mNotifications, Notification.createNotification(event));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Survey event) {
-        saveFile(
-                IOUtils.createSurveyFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mSurveys, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Question event) {
-        saveFile(
-                IOUtils.createQuestionFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mQuestions, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Notification event) {
-        saveFile(
-                IOUtils.createNotificationFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mNotifications, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Sponsor event) {
-
-        final File jsonFile = IOUtils.createSponsorFile(mContext, event.getItem().getId());
-        final String content = mGson.toJson(event.getItem());
-
-        saveFile(jsonFile, content);
+        save(mSponsors, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Coordinates event) {
-        saveFile(
-                IOUtils.createCoordsFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mCoordinates, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.Floor event) {
-        saveFile(
-                IOUtils.createFloorFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mFloors, event.getItem());
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SaveRequest.AgendaItem event) {
-        saveFile(
-                IOUtils.createAgendaItemFile(mContext, event.getItem().getId()),
-                mGson.toJson(event.getItem()));
+        save(mAgendaItems, event.getItem());
+    }
+
+    @SuppressWarnings("unused")
+    public void onEventBackgroundThread(SaveRequest.Batch<?> event) {
+        saveAll(event);
+    }
+
+    @SuppressWarnings("unused")
+    public void onEventBackgroundThread(SaveRequest.RetainOnly event) {
+        retainOnly(event);
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Agenda event) {
         try {
-            Collection<AgendaItem> items = loadJsonFiles(AgendaItem.class, IOUtils.SUFFIX_AGENDA_ITEM);
-            long latestUpdated = 0;
-            for (AgendaItem item : items) {
-                if (item.getUpdatedAt() > latestUpdated) {
-                    latestUpdated = item.getUpdatedAt();
-                }
-            }
-
-            EventBus.getDefault().post(new LoadedEvent.Agenda(items, latestUpdated));
+            final TableCache.Table<AgendaItem> table = loadTable(AgendaItem.class, mAgendaItems);
+            EventBus.getDefault().post(new LoadedEvent.Agenda(
+                    table.getItems(), table.getLatestUpdatedAt()));
 
         } catch (Throwable t) {
             Log.e(Constant.TAG, "Error processing " + event.getClass(), t);
@@ -153,32 +229,41 @@ final class IOManager {
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Sponsors event) {
         EventBus.getDefault().post(new LoadedEvent.Sponsors(
-                loadJsonFiles(Sponsor.class, IOUtils.SUFFIX_SPONSOR)));
+                loadTable(Sponsor.class, mSponsors).getItems()));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Notifications event) {
         EventBus.getDefault().post(new LoadedEvent.Notifications(
-                loadJsonFiles(Notification.class, IOUtils.SUFFIX_NOTIFICATION)));
+                loadTable(Notification.class, mNotifications).getItems()));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Surveys event) {
         EventBus.getDefault().post(new LoadedEvent.Surveys(
-                loadJsonFiles(Survey.class, IOUtils.SUFFIX_SURVEY)));
+                loadTable(Survey.class, mSurveys).getItems()));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Questions event) {
+        open();
+
         final List<Question> questions = new ArrayList<>(event.getQuestionIds().size());
-        for (int i = 0; i < event.getQuestionIds().size(); i++) {
-            final String id = event.getQuestionIds().get(i);
-            final File file = IOUtils.createQuestionFile(mContext, id);
-            try {
-                questions.add(loadJsonFile(Question.class, file));
-            } catch (IOException e) {
-                Log.e(Constant.TAG, "! Error loading " + file.getName(), e);
+        mGenerationLock.readLock().lock();
+        try {
+            for (int i = 0; i < event.getQuestionIds().size(); i++) {
+                final String id = event.getQuestionIds().get(i);
+                try {
+                    final Question question = mQuestions.get(id);
+                    if (question != null) {
+                        questions.add(question);
+                    }
+                } catch (IOException e) {
+                    Log.e(Constant.TAG, "! Error loading question " + id, e);
+                }
             }
+        } finally {
+            mGenerationLock.readLock().unlock();
         }
 
         EventBus.getDefault().post(new LoadedEvent.Questions(questions));
@@ -186,14 +271,15 @@ final class IOManager {
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Coordinates event) {
-        List<Coordinates> coords = loadJsonFiles(Coordinates.class, IOUtils.SUFFIX_COORDINATES);
+        List<Coordinates> coords = new ArrayList<>(
+                loadTable(Coordinates.class, mCoordinates).getItems());
         Collections.sort(coords);
         EventBus.getDefault().post(new LoadedEvent.CoordinateData(coords));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.Floors event) {
-        List<Floor> floors = loadJsonFiles(Floor.class, IOUtils.SUFFIX_FLOOR);
+        List<Floor> floors = new ArrayList<>(loadTable(Floor.class, mFloors).getItems());
         Collections.sort(floors);
         EventBus.getDefault().post(new LoadedEvent.Floors(floors));
     }
@@ -201,84 +287,578 @@ final class IOManager {
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.SponsorLogo event) {
 
-        File file = getLogoFile(event.getItem());
+        final int size = mContext.getResources().getDimensionPixelSize(R.dimen.item_image_size);
+        final int width = event.getWidth() > 0 ? event.getWidth() : size;
+        final int height = event.getHeight() > 0 ? event.getHeight() : size;
 
-        if (!file.exists()) {
-            return;
+        final Bitmap bitmap = decodeImage(event.getItem().getId(), width, height);
+        if (bitmap != null) {
+            EventBus.getDefault().post(new LoadedEvent.SponsorLogo(bitmap, event.getItem()));
         }
-
-        EventBus.getDefault().post(new LoadedEvent.SponsorLogo(
-                BitmapFactory.decodeFile(file.getAbsolutePath()),
-                event.getItem()));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.FloorImage event) {
 
-        File file = IOUtils.getImageFile(mContext, event.getItem().getId());
+        final DisplayMetrics metrics = mContext.getResources().getDisplayMetrics();
+        final int width = event.getWidth() > 0 ? event.getWidth() : metrics.widthPixels;
+        final int height = event.getHeight() > 0 ? event.getHeight() : metrics.heightPixels;
 
-        if (file == null) {
-            return;
+        final Bitmap bitmap = decodeImage(event.getItem().getId(), width, height);
+        if (bitmap != null) {
+            EventBus.getDefault().post(new LoadedEvent.FloorImage(bitmap, event.getItem()));
         }
-
-        EventBus.getDefault().post(new LoadedEvent.FloorImage(
-                BitmapFactory.decodeFile(file.getAbsolutePath()),
-                event.getItem()));
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(LoadRequest.AgendaItemData event) {
 
-        final File file = IOUtils.createAgendaItemFile(mContext, event.getId());
+        final TableCache.Table<AgendaItem> cached = mTableCache.get(AgendaItem.class);
+        final AgendaItem cachedItem = cached == null ? null : cached.find(event.getId());
+        if (cachedItem != null) {
+            EventBus.getDefault().post(new LoadedEvent.AgendaItemData(cachedItem));
+            return;
+        }
+
+        open();
+
+        final AgendaItem item;
+        mGenerationLock.readLock().lock();
         try {
-            EventBus.getDefault().post(new LoadedEvent.AgendaItemData(
-                    loadJsonFile(AgendaItem.class, file)));
+            loadCategoryIndex();
+            item = mAgendaItems.get(event.getId());
         } catch (IOException e) {
-            Log.e(Constant.TAG, "! Error loading " + file.getName(), e);
+            Log.e(Constant.TAG, "! Error loading agenda item " + event.getId(), e);
+            return;
+        } finally {
+            mGenerationLock.readLock().unlock();
         }
+
+        if (item == null) {
+            Log.e(Constant.TAG, "! No agenda item " + event.getId());
+            return;
+        }
+        EventBus.getDefault().post(new LoadedEvent.AgendaItemData(item));
     }
 
-    private File getLogoFile(Sponsor sponsor) {
-        return new File(mContext.getFilesDir(), sponsor.getId() + ".png");
+    /**
+     * @return the item's image sampled down to the size, or null if it has none or it couldn't
+     * be decoded.
+     */
+    private Bitmap decodeImage(String id, int width, int height) {
+        final File file = IOUtils.getImageFile(mContext, id, width);
+        if (file == null) {
+            return null;
+        }
+
+        try {
+            return BitmapDecoder.getInstance().decode(file, width, height);
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Unable to decode the image of " + id, e);
+            return null;
+        }
     }
 
-    private <T extends ParseItem> List<T> loadJsonFiles(Class<T> itemsClass, String suffix) {
-        List<T> loaded = new LinkedList<>();
-        T item;
+    private <T extends ParseItem> RecordStore<T> createStore(Class<T> itemClass, String suffix) {
+        final RecordStore<T> store = new RecordStore<>(
+                // Pointed into the active generation on first use; see openGeneration().
+                getStoreFile(mGenerations.getDir(1), suffix),
+                ItemCodec.create(itemClass, mGson, mCategoryIndex),
+                mDecodePool,
+                DECODE_WORKERS);
+        mStoresBySuffix.put(suffix, store);
+        mStoresByClass.put(itemClass, store);
+        return store;
+    }
 
-        for (File file : mContext.getFilesDir().listFiles()) {
-            if (!file.getName().endsWith(suffix)) {
-                continue;
+    private static File getStoreFile(File generationDir, String suffix) {
+        return new File(generationDir, suffix.substring(1) + RecordStore.FILE_SUFFIX);
+    }
+
+    /**
+     * Reads the active generation and points every store into it. Deferred to the first store
+     * access, on a background thread, as it may create directories and write the pointer.
+     */
+    private void openGeneration() {
+
+        if (mIsOpen) {
+            return;
+        }
+
+        mGenerationLock.writeLock().lock();
+        try {
+            if (mIsOpen) {
+                return;
             }
+
+            File dir;
             try {
-                if ((item = loadJsonFile(itemsClass, file)).isVisible()) {
-                    loaded.add(item);
+                dir = mGenerations.open();
+            } catch (IOException e) {
+                Log.e(Constant.TAG, "! Error opening data generation", e);
+                dir = mGenerations.getDir(1);
+            }
+
+            for (Map.Entry<String, RecordStore<?>> entry : mStoresBySuffix.entrySet()) {
+                entry.getValue().relocate(getStoreFile(dir, entry.getKey()));
+            }
+            mIsOpen = true;
+        } finally {
+            mGenerationLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bounded to the core count; idle threads exit so the pool costs nothing between loads.
+     */
+    private static ExecutorService createDecodePool() {
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                DECODE_WORKERS, DECODE_WORKERS,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static long getTableCacheBudget(Context context) {
+        final ActivityManager am = (ActivityManager) context.getSystemService(
+                Context.ACTIVITY_SERVICE);
+        return am.getMemoryClass() * 1024L * 1024L / TABLE_CACHE_DIVISOR;
+    }
+
+    /**
+     * @return the visible items of the table, from memory unless it was written since last read.
+     */
+    private <T extends ParseItem> TableCache.Table<T> loadTable(Class<T> itemClass, RecordStore<T> store) {
+
+        final String metric = "io." + itemClass.getSimpleName() + '.';
+        final TableCache.Table<T> cached = mTableCache.get(itemClass);
+        if (cached != null) {
+            Metrics.getInstance().count(metric + "cache_hits", 1);
+            if (BuildConfig.DEBUG) {
+                Log.d(Constant.TAG, "# Loaded " + itemClass.getSimpleName() + " from cache.");
+            }
+            return cached;
+        }
+
+        open();
+
+        final long start = SystemClock.elapsedRealtime();
+        final long generation;
+        final List<T> loaded;
+        final long sizeBytes;
+        mGenerationLock.readLock().lock();
+        try {
+            loadCategoryIndex();
+            generation = mTableCache.generation(itemClass);
+            loaded = store.getAll();
+            sizeBytes = store.liveBytes() * HEAP_BYTES_PER_RECORD_BYTE;
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error loading " + store.getFile().getAbsolutePath(), e);
+            return new TableCache.Table<>(new ArrayList<T>(0), 0);
+        } finally {
+            mGenerationLock.readLock().unlock();
+        }
+
+        for (int i = loaded.size() - 1; i >= 0; i--) {
+            if (!loaded.get(i).isVisible()) {
+                loaded.remove(i);
+            }
+        }
+
+        final Metrics metrics = Metrics.getInstance();
+        metrics.count(metric + "loads", 1);
+        metrics.count(metric + "loaded_rows", loaded.size());
+        metrics.record(metric + "load_ms", SystemClock.elapsedRealtime() - start);
+
+        return mTableCache.put(itemClass, generation, loaded, sizeBytes);
+    }
+
+    private <T extends ParseItem> void save(final RecordStore<T> store, T item) {
+
+        if (item == null) {
+            return;
+        }
+
+        open();
+
+        final ChangedEvent.Agenda changes;
+        final long elapsed;
+        mGenerationLock.readLock().lock();
+        try {
+            final long start = SystemClock.elapsedRealtime();
+            changes = store == mAgendaItems ? diffAgenda(Collections.singletonList(item)) : null;
+            if (item.isVisible()) {
+                saveCategories(Collections.singletonList(item));
+                store.put(item);
+            } else {
+                store.remove(item.getId());
+            }
+            elapsed = SystemClock.elapsedRealtime() - start;
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error saving " + item.getId(), e);
+            return;
+        } finally {
+            // Once written, so that a load that read the rows before can't be cached as current.
+            mTableCache.invalidate(item.getClass());
+            mGenerationLock.readLock().unlock();
+        }
+
+        if (!item.isVisible()) {
+            Model.getInstance().removeImage(item.getId());
+        }
+
+        recordSave(item.getClass(), item.isVisible() ? 1 : 0, item.isVisible() ? 0 : 1, elapsed);
+
+        postChanges(changes);
+        scheduleCompaction(store);
+    }
+
+    /**
+     * Commits the rows on the calling thread.
+     *
+     * @return false if they could not be written.
+     */
+    <T extends ParseItem> boolean saveAll(SaveRequest.Batch<T> batch) {
+
+        @SuppressWarnings("unchecked")
+        final RecordStore<T> store = (RecordStore<T>) mStoresByClass.get(batch.getItemClass());
+        final String tableName = batch.getItemClass().getSimpleName();
+
+        if (store == null) {
+            Log.e(Constant.TAG, "No store for " + tableName, new IllegalArgumentException());
+            return false;
+        }
+
+        open();
+
+        // Hidden rows are tombstones: the row and its image are deleted rather than kept.
+        final List<T> visible = new ArrayList<>(batch.getItems().size());
+        final List<String> hiddenIds = new ArrayList<>();
+        for (T item : batch.getItems()) {
+            if (item.isVisible()) {
+                visible.add(item);
+            } else {
+                hiddenIds.add(item.getId());
+            }
+        }
+
+        final ChangedEvent.Agenda changes;
+        final long elapsed;
+        mGenerationLock.readLock().lock();
+        try {
+            final long start = SystemClock.elapsedRealtime();
+            saveCategories(visible);
+            changes = store == mAgendaItems ? diffAgenda(batch.getItems()) : null;
+            store.putAll(visible);
+            for (String id : hiddenIds) {
+                store.remove(id);
+            }
+            elapsed = SystemClock.elapsedRealtime() - start;
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error saving " + batch.getItems().size() + " " + tableName + " rows", e);
+            return false;
+        } finally {
+            mTableCache.invalidate(batch.getItemClass());
+            mGenerationLock.readLock().unlock();
+        }
+
+        removeImages(hiddenIds);
+        recordSave(batch.getItemClass(), visible.size(), hiddenIds.size(), elapsed);
+
+        if (BuildConfig.DEBUG) {
+            Log.d(Constant.TAG, "# Committed " + visible.size() + " " + tableName + " rows and " +
+                    hiddenIds.size() + " tombstones in " + elapsed + " ms.");
+        }
+
+        postChanges(changes);
+        scheduleCompaction(store);
+        return true;
+    }
+
+    /**
+     * @param elapsed the time spent writing, once the generation lock was held.
+     */
+    private static void recordSave(Class<?> itemClass, int rows, int tombstones, long elapsed) {
+        final String metric = "io." + itemClass.getSimpleName() + '.';
+        final Metrics metrics = Metrics.getInstance();
+        metrics.count(metric + "saves", 1);
+        metrics.count(metric + "saved_rows", rows);
+        metrics.count(metric + "tombstones", tombstones);
+        metrics.record(metric + "save_ms", elapsed);
+    }
+
+    /**
+     * Deletes the rows the server no longer has, which no incremental sync would report.
+     */
+    private void retainOnly(SaveRequest.RetainOnly event) {
+
+        final RecordStore<?> store = mStoresByClass.get(event.getItemClass());
+        final String tableName = event.getItemClass().getSimpleName();
+
+        if (store == null) {
+            Log.e(Constant.TAG, "No store for " + tableName, new IllegalArgumentException());
+            return;
+        }
+
+        open();
+
+        final List<String> removedIds = new ArrayList<>();
+        mGenerationLock.readLock().lock();
+        try {
+            for (String id : store.ids()) {
+                if (!event.getIds().contains(id)) {
+                    removedIds.add(id);
+                }
+            }
+
+            for (String id : removedIds) {
+                store.remove(id);
+            }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error reconciling " + tableName, e);
+            return;
+        } finally {
+            if (!removedIds.isEmpty()) {
+                mTableCache.invalidate(event.getItemClass());
+            }
+            mGenerationLock.readLock().unlock();
+        }
+
+        if (BuildConfig.DEBUG) {
+            Log.d(Constant.TAG, "# Reconciled " + tableName + ", " + removedIds.size() +
+                    " deleted on the server.");
+        }
+
+        if (removedIds.isEmpty()) {
+            return;
+        }
+
+        removeImages(removedIds);
+
+        if (store == mAgendaItems) {
+            postChanges(new ChangedEvent.Agenda(
+                    Collections.<AgendaItem>emptyList(),
+                    Collections.<AgendaItem>emptyList(),
+                    removedIds));
+        }
+
+        scheduleCompaction(store);
+    }
+
+    private static void removeImages(List<String> ids) {
+        final Model model = Model.getInstance();
+        for (int i = 0; i < ids.size(); i++) {
+            model.removeImage(ids.get(i));
+        }
+    }
+
+    /**
+     * Splits agenda items about to be written into additions, updates and removals; hidden items
+     * are removals.
+     */
+    private ChangedEvent.Agenda diffAgenda(List<? extends ParseItem> items) {
+
+        final List<AgendaItem> added = new ArrayList<>();
+        final List<AgendaItem> updated = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                final AgendaItem item = (AgendaItem) items.get(i);
+                final boolean exists = mAgendaItems.contains(item.getId());
+                if (!item.isVisible()) {
+                    if (exists) {
+                        removedIds.add(item.getId());
+                    }
+                } else if (exists) {
+                    updated.add(item);
+                } else {
+                    added.add(item);
                 }
-            } catch (JsonSyntaxException | IOException e) {
-                Log.e(Constant.TAG, "! Error loading " + file.getAbsolutePath(), e);
             }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error reading " + mAgendaItems.getFile().getAbsolutePath(), e);
+            return null;
+        }
+
+        return new ChangedEvent.Agenda(added, updated, removedIds);
+    }
+
+    private static void postChanges(ChangedEvent.Agenda changes) {
+        if (changes != null && !changes.isEmpty()) {
+            EventBus.getDefault().post(changes);
+        }
+    }
+
+    /**
+     * Agenda items and sponsors reference their category by id, so a category has to be
+     * stored and indexed before any item referencing it.
+     */
+    private void saveCategories(List<? extends ParseItem> items) {
+
+        loadCategoryIndex();
+
+        final Map<String, Category> changed = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            final ParseItem item = items.get(i);
+            final Category category;
+            if (item instanceof AgendaItem) {
+                category = ((AgendaItem) item).getCategory();
+            } else if (item instanceof Sponsor) {
+                category = ((Sponsor) item).getCategory();
+            } else {
+                continue;
+            }
+
+            if (category == null) {
+                continue;
+            }
+
+            final Category indexed = mCategoryIndex.get(category.getId());
+            if (indexed == null || indexed.getUpdatedAt() != category.getUpdatedAt()) {
+                changed.put(category.getId(), category);
+            }
+        }
+
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        try {
+            mCategories.putAll(new ArrayList<>(changed.values()));
+            mCategoryIndex.putAll(changed);
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error saving " + changed.size() + " categories", e);
+        } finally {
+            mTableCache.invalidate(Category.class);
+        }
+    }
+
+    private synchronized void loadCategoryIndex() {
+
+        if (mIsCategoryIndexLoaded) {
+            return;
+        }
+
+        try {
+            for (Category category : mCategories.getAll()) {
+                mCategoryIndex.put(category.getId(), category);
+            }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Error loading " + mCategories.getFile().getAbsolutePath(), e);
+        }
+
+        mIsCategoryIndexLoaded = true;
+    }
+
+    private void scheduleCompaction(final RecordStore<?> store) {
+
+        if (!store.needsCompaction()) {
+            return;
         }
 
-        return loaded;
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Not while a purge moves the store to a new generation.
+                mGenerationLock.readLock().lock();
+                try {
+                    if (store.needsCompaction()) {
+                        store.compact();
+                    }
+                } catch (IOException e) {
+                    Log.e(Constant.TAG, "! Error compacting " + store.getFile().getAbsolutePath(), e);
+                } finally {
+                    mGenerationLock.readLock().unlock();
+                }
+            }
+        });
     }
 
-    private <T extends ParseItem> T loadJsonFile(Class<T> itemsClass, File file) throws IOException {
-        FileReader reader;
-        T item = mGson.fromJson(reader = new FileReader(file), itemsClass);
-        reader.close();
-        return item;
+    /**
+     * Readies the stores for use; call before any store access.
+     */
+    private void open() {
+        openGeneration();
+        migrateLegacyFiles(true);
     }
 
-    private static void saveFile(File file, String content) {
+    /**
+     * Imports the per-item JSON files written by earlier versions into the record stores, then
+     * hands them to the reclaimer. Runs once; the marker file records that the import completed.
+     *
+     * @param shouldImport false to only delete the legacy files, e.g. when purging.
+     */
+    private synchronized void migrateLegacyFiles(boolean shouldImport) {
+
+        if (mIsMigrated) {
+            return;
+        }
+
+        final File recordsDir = IOUtils.getRecordsDir(mContext);
+        final File marker = new File(recordsDir, MIGRATED_MARKER);
+
+        if (marker.exists()) {
+            mIsMigrated = true;
+            return;
+        }
+
+        final File[] legacyFiles = mContext.getFilesDir().listFiles(IOUtils.createPurgeFilter());
+        final List<File> imported = new ArrayList<>(legacyFiles == null ? 0 : legacyFiles.length);
+
+        if (legacyFiles != null) {
+            for (File file : legacyFiles) {
+                final String name = file.getName();
+                final int dot = name.lastIndexOf('.');
+                final RecordStore<?> store = dot > 0 ? mStoresBySuffix.get(name.substring(dot)) : null;
 
-        FileOutputStream outputStream;
+                if (store == null) {
+                    continue;
+                }
+
+                try {
+                    if (shouldImport) {
+                        store.putRaw(name.substring(0, dot), readBytes(file));
+                    }
+                    imported.add(file);
+                } catch (IOException e) {
+                    Log.e(Constant.TAG, "! Error importing " + file.getAbsolutePath(), e);
+                }
+            }
+        }
 
         try {
-            outputStream = new FileOutputStream(file);
-            outputStream.write(content.getBytes());
-            outputStream.close();
-        } catch (Exception e) {
+            if (!marker.createNewFile() && !marker.exists()) {
+                throw new IOException("Unable to create " + marker.getAbsolutePath());
+            }
+        } catch (IOException e) {
             Log.e(Constant.TAG, null, e);
+            return;
+        }
+
+        mGenerations.reclaim(imported);
+
+        if (BuildConfig.DEBUG) {
+            Log.d(Constant.TAG, (shouldImport ? "Imported " : "Discarded ") +
+                    imported.size() + " legacy files.");
+        }
+
+        mIsMigrated = true;
+    }
+
+    private static byte[] readBytes(File file) throws IOException {
+        final byte[] bytes = new byte[(int) file.length()];
+        final FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+        } finally {
+            in.close();
         }
+        return bytes;
     }
 }
@@ -21,6 +21,7 @@ public final class IOUtils {
     public static final String SUFFIX_AGENDA_ITEM = ".agenda_item";
     public static final String SUFFIX_SURVEY = ".survey";
     public static final String SUFFIX_QUESTION = ".question";
+    public static final String SUFFIX_CATEGORY = ".category";
 
     public static final String IMG_SUFFIX_JPG = ".jpg";
     public static final String IMG_SUFFIX_PNG = ".png";
@@ -42,54 +43,34 @@ public final class IOUtils {
     private IOUtils() {
     }
 
-    public static File createSurveyFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_SURVEY);
+    public static File getRecordsDir(Context context) {
+        return new File(context.getFilesDir(), "records");
     }
 
-    public static File createQuestionFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_QUESTION);
-    }
-
-    public static File createSponsorFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_SPONSOR);
-    }
-
-    public static File createNotificationFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_NOTIFICATION);
-    }
-
-    public static File createCoordsFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_COORDINATES);
-    }
-
-    public static File createFloorFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_FLOOR);
+    /**
+     * @return the item's image, or null if none has been downloaded; an image being replaced is
+     * returned until its replacement is complete.
+     */
+    public static File getImageFile(Context context, String id) {
+        return Model.getInstance().getImageStore().get(id);
     }
 
-    public static File createAgendaItemFile(Context context, String id) {
-        return new File(context.getFilesDir(), id + SUFFIX_AGENDA_ITEM);
+    /**
+     * @param width of the view it's shown in, in pixels.
+     * @return the item's image scaled down to about that width if a variant has been made, as
+     * {@link #getImageFile(Context, String)} otherwise.
+     */
+    public static File getImageFile(Context context, String id, int width) {
+        return Model.getInstance().getImageStore().get(id, width);
     }
 
-    public static File getImageFile(Context context, String id) {
-
-        if (Model.getInstance().isImageEnqueued(id)) {
-            // May currently be writing.
-            return null;
-        }
-
-        String name;
-        for (File file : context.getFilesDir().listFiles()) {
-            name = file.getName();
-            if (name.startsWith(id + ".")) {
-                for (String suffix : IMG_SUFFIXES) {
-                    if (name.endsWith(suffix)) {
-                        return file;
-                    }
-                }
+    static boolean isImageFileName(String name) {
+        for (String suffix : IMG_SUFFIXES) {
+            if (name.endsWith(suffix)) {
+                return true;
             }
         }
-
-        return null;
+        return false;
     }
 
     public static String readFile(File file) throws IOException {
@@ -0,0 +1,654 @@
+package com.tealium.digitalvelocity.data;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.event.Purge;
+import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads item images on its own few low-priority threads, so that a long list of logos
+ * neither crowds out the sync nor starts the same download twice.
+ * <p/>
+ * An id is downloaded at most once at a time; enqueueing it again while queued or in flight does
+ * nothing, unless with a new url while in flight, which abandons the old transfer. Queued images go in order, except those {@link #prioritize prioritized} because their
+ * row is on screen, which go first, most recently bound first. A cancelled download is dropped
+ * from the queue or abandoned mid-transfer. Enqueued again before an abandoned transfer has
+ * wound down, the id waits for it, as both would write the same files.
+ * <p/>
+ * Bodies are written to a ".part" file renamed into place once complete, so a failed or
+ * cancelled transfer never replaces an image with a truncated one. The part file of a dropped
+ * connection is kept, with the image's ETag or Last-Modified date, and the transfer continues
+ * with a Range request, at once or when the id is next enqueued, as long as the server confirms
+ * the image is unchanged. A body is only complete once it matches its Content-Length.
+ * <p/>
+ * An image enqueued with the validator of a copy already held is downloaded conditionally, and
+ * not at all if unchanged.
+ */
+final class ImageDownloader {
+
+    static final int DEFAULT_MAX_CONCURRENT = 3;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String PART_SUFFIX = ".part";
+    private static final String VALIDATOR_SUFFIX = ".part.validator";
+
+    /**
+     * Called on a download thread, with the downloader unlocked. A {@link #cancel} of the id
+     * waits for an {@link #onDownloaded} or {@link #onNotModified} call to return, so that it
+     * either comes first and prevents the call, or comes after it.
+     */
+    interface Listener {
+        /**
+         * @param hash hex SHA-1 of the file's contents.
+         * @param validator the strong ETag or Last-Modified date of the image, if any.
+         */
+        void onDownloaded(String id, String url, File file, String hash, String validator);
+
+        /**
+         * The image is unchanged since the validator it was enqueued with.
+         */
+        void onNotModified(String id, String url);
+
+        void onFailed(String id, String url, Throwable t);
+    }
+
+    private final HttpClient mHttpClient;
+    private final File mDir;
+    private final int mMaxConcurrent;
+    private final Listener mListener;
+    private final ExecutorService mExecutor;
+    private final Runnable mWorker;
+    // Not cancelled, whether queued, held or running.
+    private final Map<String, Job> mJobs;
+    private final PriorityQueue<Job> mQueue;
+    // Started and not yet exited, cancelled or not.
+    private final Map<String, Job> mRunning;
+    // Enqueued while a cancelled download of the same id was running.
+    private final Map<String, Job> mHeld;
+
+    private int mWorkers;
+    private long mSequence;
+
+    ImageDownloader(HttpClient httpClient, File dir, int maxConcurrent, Listener listener) {
+        mHttpClient = httpClient;
+        mDir = dir;
+        mMaxConcurrent = maxConcurrent;
+        mListener = listener;
+        mJobs = new HashMap<>();
+        mQueue = new PriorityQueue<>();
+        mRunning = new HashMap<>();
+        mHeld = new HashMap<>();
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, "ImageDownloader");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        mExecutor = executor;
+
+        mWorker = new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        };
+    }
+
+    synchronized boolean enqueue(String id, String url) {
+        return enqueue(id, url, null);
+    }
+
+    /**
+     * @param validator the ETag or Last-Modified date of the copy of the image already held,
+     *                  to download it only if changed; null to download it regardless.
+     * @return false if the id is already queued, or downloading from the url.
+     */
+    synchronized boolean enqueue(String id, String url, String validator) {
+        final Job existing = mJobs.get(id);
+        if (existing != null) {
+            if (!existing.mIsStarted) {
+                // The row changed its image before the old one was fetched.
+                existing.mUrl = url;
+                existing.mValidator = validator;
+                return false;
+            } else if (existing.mUrl.equals(url)) {
+                return false;
+            }
+            // Changed while the old one downloads, which is dropped as if cancelled.
+            mJobs.remove(id);
+            existing.mIsCancelled = true;
+        }
+
+        final Job job = new Job(id, url, validator, mSequence++);
+        mJobs.put(id, job);
+
+        if (mRunning.containsKey(id)) {
+            // Queued once the cancelled download is done with the files.
+            mHeld.put(id, job);
+        } else {
+            mQueue.add(job);
+            if (mWorkers < mMaxConcurrent) {
+                mWorkers++;
+                mExecutor.execute(mWorker);
+            }
+        }
+
+        publish();
+        return true;
+    }
+
+    /**
+     * Moves a queued download ahead of all others; does nothing if it is not queued.
+     */
+    synchronized void prioritize(String id) {
+        final Job job = mJobs.get(id);
+        if (job == null || job.mIsStarted) {
+            return;
+        }
+
+        final boolean isQueued = mQueue.remove(job);
+        job.mIsUrgent = true;
+        job.mSequence = mSequence++;
+        if (isQueued) {
+            mQueue.add(job);
+        }
+    }
+
+    /**
+     * @return whether a queued or running download was cancelled.
+     */
+    synchronized boolean cancel(String id) {
+        awaitCompletion(id);
+
+        final Job job = mJobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+
+        job.mIsCancelled = true;
+        mQueue.remove(job);
+        mHeld.remove(id);
+        publish();
+
+        if (!job.mIsStarted && !mRunning.containsKey(id)) {
+            // What an earlier attempt left to resume; one in flight cleans up after itself.
+            final String name = getFile(job).getName();
+            delete(new File(mDir, name + PART_SUFFIX));
+            delete(new File(mDir, name + VALIDATOR_SUFFIX));
+        }
+        return true;
+    }
+
+    void cancelAll() {
+        final List<String> ids;
+        synchronized (this) {
+            ids = new ArrayList<>(mJobs.keySet());
+        }
+        for (String id : ids) {
+            cancel(id);
+        }
+    }
+
+    synchronized int getQueueDepth() {
+        return mQueue.size() + mHeld.size();
+    }
+
+    synchronized int getInFlightCount() {
+        return mRunning.size();
+    }
+
+    @SuppressWarnings("unused")
+    public void onEventBackgroundThread(Purge event) {
+        // Rows synced after the purge enqueue their images again.
+        cancelAll();
+    }
+
+    private void work() {
+        while (true) {
+            final Job job;
+            synchronized (this) {
+                job = mQueue.poll();
+                if (job == null) {
+                    mWorkers--;
+                    return;
+                }
+                job.mIsStarted = true;
+                mRunning.put(job.mId, job);
+                publish();
+            }
+
+            try {
+                download(job);
+            } finally {
+                exit(job);
+            }
+        }
+    }
+
+    /**
+     * Waits for the listener to be done with a download of the id, unless called from it.
+     * Must hold the lock.
+     */
+    private void awaitCompletion(String id) {
+        boolean isInterrupted = false;
+        Job running;
+        while ((running = mRunning.get(id)) != null && running.mCompletingThread != null &&
+                running.mCompletingThread != Thread.currentThread()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks the download done, for the listener to be told outside the lock.
+     *
+     * @return false if it was cancelled, and the listener is not to be told.
+     */
+    private synchronized boolean complete(Job job) {
+        if (job.mIsCancelled) {
+            return false;
+        }
+        mJobs.remove(job.mId);
+        job.mCompletingThread = Thread.currentThread();
+        publish();
+        return true;
+    }
+
+    private synchronized void completed(Job job) {
+        job.mCompletingThread = null;
+        notifyAll();
+    }
+
+    /**
+     * Queues the download of the same id held back while this one was running.
+     */
+    private synchronized void exit(Job job) {
+        mRunning.remove(job.mId);
+        final Job held = mHeld.remove(job.mId);
+        if (held != null) {
+            mQueue.add(held);
+        }
+        publish();
+    }
+
+    private void download(final Job job) {
+        final File dst = getFile(job);
+        final File part = new File(mDir, dst.getName() + PART_SUFFIX);
+        final File validator = new File(mDir, dst.getName() + VALIDATOR_SUFFIX);
+        final Metrics metrics = Metrics.getInstance();
+        final long start = SystemClock.uptimeMillis();
+
+        try {
+            if (BuildConfig.DEBUG) Log.d(Constant.TAG, "# Creating file " + dst);
+
+            for (int attempt = 1; ; attempt++) {
+                final long before = part.length();
+                try {
+                    transfer(job, part, validator);
+                    break;
+                } catch (IOException e) {
+                    // Retried at once only while a dropping connection still makes progress.
+                    if (attempt == MAX_ATTEMPTS || job.mIsCancelled ||
+                            e instanceof InvalidResponseException ||
+                            !validator.exists() || part.length() <= before) {
+                        throw e;
+                    }
+                    metrics.count("image.retries", 1);
+                    if (BuildConfig.DEBUG) Log.d(Constant.TAG, "# Resuming " + dst +
+                            " from " + part.length() + " bytes after: " + e);
+                }
+            }
+
+            if (job.mIsNotModified) {
+                delete(part);
+                delete(validator);
+                metrics.count("image.not_modified", 1);
+                if (complete(job)) {
+                    try {
+                        mListener.onNotModified(job.mId, job.mUrl);
+                    } finally {
+                        completed(job);
+                    }
+                }
+                return;
+            }
+
+            if (!part.renameTo(dst)) {
+                throw new IOException("Unable to rename " + part + " to " + dst);
+            }
+            final String validatorValue = readValidator(validator, job.mUrl);
+            delete(validator);
+            final String hash = ImageStore.hash(dst);
+
+            final long elapsed = Math.max(1, SystemClock.uptimeMillis() - start);
+            metrics.count("image.downloads", 1);
+            metrics.count("image.bytes", job.mTransferred);
+            metrics.record("image.download_ms", elapsed);
+            metrics.record("image.throughput_kib_s", job.mTransferred * 1000 / 1024 / elapsed);
+
+            if (complete(job)) {
+                try {
+                    mListener.onDownloaded(job.mId, job.mUrl, dst, hash, validatorValue);
+                } finally {
+                    completed(job);
+                }
+                return;
+            }
+
+            delete(dst);
+        } catch (Throwable t) {
+            final boolean isCancelled;
+            synchronized (this) {
+                isCancelled = job.mIsCancelled;
+                if (!isCancelled) {
+                    mJobs.remove(job.mId);
+                    publish();
+                }
+            }
+
+            // A transfer cut short is kept to be resumed on the next attempt.
+            final boolean isResumable = !isCancelled && t instanceof IOException &&
+                    !(t instanceof InvalidResponseException) && validator.exists();
+            if (!isResumable) {
+                delete(part);
+                delete(validator);
+            }
+
+            if (isCancelled) {
+                metrics.count("image.cancelled", 1);
+            } else {
+                if (t instanceof InvalidResponseException) {
+                    metrics.count("image.invalid", 1);
+                }
+                metrics.count("image.failures", 1);
+                mListener.onFailed(job.mId, job.mUrl, t);
+            }
+        }
+    }
+
+    /**
+     * Fetches the rest of the image into the part file, asking for only the missing range if a
+     * previous attempt left one behind and the server can confirm the image hasn't changed since.
+     *
+     * @throws IOException if the body ended early; what arrived is kept.
+     * @throws InvalidResponseException if the response can't be used; the part file is not
+     *                                  worth resuming.
+     */
+    private void transfer(final Job job, final File part, final File validatorFile)
+            throws IOException {
+
+        final long offset = part.length();
+        final String validator = offset > 0 ? readValidator(validatorFile, job.mUrl) : null;
+
+        final Request.Builder builder = new Request.Builder()
+                .url(job.mUrl)
+                // So lengths and ranges are those of the file itself, not of a gzip encoding.
+                .header("Accept-Encoding", "identity");
+        if (validator != null) {
+            builder.header("Range", "bytes=" + offset + "-")
+                    .header("If-Range", validator);
+        } else if (job.mValidator != null) {
+            // An ETag is quoted, a Last-Modified date never is.
+            builder.header(job.mValidator.startsWith("\"") ? "If-None-Match" : "If-Modified-Since",
+                    job.mValidator);
+        }
+
+        mHttpClient.execute(builder.build(), new HttpClient.BodyReader<Void>() {
+            @Override
+            public Void read(Response response, InputStream body) throws IOException {
+                final int status = response.code();
+                final boolean append;
+                final long expected;
+
+                if (status == 304 && validator == null && job.mValidator != null) {
+                    job.mIsNotModified = true;
+                    return null;
+                } else if (status == 206 && validator != null) {
+                    final long[] range = parseContentRange(response.header("Content-Range"));
+                    if (range == null || range[0] != offset) {
+                        throw new InvalidResponseException(
+                                "Content-Range " + response.header("Content-Range") +
+                                        " doesn't continue from " + offset);
+                    }
+                    append = true;
+                    expected = range[1];
+
+                    final Metrics metrics = Metrics.getInstance();
+                    metrics.count("image.resumed", 1);
+                    metrics.count("image.resumed_bytes", offset);
+                } else if (status >= 200 && status < 300 && status != 206) {
+                    // Also the answer to a range whose image has since changed.
+                    append = false;
+                    expected = parseLong(response.header("Content-Length"));
+                    writeValidator(validatorFile, job.mUrl, response);
+                } else {
+                    throw new InvalidResponseException("Status " + status);
+                }
+
+                copy(job, body, part, append);
+
+                final long length = part.length();
+                if (expected >= 0 && length < expected) {
+                    throw new IOException("Received " + length + " of " + expected + " bytes");
+                } else if (expected >= 0 && length > expected) {
+                    throw new InvalidResponseException(
+                            "Received " + length + " of " + expected + " bytes");
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void copy(Job job, InputStream in, File dst, boolean append)
+            throws IOException {
+        final FileOutputStream out = new FileOutputStream(dst, append);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                if (job.mIsCancelled) {
+                    throw new CancellationException(job.mId);
+                }
+                out.write(buffer, 0, len);
+                job.mTransferred += len;
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return the strong ETag, or else the Last-Modified date, written for the url by
+     * {@link #writeValidator}; null if there is none.
+     */
+    private static String readValidator(File file, String url) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            final BufferedReader in = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                return url.equals(in.readLine()) ? in.readLine() : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Unable to read " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Records what identifies this version of the image, so that a resumed transfer can't
+     * continue a file with the bytes of another. Without one, the transfer won't be resumed.
+     */
+    private static void writeValidator(File file, String url, Response response)
+            throws IOException {
+        String validator = response.header("ETag");
+        if (validator == null || validator.startsWith("W/")) {
+            // If-Range only accepts strong validators.
+            validator = response.header("Last-Modified");
+        }
+
+        if (validator == null) {
+            delete(file);
+            return;
+        }
+
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            out.write(url + "\n" + validator);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @param header e.g. "bytes 1000-4999/5000".
+     * @return {first byte, total length or -1 if unknown}, or null if unparseable.
+     */
+    static long[] parseContentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+
+        final int dash = header.indexOf('-');
+        final int slash = header.indexOf('/');
+        if (dash == -1 || slash < dash) {
+            return null;
+        }
+
+        final long first = parseLong(header.substring(6, dash).trim());
+        final String total = header.substring(slash + 1).trim();
+        if (first < 0) {
+            return null;
+        }
+        return new long[]{first, "*".equals(total) ? -1 : parseLong(total)};
+    }
+
+    /**
+     * @return the value, or -1 if missing or malformed.
+     */
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private File getFile(Job job) {
+        return new File(mDir, job.mId + '.' + job.mUrl.substring(job.mUrl.lastIndexOf('.') + 1));
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            Log.e(Constant.TAG, "! Unable to delete " + file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void publish() {
+        final Metrics metrics = Metrics.getInstance();
+        metrics.set("image.queue_depth", mQueue.size() + mHeld.size());
+        metrics.set("image.in_flight", mRunning.size());
+    }
+
+    private static final class Job implements Comparable<Job> {
+        private final String mId;
+        private String mUrl;
+        private String mValidator;
+        private long mSequence;
+        private boolean mIsUrgent;
+        private boolean mIsStarted;
+        private volatile boolean mIsCancelled;
+        // Set while the listener is told the outcome.
+        private Thread mCompletingThread;
+        // Only touched by the thread downloading it.
+        private long mTransferred;
+        private boolean mIsNotModified;
+
+        private Job(String id, String url, String validator, long sequence) {
+            mId = id;
+            mUrl = url;
+            mValidator = validator;
+            mSequence = sequence;
+        }
+
+        /**
+         * Urgent first, the latest of them first; the rest first come, first served.
+         */
+        @Override
+        public int compareTo(Job another) {
+            if (mIsUrgent != another.mIsUrgent) {
+                return mIsUrgent ? -1 : 1;
+            }
+            final int c = mSequence < another.mSequence ? -1 :
+                    mSequence == another.mSequence ? 0 : 1;
+            return mIsUrgent ? -c : c;
+        }
+    }
+
+    /**
+     * A response that can't make a valid image, however often it's resumed.
+     */
+    private static final class InvalidResponseException extends IOException {
+        private InvalidResponseException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,571 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.AsyncTask;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.event.SyncCompleteEvent;
+import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.Metrics;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import de.greenrobot.event.EventBus;
+
+/**
+ * Downloaded images, stored once per distinct content under the hex SHA-1 of their bytes, so
+ * that sponsors sharing a logo share its file and an image survives a {@code Purge}.
+ * <p/>
+ * The manifest maps each item id to its image's file name; the url memo maps each image url
+ * to the file it last yielded along with its ETag or Last-Modified date. Parse serves files
+ * at urls that change with their content, so an id enqueued with a remembered url is given its
+ * image without a request, and only after {@link #REVALIDATE_AFTER_MS} is the url checked
+ * again, conditionally.
+ * <p/>
+ * Files are only ever renamed into place and never rewritten, so one handed out stays whole.
+ * <p/>
+ * Each image wider than one of the variant widths also gets a PNG scaled down to that width,
+ * e.g. "&lt;sha1&gt;@150w.png" beside "&lt;sha1&gt;.jpg", so that a row binding it decodes a
+ * thumbnail rather than the original. Variants are made one at a time on a background thread,
+ * which keeps at most one large image decoded, and remembered, so that a bind looks them up
+ * without touching the disk.
+ * <p/>
+ * Until the background load has moved images kept by id into the store, an id not yet in the
+ * manifest is given its image where it was kept; each one moved is then announced with a
+ * {@link SyncCompleteEvent.Image}.
+ */
+final class ImageStore {
+
+    static final long REVALIDATE_AFTER_MS = 24 * 60 * 60 * 1000;
+
+    private static final String KEY_FILE = "file";
+    private static final String KEY_VALIDATOR = "validator";
+    private static final String KEY_CHECKED = "checked";
+    private static final String VARIANT_SEPARATOR = "@";
+    private static final int BUFFER_SIZE = 8192;
+    private static final String[] LEGACY_SUFFIXES = {IOUtils.IMG_SUFFIX_PNG,
+            IOUtils.IMG_SUFFIX_JPG, IOUtils.IMG_SUFFIX_JPEG, IOUtils.IMG_SUFFIX_GIF};
+
+    private final File mDir;
+    private final File mLegacyDir;
+    private final SharedPreferences mManifest;
+    private final SharedPreferences mUrls;
+    private final int[] mVariantWidths;
+    private final ExecutorService mVariantExecutor;
+    // Names of the variant files made.
+    private final Set<String> mVariants;
+    private volatile boolean mIsLoaded;
+
+    /**
+     * @param legacyDir     where images were kept by id, to be moved into the store.
+     * @param variantWidths in pixels, of the views images are shown in.
+     */
+    ImageStore(File dir, File legacyDir, SharedPreferences manifest, SharedPreferences urls,
+               int... variantWidths) {
+        mDir = dir;
+        mLegacyDir = legacyDir;
+        mManifest = manifest;
+        mUrls = urls;
+        mVariantWidths = variantWidths;
+        mVariants = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable r) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                r.run();
+                            }
+                        }, "ImageVariants");
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        mVariantExecutor = executor;
+    }
+
+    File getDir() {
+        return mDir;
+    }
+
+    void loadInBackground() {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                ensureLoaded();
+            }
+        });
+    }
+
+    /**
+     * Never waits for the background load, as rows bind on the UI thread.
+     *
+     * @return the image file for the id, or null if none has been stored.
+     */
+    File get(String id) {
+        final String name = mManifest.getString(id, null);
+        if (name != null) {
+            return new File(mDir, name);
+        }
+        return mIsLoaded ? null : getLegacyFile(id);
+    }
+
+    /**
+     * @param width of the view, in pixels.
+     * @return the smallest variant of the id's image at least that wide, or else the image
+     * itself; null if none has been stored.
+     */
+    File get(String id, int width) {
+        final File file = get(id);
+        if (file == null) {
+            return null;
+        }
+
+        File best = file;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int variantWidth : mVariantWidths) {
+            if (variantWidth >= width && variantWidth < bestWidth) {
+                final File variant = getVariantFile(file.getName(), variantWidth);
+                if (mVariants.contains(variant.getName())) {
+                    best = variant;
+                    bestWidth = variantWidth;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Makes the variants of the image that are missing, in the background, and then runs the
+     * callback, if any.
+     */
+    void createVariantsInBackground(final File file, final Runnable callback) {
+        createVariantsInBackground(Collections.singleton(file.getName()), callback);
+    }
+
+    /**
+     * Gives the id the url's image if it was stored and is fresh.
+     *
+     * @return whether the id now has the url's image and nothing need be downloaded.
+     */
+    synchronized boolean reuse(String id, String url) {
+        ensureLoaded();
+
+        final JSONObject memo = getMemo(url);
+        if (memo == null || memo.optLong(KEY_CHECKED) + REVALIDATE_AFTER_MS <
+                System.currentTimeMillis()) {
+            return false;
+        }
+
+        assign(id, memo.optString(KEY_FILE));
+        return true;
+    }
+
+    /**
+     * @return the validator to download the url conditionally with, or null if its image isn't
+     * stored.
+     */
+    synchronized String getValidator(String url) {
+        final JSONObject memo = getMemo(url);
+        return memo == null ? null : memo.optString(KEY_VALIDATOR, null);
+    }
+
+    /**
+     * Moves a downloaded file into the store as the id's image; deleted instead if the same
+     * bytes are already stored.
+     *
+     * @param hash hex SHA-1 of the file's contents.
+     * @param validator the response's strong ETag or Last-Modified date, if any.
+     * @return the id's image file.
+     */
+    synchronized File put(String id, String url, File file, String hash, String validator)
+            throws IOException {
+        ensureLoaded();
+
+        final String name = hash + getSuffix(url);
+        final File stored = new File(mDir, name);
+        if (stored.exists()) {
+            Metrics.getInstance().count("image.deduplicated", 1);
+            delete(file);
+        } else if (!file.renameTo(stored)) {
+            throw new IOException("Unable to rename " + file + " to " + stored);
+        }
+
+        putMemo(url, name, validator);
+        assign(id, name);
+        return stored;
+    }
+
+    /**
+     * Records that the url still yields the image it did, and gives it to the id.
+     *
+     * @return false if the image is no longer stored.
+     */
+    synchronized boolean confirm(String id, String url) {
+        final JSONObject memo = getMemo(url);
+        if (memo == null) {
+            return false;
+        }
+
+        putMemo(url, memo.optString(KEY_FILE), memo.optString(KEY_VALIDATOR, null));
+        assign(id, memo.optString(KEY_FILE));
+        return true;
+    }
+
+    /**
+     * Forgets the id's image, deleting the file unless another id has the same image.
+     */
+    synchronized void remove(String id) {
+        ensureLoaded();
+
+        final String name = mManifest.getString(id, null);
+        if (name == null) {
+            return;
+        }
+
+        mManifest.edit().remove(id).apply();
+        release(name);
+    }
+
+    /**
+     * @return the hex SHA-1 of the file's contents.
+     */
+    static String hash(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buffer = new byte[BUFFER_SIZE];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+
+        final byte[] bytes = digest.digest();
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void assign(String id, String name) {
+        final String previous = mManifest.getString(id, null);
+        if (name.equals(previous)) {
+            return;
+        }
+
+        mManifest.edit().putString(id, name).apply();
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * Deletes the file and what is remembered of it, unless an id still has it. Must hold the
+     * lock.
+     */
+    private void release(String name) {
+        if (mManifest.getAll().containsValue(name)) {
+            return;
+        }
+
+        final SharedPreferences.Editor editor = mUrls.edit();
+        for (Map.Entry<String, ?> entry : mUrls.getAll().entrySet()) {
+            if (entry.getValue() instanceof String &&
+                    name.equals(parseMemo((String) entry.getValue()).optString(KEY_FILE))) {
+                editor.remove(entry.getKey());
+            }
+        }
+        editor.apply();
+
+        delete(new File(mDir, name));
+
+        final String prefix = getHash(name) + VARIANT_SEPARATOR;
+        final File[] variants = mDir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().startsWith(prefix);
+            }
+        });
+        if (variants != null) {
+            for (File variant : variants) {
+                mVariants.remove(variant.getName());
+                delete(variant);
+            }
+        }
+    }
+
+    /**
+     * @return the memo of the url, or null if none or its file is gone. Must hold the lock.
+     */
+    private JSONObject getMemo(String url) {
+        final String value = mUrls.getString(url, null);
+        if (value == null) {
+            return null;
+        }
+
+        final JSONObject memo = parseMemo(value);
+        final String name = memo.optString(KEY_FILE, null);
+        return name != null && new File(mDir, name).exists() ? memo : null;
+    }
+
+    private void putMemo(String url, String name, String validator) {
+        try {
+            mUrls.edit().putString(url, new JSONObject()
+                    .put(KEY_FILE, name)
+                    .put(KEY_VALIDATOR, validator)
+                    .put(KEY_CHECKED, System.currentTimeMillis())
+                    .toString())
+                    .apply();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static JSONObject parseMemo(String value) {
+        try {
+            return new JSONObject(value);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+
+    private void createVariantsInBackground(
+            final Collection<String> names, final Runnable callback) {
+        mVariantExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (String name : names) {
+                    final File file = new File(mDir, name);
+                    for (int width : mVariantWidths) {
+                        final File variant = getVariantFile(name, width);
+                        if (variant.exists()) {
+                            // Made before this launch.
+                            mVariants.add(variant.getName());
+                            continue;
+                        } else if (!file.exists()) {
+                            continue;
+                        }
+
+                        try {
+                            createVariant(file, variant, width);
+                            if (variant.exists()) {
+                                mVariants.add(variant.getName());
+                            }
+                        } catch (IOException | RuntimeException e) {
+                            Log.e(Constant.TAG, "! Unable to create " + variant.getName(), e);
+                            break;
+                        }
+                    }
+                }
+
+                if (callback != null) {
+                    callback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Scales the image down to the width, unless it is no wider.
+     */
+    static void createVariant(File file, File variant, int width) throws IOException {
+        final long start = SystemClock.uptimeMillis();
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode " + file.getName());
+        }
+        if (options.outWidth <= width) {
+            return;
+        }
+
+        // Decodes no more than twice the width, then scales smoothly from there.
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = 1;
+        while (options.outWidth / (options.inSampleSize * 2) >= width) {
+            options.inSampleSize *= 2;
+        }
+
+        final Bitmap sampled = BitmapFactory.decodeFile(file.getPath(), options);
+        if (sampled == null) {
+            throw new IOException("Unable to decode " + file.getName());
+        }
+
+        final int height = Math.max(1,
+                Math.round(sampled.getHeight() * width / (float) sampled.getWidth()));
+        final Bitmap scaled = Bitmap.createScaledBitmap(sampled, width, height, true);
+        if (scaled != sampled) {
+            sampled.recycle();
+        }
+
+        final File tmp = new File(variant.getPath() + ".tmp");
+        try {
+            final OutputStream out = new FileOutputStream(tmp);
+            try {
+                scaled.compress(Bitmap.CompressFormat.PNG, 100, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            scaled.recycle();
+        }
+
+        if (!tmp.renameTo(variant)) {
+            delete(tmp);
+            throw new IOException("Unable to rename " + tmp + " to " + variant);
+        }
+
+        final Metrics metrics = Metrics.getInstance();
+        metrics.count("image.variants", 1);
+        metrics.record("image.variant_ms", SystemClock.uptimeMillis() - start);
+    }
+
+    private File getVariantFile(String name, int width) {
+        return new File(mDir, getHash(name) + VARIANT_SEPARATOR + width + "w.png");
+    }
+
+    private static String getHash(String name) {
+        final int dot = name.indexOf('.');
+        return dot == -1 ? name : name.substring(0, dot);
+    }
+
+    private static String getSuffix(String url) {
+        final String path = url.substring(url.lastIndexOf('/') + 1);
+        final int dot = path.lastIndexOf('.');
+        return dot == -1 ? "" : path.substring(dot);
+    }
+
+    /**
+     * Moves images downloaded before the store existed, named by item id, into it.
+     */
+    private synchronized void ensureLoaded() {
+        if (mIsLoaded) {
+            return;
+        }
+
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            Log.e(Constant.TAG, "! Unable to create " + mDir.getAbsolutePath());
+        }
+
+        final File[] files = mLegacyDir.listFiles();
+        final List<String> migrated = new ArrayList<>();
+        if (files != null) {
+            String name;
+            for (File file : files) {
+                name = file.getName();
+                if (name.endsWith(".part") || name.endsWith(".part.validator")) {
+                    // Unfinished downloads, which now go to the store's directory.
+                    delete(file);
+                    continue;
+                }
+
+                final int dot = name.indexOf('.');
+                if (dot <= 0 || !IOUtils.isImageFileName(name)) {
+                    continue;
+                }
+
+                final String id = name.substring(0, dot);
+                try {
+                    final String stored = hash(file) + name.substring(name.lastIndexOf('.'));
+                    if (new File(mDir, stored).exists()) {
+                        delete(file);
+                    } else if (!file.renameTo(new File(mDir, stored))) {
+                        throw new IOException("Unable to rename " + file);
+                    }
+                    assign(id, stored);
+                    migrated.add(id);
+                } catch (IOException e) {
+                    Log.e(Constant.TAG, "! Unable to migrate " + file.getAbsolutePath(), e);
+                }
+            }
+        }
+
+        mIsLoaded = true;
+
+        // Rows bound meanwhile were given files that have since moved.
+        for (String id : migrated) {
+            EventBus.getDefault().post(new SyncCompleteEvent.Image(id));
+        }
+
+        // Those downloaded before variants were made, or at other widths.
+        final Set<String> names = new HashSet<>();
+        for (Object name : mManifest.getAll().values()) {
+            names.add(String.valueOf(name));
+        }
+        createVariantsInBackground(names, null);
+
+        if (BuildConfig.DEBUG) {
+            Log.d(Constant.TAG, "# Loaded " + mManifest.getAll().size() + " images, migrated " +
+                    migrated.size() + ".");
+        }
+    }
+
+    /**
+     * @return the image kept by id before the store existed, or null if there is none.
+     */
+    private File getLegacyFile(String id) {
+        for (String suffix : LEGACY_SUFFIXES) {
+            final File file = new File(mLegacyDir, id + suffix);
+            if (file.exists()) {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    private static void delete(File file) {
+        if (!file.delete() && file.exists()) {
+            Log.e(Constant.TAG, "! Unable to delete " + file.getAbsolutePath());
+        }
+    }
+}
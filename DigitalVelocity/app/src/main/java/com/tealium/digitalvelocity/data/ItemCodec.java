@@ -0,0 +1,193 @@
+package com.tealium.digitalvelocity.data;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.Coordinates;
+import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
+import com.tealium.digitalvelocity.data.gson.Notification;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.data.gson.Question;
+import com.tealium.digitalvelocity.data.gson.RecordReader;
+import com.tealium.digitalvelocity.data.gson.RecordWriter;
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+import com.tealium.digitalvelocity.data.gson.Survey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Encodes record payloads in the versioned binary format of {@link ParseItem#write(RecordWriter)}.
+ * <p/>
+ * Payloads start with {@link #FORMAT_VERSION}; payloads starting with '{' are JSON written by
+ * earlier versions and are still decoded through Gson, with the typed adapters of
+ * {@link JsonAdapters}, so existing stores need no conversion.
+ */
+abstract class ItemCodec<T extends ParseItem> {
+
+    static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte JSON_OBJECT_START = '{';
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final TypeAdapter<T> mJsonAdapter;
+    private final Map<String, Category> mCategories;
+
+    private ItemCodec(Class<T> itemClass, Gson gson, Map<String, Category> categories) {
+        mJsonAdapter = gson.getAdapter(itemClass);
+        mCategories = categories;
+    }
+
+    /**
+     * @param categories resolves the category references of agenda items and sponsors.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends ParseItem> ItemCodec<T> create(Class<T> itemClass, Gson gson,
+                                                     Map<String, Category> categories) {
+        final ItemCodec<?> codec;
+
+        if (itemClass == AgendaItem.class) {
+            codec = new ItemCodec<AgendaItem>(AgendaItem.class, gson, categories) {
+                @Override
+                AgendaItem read(RecordReader in) throws IOException {
+                    return new AgendaItem(in);
+                }
+            };
+        } else if (itemClass == Sponsor.class) {
+            codec = new ItemCodec<Sponsor>(Sponsor.class, gson, categories) {
+                @Override
+                Sponsor read(RecordReader in) throws IOException {
+                    return new Sponsor(in);
+                }
+            };
+        } else if (itemClass == Category.class) {
+            codec = new ItemCodec<Category>(Category.class, gson, null) {
+                @Override
+                Category read(RecordReader in) throws IOException {
+                    return new Category(in);
+                }
+            };
+        } else if (itemClass == Floor.class) {
+            codec = new ItemCodec<Floor>(Floor.class, gson, null) {
+                @Override
+                Floor read(RecordReader in) throws IOException {
+                    return new Floor(in);
+                }
+            };
+        } else if (itemClass == Coordinates.class) {
+            codec = new ItemCodec<Coordinates>(Coordinates.class, gson, null) {
+                @Override
+                Coordinates read(RecordReader in) throws IOException {
+                    return new Coordinates(in);
+                }
+            };
+        } else if (itemClass == Survey.class) {
+            codec = new ItemCodec<Survey>(Survey.class, gson, null) {
+                @Override
+                Survey read(RecordReader in) throws IOException {
+                    return new Survey(in);
+                }
+            };
+        } else if (itemClass == Question.class) {
+            codec = new ItemCodec<Question>(Question.class, gson, null) {
+                @Override
+                Question read(RecordReader in) throws IOException {
+                    return new Question(in);
+                }
+            };
+        } else if (itemClass == Notification.class) {
+            codec = new ItemCodec<Notification>(Notification.class, gson, null) {
+                @Override
+                Notification read(RecordReader in) throws IOException {
+                    return new Notification(in);
+                }
+            };
+        } else {
+            throw new IllegalArgumentException("No codec for " + itemClass);
+        }
+
+        return (ItemCodec<T>) codec;
+    }
+
+    abstract T read(RecordReader in) throws IOException;
+
+    final byte[] encode(T item) {
+        final RecordWriter out = new RecordWriter(INITIAL_CAPACITY);
+        out.writeByte(FORMAT_VERSION);
+        item.write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IOException if the payload is malformed or of an unknown version.
+     */
+    final T decode(ByteBuffer payload) throws IOException {
+        if (!payload.hasRemaining()) {
+            throw new IOException("Empty payload");
+        }
+
+        try {
+            if (payload.get(payload.position()) == JSON_OBJECT_START) {
+                return decodeJson(payload);
+            }
+
+            final RecordReader in = new RecordReader(payload, mCategories);
+            final int version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported record version " + version);
+            }
+            return read(in);
+        } catch (JsonParseException | IllegalStateException | BufferUnderflowException e) {
+            throw new IOException("Malformed payload", e);
+        }
+    }
+
+    private T decodeJson(ByteBuffer payload) throws IOException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(
+                new ByteBufferInputStream(payload), UTF_8));
+        try {
+            return mJsonAdapter.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            final int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return mBuffer.remaining();
+        }
+    }
+}
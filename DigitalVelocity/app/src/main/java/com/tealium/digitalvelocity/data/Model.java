@@ -5,7 +5,6 @@ import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.Typeface;
-import android.os.AsyncTask;
 import android.support.annotation.NonNull;
 import android.text.TextUtils;
 import android.util.Log;
@@ -18,12 +17,15 @@ import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.gson.AgendaItem;
 import com.tealium.digitalvelocity.data.gson.Question;
 import com.tealium.digitalvelocity.event.Purge;
+import com.tealium.digitalvelocity.event.SaveRequest;
 import com.tealium.digitalvelocity.event.SyncCompleteEvent;
 import com.tealium.digitalvelocity.keymanager.KeyManager;
 import com.tealium.digitalvelocity.parse.ParseHelper;
 import com.tealium.digitalvelocity.parse.SyncManager;
 import com.tealium.digitalvelocity.push.PushManager;
 import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Metrics;
 import com.tealium.digitalvelocity.util.Util;
 
 import org.json.JSONArray;
@@ -31,36 +33,38 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import de.greenrobot.event.EventBus;
 
 
 public final class Model {
 
-    private static final int BUFFER_SIZE = 8192;
     private static Model sInstance;
 
     private final SharedPreferences mSharedPreferences;
     private final SharedPreferences mImgQueue;
     private final SharedPreferences mAgendaFavorites;
     private final SharedPreferences mVipPreferences;
-    private final KeyManager mKeyManager;
+    private final FutureTask<KeyManager> mKeyManager;
+    private final ImageStore mImageStore;
+    private final ImageDownloader mImageDownloader;
+    private final IOManager mIOManager;
     private final Context mContext;
-    private final Typeface mDefaultTypeface;
-    private final Typeface mSemiBoldTypeface;
-    private final Typeface mLightTypeface;
-    private final Typeface mFontAwesome;
+    private final LazyTypeface mDefaultTypeface;
+    private final LazyTypeface mSemiBoldTypeface;
+    private final LazyTypeface mLightTypeface;
+    private final LazyTypeface mFontAwesome;
     private final String mVisitorId;
+    private volatile ModelSnapshot mSnapshot;
 
     private Model(Context context) {
         if (context == null) {
@@ -82,36 +86,47 @@ public final class Model {
         }
 
         mVisitorId = uuid.replace("-", "");
+        refreshSnapshot();
 
-        mDefaultTypeface = Typeface.createFromAsset(
-                context.getAssets(), "fonts/MyriadPro-Regular.otf");
-        mSemiBoldTypeface = Typeface.createFromAsset(
-                context.getAssets(), "fonts/MyriadPro-Semibold.otf");
-        mLightTypeface = Typeface.createFromAsset(
-                context.getAssets(), "fonts/MyriadPro-Light.otf");
-        mFontAwesome = Typeface.createFromAsset(
-                context.getAssets(), "fonts/fontawesome-webfont.ttf");
+        mDefaultTypeface = new LazyTypeface(mContext, "fonts/MyriadPro-Regular.otf");
+        mSemiBoldTypeface = new LazyTypeface(mContext, "fonts/MyriadPro-Semibold.otf");
+        mLightTypeface = new LazyTypeface(mContext, "fonts/MyriadPro-Light.otf");
+        mFontAwesome = new LazyTypeface(mContext, "fonts/fontawesome-webfont.ttf");
 
-        try {
-            mKeyManager = new KeyManager(mContext);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
-
-        EstimoteManager.setup(mContext, mKeyManager.getEstimoteProximityUuid());
+        mKeyManager = new FutureTask<>(new Callable<KeyManager>() {
+            @Override
+            public KeyManager call() throws IOException {
+                return new KeyManager(mContext);
+            }
+        });
+
+        mImageStore = new ImageStore(
+                new File(mContext.getFilesDir(), "images"),
+                mContext.getFilesDir(),
+                context.getSharedPreferences(Constant.IMAGE_MANIFEST, 0),
+                context.getSharedPreferences(Constant.IMAGE_URLS, 0),
+                mContext.getResources().getDimensionPixelSize(R.dimen.item_image_size),
+                mContext.getResources().getDimensionPixelSize(
+                        R.dimen.agenda_detail_image_width));
+        mImageStore.loadInBackground();
+        mImageDownloader = new ImageDownloader(
+                HttpClient.getInstance(),
+                mImageStore.getDir(),
+                ImageDownloader.DEFAULT_MAX_CONCURRENT,
+                createDownloadListener());
+        mIOManager = new IOManager(context);
 
         final EventBus bus = EventBus.getDefault();
 
         bus.register(new SyncManager(context));
-        bus.register(new IOManager(context));
+        bus.register(mIOManager);
+        bus.register(mImageDownloader);
 
         if (isFirstLaunchSinceUpdate()) {
             // Should re-download all data to be safe
             clearCacheKeys();
             bus.post(new Purge());
         }
-
-        updateEstimoteManager();
     }
 
     public boolean isSurveyComplete(String surveyID) {
@@ -145,28 +160,80 @@ public final class Model {
         return sInstance;
     }
 
+    /**
+     * @return the current settings; never blocks and never reads {@link SharedPreferences}.
+     */
+    public ModelSnapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Publishes a new snapshot after one of its settings has been written.
+     */
+    private synchronized void refreshSnapshot() {
+        mSnapshot = new ModelSnapshot(mSharedPreferences, mVipPreferences, mContext.getResources());
+    }
+
     public SharedPreferences getSharedPreferences() {
         return mSharedPreferences;
     }
 
     public Typeface getDefaultTypeface() {
-        return mDefaultTypeface;
+        return mDefaultTypeface.get();
     }
 
     public Typeface getSemiBoldTypeface() {
-        return mSemiBoldTypeface;
+        return mSemiBoldTypeface.get();
     }
 
     public Typeface getLightTypeface() {
-        return mLightTypeface;
+        return mLightTypeface.get();
     }
 
     public Typeface getFontAwesome() {
-        return mFontAwesome;
+        return mFontAwesome.get();
     }
 
+    /**
+     * Parses the keys on the calling thread unless that has already started elsewhere, in which
+     * case this waits for it to finish.
+     */
     public KeyManager getKeyManager() {
-        return mKeyManager;
+        mKeyManager.run();
+
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return mKeyManager.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Creates the manager on first use, so call from the main thread.
+     */
+    public synchronized EstimoteManager getEstimoteManager() {
+        EstimoteManager estimoteManager = EstimoteManager.getInstance();
+        if (estimoteManager == null) {
+            estimoteManager = EstimoteManager.setup(
+                    mContext, getKeyManager().getEstimoteProximityUuid());
+            updateEstimoteManager();
+        }
+        return estimoteManager;
+    }
+
+    ImageStore getImageStore() {
+        return mImageStore;
     }
 
     public String getVisitorId() {
@@ -174,49 +241,43 @@ public final class Model {
     }
 
     public String getUserEmail() {
-        return mSharedPreferences.getString(TrackingManager.Key.EMAIL, null);
+        return mSnapshot.getUserEmail();
     }
 
     public String getTraceId() {
-        return mSharedPreferences.getString(Constant.SP.KEY_TRACE_ID, null);
+        return mSnapshot.getTraceId();
     }
 
     public String getWelcomeYear() {
-        return mSharedPreferences.getString(
-                Constant.SP.KEY_WELCOME_YEAR,
-                mContext.getString(R.string.main_label_year_text));
+        return mSnapshot.getWelcomeYear();
     }
 
     public String getWelcomeDescription() {
-        return mSharedPreferences.getString(
-                Constant.SP.KEY_WELCOME_DESCRIPTION,
-                mContext.getString(R.string.main_label_slogan_text));
+        return mSnapshot.getWelcomeDescription();
     }
 
     public String getWelcomeSubtitle() {
-        return mSharedPreferences.getString(
-                Constant.SP.KEY_WELCOME_SUBTITLE,
-                mContext.getString(R.string.main_label_date_location_text));
+        return mSnapshot.getWelcomeSubtitle();
     }
 
     public String getUUID() {
-        return mSharedPreferences.getString(Constant.SP.KEY_UUID, null);
+        return mSnapshot.getUUID();
     }
 
     public String getDemoAccount() {
-        return mSharedPreferences.getString(Constant.SP.KEY_DEMO_ACCOUNT, null);
+        return mSnapshot.getDemoAccount();
     }
 
     public String getDemoProfile() {
-        return mSharedPreferences.getString(Constant.SP.KEY_DEMO_PROFILE, null);
+        return mSnapshot.getDemoProfile();
     }
 
     public String getDemoEnvironment() {
-        return mSharedPreferences.getString(Constant.SP.KEY_DEMO_ENVIRONMENT, null);
+        return mSnapshot.getDemoEnvironment();
     }
 
     public Map<String, ?> getVipData() {
-        return mVipPreferences.getAll();
+        return mSnapshot.getVipData();
     }
 
     public String getSurveyAnswer(Question question) {
@@ -240,46 +301,48 @@ public final class Model {
             }
         }
         editor.commit();
+        refreshSnapshot();
     }
 
     /**
      * @return instanceId if account/profile/environment are appropriate
      */
     public String getDemoInstanceId() {
-        return mSharedPreferences.getString(Constant.SP.KEY_DEMO_INSTANCE_ID, null);
+        return mSnapshot.getDemoInstanceId();
     }
 
     public long getParseSyncRate() {
-        return mSharedPreferences.getLong(Constant.SP.KEY_PARSE_SYNC_RATE, 15);
+        return mSnapshot.getParseSyncRate();
     }
 
     public boolean canPromptBluetooth() {
-        return mSharedPreferences.getBoolean(Constant.SP.KEY_CAN_PROMPT_BLUETOOTH, true);
+        return mSnapshot.canPromptBluetooth();
     }
 
     public void setUsageDataEnabled(boolean isEnabled) {
         mSharedPreferences.edit()
                 .putBoolean(Constant.SP.KEY_USAGE_DATA_ENABLED, isEnabled)
                 .apply();
+        refreshSnapshot();
     }
 
     public boolean isUsageDataEnabled() {
-        return mSharedPreferences.getBoolean(Constant.SP.KEY_USAGE_DATA_ENABLED, true);
+        return mSnapshot.isUsageDataEnabled();
     }
 
     public int getMonitoringStartHour() {
-        return mSharedPreferences.getInt(
-                Constant.SP.KEY_MONITORING_START_HOUR, 0);
+        return mSnapshot.getMonitoringStartHour();
     }
 
     public boolean isParsePushRegistered() {
-        return mSharedPreferences.getBoolean(Constant.SP.KEY_IS_PARSE_PUSH_REGISTERED, false);
+        return mSnapshot.isParsePushRegistered();
     }
 
     public void setParsePushRegistered(boolean isRegistered) {
         mSharedPreferences.edit()
                 .putBoolean(Constant.SP.KEY_IS_PARSE_PUSH_REGISTERED, isRegistered)
                 .commit();
+        refreshSnapshot();
     }
 
     public String getGcmToken() {
@@ -291,34 +354,31 @@ public final class Model {
     }
 
     public String getSnowShoeUrl() {
-        return mSharedPreferences.getString(Constant.SP.KEY_SNOWSHOE_URL, null);
+        return mSnapshot.getSnowShoeUrl();
     }
 
     public String getTealiumAccount() {
-        return mSharedPreferences.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_ACCOUNT, "tealium");
+        return mSnapshot.getTealiumAccount();
     }
 
     public String getTealiumProfile() {
-        return mSharedPreferences.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_PROFILE, "digitalvelocity");
+        return mSnapshot.getTealiumProfile();
     }
 
     public String getTealiumEnv() {
-        return mSharedPreferences.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_ENV, "BuildConfig.TEALIUM_ENV");
+        return mSnapshot.getTealiumEnv();
     }
 
     public long getMonitoringStartDate() {
-        return mSharedPreferences.getLong(
-                Constant.SP.KEY_MONITORING_START_DATE, 0);
+        return mSnapshot.getMonitoringStartDate();
     }
 
     public int getMonitoringStopHour() {
-        return mSharedPreferences.getInt(
-                Constant.SP.KEY_MONITORING_STOP_HOUR, 23);
+        return mSnapshot.getMonitoringStopHour();
     }
 
     public long getMonitoringStopDate() {
-        return mSharedPreferences.getLong(
-                Constant.SP.KEY_MONITORING_STOP_DATE, Long.MAX_VALUE);
+        return mSnapshot.getMonitoringStopDate();
     }
 
     public void setConfig(JSONObject o) {
@@ -352,6 +412,7 @@ public final class Model {
         setOrRemoveIfNull(editor, Constant.SP.KEY_OVERRIDE_TEALIUM_ENV, o.optString("envOverride"));
 
         editor.commit();
+        refreshSnapshot();
 
         this.updateEstimoteManager();
 
@@ -371,8 +432,17 @@ public final class Model {
         }
     }
 
-    private void updateEstimoteManager() {
-        EstimoteManager.getInstance()
+    /**
+     * Applies the beacon settings; a manager created later picks them up in
+     * {@link #getEstimoteManager()}.
+     */
+    private synchronized void updateEstimoteManager() {
+        final EstimoteManager estimoteManager = EstimoteManager.getInstance();
+        if (estimoteManager == null) {
+            return;
+        }
+
+        estimoteManager
                 .setRSSIThreshold(mSharedPreferences.getInt(
                         Constant.SP.KEY_RSSI_THRESHOLD, Integer.MIN_VALUE))
                 .setEnterThreshold(mSharedPreferences.getLong(
@@ -389,6 +459,7 @@ public final class Model {
         mSharedPreferences.edit()
                 .putBoolean(Constant.SP.KEY_CAN_PROMPT_BLUETOOTH, enabled)
                 .apply();
+        refreshSnapshot();
     }
 
     public void setUserEmail(String userEmail) {
@@ -399,6 +470,7 @@ public final class Model {
         }
 
         mSharedPreferences.edit().putString(TrackingManager.Key.EMAIL, userEmail).apply();
+        refreshSnapshot();
     }
 
     public void setTraceId(String newId) {
@@ -410,6 +482,7 @@ public final class Model {
         } else {
             editor.putString(Constant.SP.KEY_TRACE_ID, newId).apply();
         }
+        refreshSnapshot();
     }
 
     public void setDemoAccountProfileEnvironment(String accountName, String profileName, String environmentName) {
@@ -420,6 +493,17 @@ public final class Model {
                 .putString(Constant.SP.KEY_DEMO_INSTANCE_ID, Util.createInstanceId(
                         accountName, profileName, environmentName))
                 .apply();
+        refreshSnapshot();
+    }
+
+    /**
+     * Commits the rows on the calling thread, unlike posting the {@link SaveRequest.Batch}, so
+     * that a caller producing them never runs ahead of the disk.
+     *
+     * @return false if they could not be written.
+     */
+    public boolean save(SaveRequest.Batch<?> batch) {
+        return mIOManager.saveAll(batch);
     }
 
     public void enqueueImageDownload(@NonNull String id, String url) {
@@ -427,10 +511,46 @@ public final class Model {
             return;
         }
 
+        final File before = mImageStore.get(id);
+        if (mImageStore.reuse(id, url)) {
+            Metrics.getInstance().count("image.reused", 1);
+            if (mImgQueue.contains(id)) {
+                mImgQueue.edit().remove(id).apply();
+                mImageDownloader.cancel(id);
+            }
+            if (!mImageStore.get(id).equals(before)) {
+                EventBus.getDefault().post(new SyncCompleteEvent.Image(id));
+            }
+            return;
+        }
+
         if (BuildConfig.DEBUG) Log.v(Constant.TAG, "# Enqueued " + id + " to download " + url);
 
-        mImgQueue.edit().putString(id, url).apply();
-        performRequest(id, url);
+        synchronized (mImgQueue) {
+            mImgQueue.edit().putString(id, url).apply();
+        }
+        mImageDownloader.enqueue(id, url, mImageStore.getValidator(url));
+    }
+
+    /**
+     * Has the item's image downloaded ahead of the others, because its row is on screen.
+     */
+    public void prioritizeImageDownload(String id) {
+        mImageDownloader.prioritize(id);
+    }
+
+    /**
+     * Forgets any pending download of the item's image and the image itself, deleting the file
+     * unless another item shares it.
+     */
+    void removeImage(String id) {
+        mImageDownloader.cancel(id);
+
+        if (mImgQueue.contains(id)) {
+            mImgQueue.edit().remove(id).apply();
+        }
+
+        mImageStore.remove(id);
     }
 
     public boolean isImageEnqueued(String id) {
@@ -447,8 +567,11 @@ public final class Model {
         if (BuildConfig.DEBUG) Log.d(Constant.TAG, "Resuming " + entries.size() +
                 " image downloads...");
 
+        // Those still downloading since the last wake are not started again.
+        String url;
         for (Map.Entry<String, ?> entry : entries.entrySet()) {
-            performRequest(entry.getKey(), entry.getValue() + "");
+            url = entry.getValue() + "";
+            mImageDownloader.enqueue(entry.getKey(), url, mImageStore.getValidator(url));
         }
 
         return true;
@@ -483,31 +606,31 @@ public final class Model {
     }
 
     public boolean isContactVisible() {
-        return mSharedPreferences.getBoolean(Constant.SP.KEY_CONTACT_VISIBLE, false);
+        return mSnapshot.isContactVisible();
     }
 
     public String getContactFacebook() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_FACEBOOK, null);
+        return mSnapshot.getContactFacebook();
     }
 
     public String getContactEmailHeader() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_EMAIL_HEADER, null);
+        return mSnapshot.getContactEmailHeader();
     }
 
     public String getContactEmailMessage() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_EMAIL_MESSAGE, null);
+        return mSnapshot.getContactEmailMessage();
     }
 
     public String getContactEmail() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_EMAIL, null);
+        return mSnapshot.getContactEmail();
     }
 
     public String getContactPhoneNumber() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_PHONE_NUMBER, null);
+        return mSnapshot.getContactPhoneNumber();
     }
 
     public String getContactTwitter() {
-        return mSharedPreferences.getString(Constant.SP.KEY_CONTACT_TWITTER, null);
+        return mSnapshot.getContactTwitter();
     }
 
     public void setContactInfo(JSONObject contactInfo) {
@@ -521,6 +644,7 @@ public final class Model {
                     .remove(Constant.SP.KEY_CONTACT_TWITTER)
                     .remove(Constant.SP.KEY_CONTACT_VISIBLE)
                     .commit();
+            refreshSnapshot();
             return;
         }
 
@@ -547,6 +671,7 @@ public final class Model {
                         Constant.SP.KEY_CONTACT_VISIBLE,
                         contactInfo.optBoolean(ParseHelper.Column.VISIBLE, false))
                 .commit();
+        refreshSnapshot();
     }
 
     /**
@@ -562,68 +687,61 @@ public final class Model {
                 .apply();
     }
 
-    private void performRequest(final String id, final String imageURI) {
+    /**
+     * Forgets the id's pending download, unless it has since been enqueued with another url,
+     * which is then still to be downloaded.
+     */
+    private void dequeueImage(String id, String url) {
+        synchronized (mImgQueue) {
+            if (url.equals(mImgQueue.getString(id, null))) {
+                mImgQueue.edit().remove(id).apply();
+            }
+        }
+    }
 
-        new AsyncTask<Void, Void, Throwable>() {
+    private ImageDownloader.Listener createDownloadListener() {
+        return new ImageDownloader.Listener() {
             @Override
-            protected Throwable doInBackground(Void... params) {
-
-                HttpURLConnection connection = null;
-
+            public void onDownloaded(
+                    final String id, String url, File file, String hash, String validator) {
+                final File stored;
                 try {
-                    URL url = new URL(imageURI);
-                    connection = (HttpURLConnection) url.openConnection();
-                    connection.setDoInput(true);
-                    connection.connect();
-
-                    /* Parse vended text/plain MIME type WTF?
-                    final String contentType = connection.getContentType();
-                    if (!contentType.startsWith("image/")) {
-                        Log.e(Constant.TAG, "Error loading " + imageURI + ", unknown MIME type " + contentType);
-                        mImgQueue.edit().remove(id).commit();
-                        return null;
-                    }*/
-
-                    final File dst = new File(mContext.getFilesDir(), id + '.' +
-                            imageURI.substring(imageURI.lastIndexOf('.') + 1));
-                    if (BuildConfig.DEBUG) {
-                        Log.d(Constant.TAG, "# Creating file " + dst);
-                    }
-                           /* contentType.substring(
-                                    contentType.lastIndexOf("/") + 1, contentType.length()));*/
-
-                    InputStream in = connection.getInputStream();
-                    FileOutputStream out = new FileOutputStream(dst);
-                    final byte[] buffer = new byte[BUFFER_SIZE];
-                    int len;
-                    while ((len = in.read(buffer)) != -1) {
-                        out.write(buffer, 0, len);
-                    }
-                    in.close();
-                    out.close();
-
-                    mImgQueue.edit().remove(id).commit();
+                    stored = mImageStore.put(id, url, file, hash, validator);
+                } catch (IOException e) {
+                    // Left in the queue, to be downloaded again on the next wake.
+                    Log.e(Constant.TAG, "! Unable to store " + file.getAbsolutePath(), e);
+                    return;
+                }
+                dequeueImage(id, url);
 
-                    EventBus.getDefault().post(new SyncCompleteEvent.Image(id));
+                // Announced once rows can bind a thumbnail rather than the original.
+                mImageStore.createVariantsInBackground(stored, new Runnable() {
+                    @Override
+                    public void run() {
+                        EventBus.getDefault().post(new SyncCompleteEvent.Image(id));
+                    }
+                });
 
-                    if (BuildConfig.DEBUG) Log.v(Constant.TAG, "# Downloaded " + id);
+                if (BuildConfig.DEBUG) Log.v(Constant.TAG, "# Downloaded " + id);
+            }
 
-                    return null;
-                } catch (Throwable t) {
-                    Log.e(Constant.TAG, "Error for " + imageURI, t);
-                    return t;
-                } finally {
-                    if (connection != null) {
-                        connection.disconnect();
-                    }
+            @Override
+            public void onNotModified(String id, String url) {
+                if (!mImageStore.confirm(id, url)) {
+                    // Removed while being checked; fetched in full on the next wake.
+                    return;
                 }
+                dequeueImage(id, url);
 
+                EventBus.getDefault().post(new SyncCompleteEvent.Image(id));
             }
-        }
 
-                .
-
-                        executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+            @Override
+            public void onFailed(String id, String url, Throwable t) {
+                // Left in the queue, to be resumed on the next wake.
+                Log.e(Constant.TAG, "Error for " + url, t);
+            }
+        };
     }
 
     final static class Test {
@@ -642,6 +760,32 @@ public final class Model {
             model.mImgQueue.edit().clear().commit();
             model.mAgendaFavorites.edit().clear().commit();
             model.mVipPreferences.edit().clear().commit();
+            model.refreshSnapshot();
+        }
+    }
+
+    private static final class LazyTypeface {
+        private final Context mContext;
+        private final String mAssetPath;
+        private volatile Typeface mTypeface;
+
+        private LazyTypeface(Context context, String assetPath) {
+            mContext = context;
+            mAssetPath = assetPath;
+        }
+
+        private Typeface get() {
+            Typeface typeface = mTypeface;
+            if (typeface == null) {
+                synchronized (this) {
+                    typeface = mTypeface;
+                    if (typeface == null) {
+                        mTypeface = typeface = Typeface.createFromAsset(
+                                mContext.getAssets(), mAssetPath);
+                    }
+                }
+            }
+            return typeface;
         }
     }
 }
@@ -0,0 +1,210 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+
+import com.tealium.digitalvelocity.R;
+import com.tealium.digitalvelocity.util.Constant;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the persisted settings read by {@link Model}'s getters.
+ * <p/>
+ * {@link Model} rebuilds it whenever it writes one of these settings and publishes it through a
+ * volatile field, so readers never touch {@link SharedPreferences} or copy the VIP map.
+ */
+public final class ModelSnapshot {
+
+    private final String mUserEmail;
+    private final String mTraceId;
+    private final String mWelcomeYear;
+    private final String mWelcomeDescription;
+    private final String mWelcomeSubtitle;
+    private final String mUUID;
+    private final String mDemoAccount;
+    private final String mDemoProfile;
+    private final String mDemoEnvironment;
+    private final String mDemoInstanceId;
+    private final Map<String, ?> mVipData;
+    private final long mParseSyncRate;
+    private final boolean mCanPromptBluetooth;
+    private final boolean mIsUsageDataEnabled;
+    private final boolean mIsParsePushRegistered;
+    private final int mMonitoringStartHour;
+    private final int mMonitoringStopHour;
+    private final long mMonitoringStartDate;
+    private final long mMonitoringStopDate;
+    private final String mSnowShoeUrl;
+    private final String mTealiumAccount;
+    private final String mTealiumProfile;
+    private final String mTealiumEnv;
+    private final boolean mIsContactVisible;
+    private final String mContactFacebook;
+    private final String mContactEmailHeader;
+    private final String mContactEmailMessage;
+    private final String mContactEmail;
+    private final String mContactPhoneNumber;
+    private final String mContactTwitter;
+
+    ModelSnapshot(SharedPreferences sp, SharedPreferences vipPreferences, Resources resources) {
+        mUserEmail = sp.getString(TrackingManager.Key.EMAIL, null);
+        mTraceId = sp.getString(Constant.SP.KEY_TRACE_ID, null);
+        mWelcomeYear = sp.getString(Constant.SP.KEY_WELCOME_YEAR,
+                resources.getString(R.string.main_label_year_text));
+        mWelcomeDescription = sp.getString(Constant.SP.KEY_WELCOME_DESCRIPTION,
+                resources.getString(R.string.main_label_slogan_text));
+        mWelcomeSubtitle = sp.getString(Constant.SP.KEY_WELCOME_SUBTITLE,
+                resources.getString(R.string.main_label_date_location_text));
+        mUUID = sp.getString(Constant.SP.KEY_UUID, null);
+        mDemoAccount = sp.getString(Constant.SP.KEY_DEMO_ACCOUNT, null);
+        mDemoProfile = sp.getString(Constant.SP.KEY_DEMO_PROFILE, null);
+        mDemoEnvironment = sp.getString(Constant.SP.KEY_DEMO_ENVIRONMENT, null);
+        mDemoInstanceId = sp.getString(Constant.SP.KEY_DEMO_INSTANCE_ID, null);
+        mVipData = Collections.unmodifiableMap(new HashMap<>(vipPreferences.getAll()));
+        mParseSyncRate = sp.getLong(Constant.SP.KEY_PARSE_SYNC_RATE, 15);
+        mCanPromptBluetooth = sp.getBoolean(Constant.SP.KEY_CAN_PROMPT_BLUETOOTH, true);
+        mIsUsageDataEnabled = sp.getBoolean(Constant.SP.KEY_USAGE_DATA_ENABLED, true);
+        mIsParsePushRegistered = sp.getBoolean(Constant.SP.KEY_IS_PARSE_PUSH_REGISTERED, false);
+        mMonitoringStartHour = sp.getInt(Constant.SP.KEY_MONITORING_START_HOUR, 0);
+        mMonitoringStopHour = sp.getInt(Constant.SP.KEY_MONITORING_STOP_HOUR, 23);
+        mMonitoringStartDate = sp.getLong(Constant.SP.KEY_MONITORING_START_DATE, 0);
+        mMonitoringStopDate = sp.getLong(Constant.SP.KEY_MONITORING_STOP_DATE, Long.MAX_VALUE);
+        mSnowShoeUrl = sp.getString(Constant.SP.KEY_SNOWSHOE_URL, null);
+        mTealiumAccount = sp.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_ACCOUNT, "tealium");
+        mTealiumProfile = sp.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_PROFILE, "digitalvelocity");
+        mTealiumEnv = sp.getString(Constant.SP.KEY_OVERRIDE_TEALIUM_ENV, "BuildConfig.TEALIUM_ENV");
+        mIsContactVisible = sp.getBoolean(Constant.SP.KEY_CONTACT_VISIBLE, false);
+        mContactFacebook = sp.getString(Constant.SP.KEY_CONTACT_FACEBOOK, null);
+        mContactEmailHeader = sp.getString(Constant.SP.KEY_CONTACT_EMAIL_HEADER, null);
+        mContactEmailMessage = sp.getString(Constant.SP.KEY_CONTACT_EMAIL_MESSAGE, null);
+        mContactEmail = sp.getString(Constant.SP.KEY_CONTACT_EMAIL, null);
+        mContactPhoneNumber = sp.getString(Constant.SP.KEY_CONTACT_PHONE_NUMBER, null);
+        mContactTwitter = sp.getString(Constant.SP.KEY_CONTACT_TWITTER, null);
+    }
+
+    public String getUserEmail() {
+        return mUserEmail;
+    }
+
+    public String getTraceId() {
+        return mTraceId;
+    }
+
+    public String getWelcomeYear() {
+        return mWelcomeYear;
+    }
+
+    public String getWelcomeDescription() {
+        return mWelcomeDescription;
+    }
+
+    public String getWelcomeSubtitle() {
+        return mWelcomeSubtitle;
+    }
+
+    public String getUUID() {
+        return mUUID;
+    }
+
+    public String getDemoAccount() {
+        return mDemoAccount;
+    }
+
+    public String getDemoProfile() {
+        return mDemoProfile;
+    }
+
+    public String getDemoEnvironment() {
+        return mDemoEnvironment;
+    }
+
+    public String getDemoInstanceId() {
+        return mDemoInstanceId;
+    }
+
+    /**
+     * @return unmodifiable VIP attributes; values are Strings or Sets of Strings.
+     */
+    public Map<String, ?> getVipData() {
+        return mVipData;
+    }
+
+    public long getParseSyncRate() {
+        return mParseSyncRate;
+    }
+
+    public boolean canPromptBluetooth() {
+        return mCanPromptBluetooth;
+    }
+
+    public boolean isUsageDataEnabled() {
+        return mIsUsageDataEnabled;
+    }
+
+    public boolean isParsePushRegistered() {
+        return mIsParsePushRegistered;
+    }
+
+    public int getMonitoringStartHour() {
+        return mMonitoringStartHour;
+    }
+
+    public int getMonitoringStopHour() {
+        return mMonitoringStopHour;
+    }
+
+    public long getMonitoringStartDate() {
+        return mMonitoringStartDate;
+    }
+
+    public long getMonitoringStopDate() {
+        return mMonitoringStopDate;
+    }
+
+    public String getSnowShoeUrl() {
+        return mSnowShoeUrl;
+    }
+
+    public String getTealiumAccount() {
+        return mTealiumAccount;
+    }
+
+    public String getTealiumProfile() {
+        return mTealiumProfile;
+    }
+
+    public String getTealiumEnv() {
+        return mTealiumEnv;
+    }
+
+    public boolean isContactVisible() {
+        return mIsContactVisible;
+    }
+
+    public String getContactFacebook() {
+        return mContactFacebook;
+    }
+
+    public String getContactEmailHeader() {
+        return mContactEmailHeader;
+    }
+
+    public String getContactEmailMessage() {
+        return mContactEmailMessage;
+    }
+
+    public String getContactEmail() {
+        return mContactEmail;
+    }
+
+    public String getContactPhoneNumber() {
+        return mContactPhoneNumber;
+    }
+
+    public String getContactTwitter() {
+        return mContactTwitter;
+    }
+}
@@ -0,0 +1,528 @@
+package com.tealium.digitalvelocity.data;
+
+import android.util.Log;
+
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.util.Constant;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Append-only store holding every record of one table in a single segment file.
+ * <p/>
+ * Each record is written as {@code [op:byte][idLength:short][id:utf-8][length:int][payload]}.
+ * The latest offset of every id is kept in memory and rebuilt by scanning the segment on open;
+ * superseded and removed records are dropped by {@link #compact()}.
+ * <p/>
+ * Payloads are encoded by the store's {@link ItemCodec}. Full scans map the segment and decode
+ * the payloads in place; large tables are decoded on the shared pool.
+ */
+final class RecordStore<T extends ParseItem> {
+
+    static final String FILE_SUFFIX = ".records";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x44565253; // "DVRS"
+    private static final int HEADER_SIZE = 4;
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 0;
+    private static final int BUFFER_SIZE = 8192;
+    private static final long COMPACTION_MIN_DEAD_BYTES = 64 * 1024;
+    private static final int MIN_RECORDS_PER_WORKER = 64;
+
+    private final ItemCodec<T> mCodec;
+    private final ExecutorService mDecodePool;
+    private final int mDecodeWorkers;
+    private final Map<String, Long> mIndex;
+
+    private File mFile;
+    private RandomAccessFile mSegment;
+    private long mLiveBytes;
+    private long mDeadBytes;
+
+    RecordStore(File file, ItemCodec<T> codec) {
+        this(file, codec, null, 1);
+    }
+
+    /**
+     * @param decodePool   pool used to decode large scans, or null to decode on the caller.
+     * @param workers      the maximum number of tasks a scan may split into.
+     */
+    RecordStore(File file, ItemCodec<T> codec, ExecutorService decodePool, int workers) {
+        mFile = file;
+        mCodec = codec;
+        mDecodePool = decodePool;
+        mDecodeWorkers = Math.max(1, workers);
+        mIndex = new HashMap<>();
+    }
+
+    synchronized File getFile() {
+        return mFile;
+    }
+
+    /**
+     * Closes the store and points it at another segment, opened on next use.
+     */
+    synchronized void relocate(File file) {
+        close();
+        mFile = file;
+    }
+
+    synchronized int size() throws IOException {
+        ensureOpen();
+        return mIndex.size();
+    }
+
+    synchronized boolean contains(String id) throws IOException {
+        ensureOpen();
+        return mIndex.containsKey(id);
+    }
+
+    synchronized T get(String id) throws IOException {
+        ensureOpen();
+
+        final Long offset = mIndex.get(id);
+        if (offset == null) {
+            return null;
+        }
+
+        mSegment.seek(offset);
+        mSegment.readByte();
+        mSegment.skipBytes(mSegment.readUnsignedShort());
+        final byte[] payload = new byte[mSegment.readInt()];
+        mSegment.readFully(payload);
+
+        try {
+            return mCodec.decode(ByteBuffer.wrap(payload));
+        } catch (IOException e) {
+            throw new IOException("Corrupt record " + id + " in " + mFile.getName(), e);
+        }
+    }
+
+    /**
+     * Reads the current version of every record; corrupt records are logged and skipped.
+     */
+    synchronized List<T> getAll() throws IOException {
+        ensureOpen();
+
+        final int count = mIndex.size();
+        if (count == 0) {
+            return new ArrayList<>(0);
+        }
+
+        // Visit live records in file order so the mapped pages are touched sequentially.
+        final long[] offsets = new long[count];
+        int i = 0;
+        for (Long offset : mIndex.values()) {
+            offsets[i++] = offset;
+        }
+        Arrays.sort(offsets);
+
+        final FileChannel channel = mSegment.getChannel();
+        final MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        final List<ByteBuffer> payloads = new ArrayList<>(count);
+
+        for (long offset : offsets) {
+            final int lengthPosition = (int) offset + 3 + (segment.getShort((int) offset + 1) & 0xFFFF);
+            final int payloadPosition = lengthPosition + 4;
+            final ByteBuffer payload = segment.duplicate();
+            payload.limit(payloadPosition + segment.getInt(lengthPosition));
+            payload.position(payloadPosition);
+            payloads.add(payload.slice());
+        }
+
+        return decodeAll(payloads);
+    }
+
+    synchronized void put(T item) throws IOException {
+        putRaw(item.getId(), mCodec.encode(item));
+    }
+
+    /**
+     * Stores an already-encoded payload; used to import the JSON of legacy per-item files.
+     */
+    synchronized void putRaw(String id, byte[] payload) throws IOException {
+        ensureOpen();
+        append(OP_PUT, id, payload);
+    }
+
+    /**
+     * Group commit: every record is serialized up front and written with one write and one
+     * fsync. An empty store is instead replaced through a synced temp file and a rename, so a
+     * cold table load is all-or-nothing.
+     */
+    synchronized void putAll(List<T> items) throws IOException {
+        ensureOpen();
+
+        if (items.isEmpty()) {
+            return;
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(items.size() * 512);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        final long[] positions = new long[items.size()];
+
+        for (int i = 0; i < items.size(); i++) {
+            final T item = items.get(i);
+            positions[i] = bytes.size();
+            writeRecord(out, OP_PUT, item.getId(), mCodec.encode(item));
+        }
+
+        final byte[] records = bytes.toByteArray();
+        final long base;
+
+        if (mIndex.isEmpty()) {
+            base = HEADER_SIZE;
+            replaceSegment(records);
+        } else {
+            base = mSegment.length();
+            mSegment.seek(base);
+            mSegment.write(records);
+            mSegment.getFD().sync();
+        }
+
+        for (int i = 0; i < positions.length; i++) {
+            final long end = i + 1 < positions.length ? positions[i + 1] : records.length;
+            index(OP_PUT, items.get(i).getId(), base + positions[i], end - positions[i]);
+        }
+    }
+
+    /**
+     * @return a copy of the ids of the stored records.
+     */
+    synchronized Set<String> ids() throws IOException {
+        ensureOpen();
+        return new HashSet<>(mIndex.keySet());
+    }
+
+    synchronized void remove(String id) throws IOException {
+        ensureOpen();
+        if (mIndex.containsKey(id)) {
+            append(OP_REMOVE, id, new byte[0]);
+        }
+    }
+
+    synchronized void clear() throws IOException {
+        close();
+        if (mFile.exists() && !mFile.delete()) {
+            throw new IOException("Unable to delete " + mFile);
+        }
+        ensureOpen();
+    }
+
+    /**
+     * @return the encoded size of the current version of every record.
+     */
+    synchronized long liveBytes() throws IOException {
+        ensureOpen();
+        return mLiveBytes;
+    }
+
+    synchronized boolean needsCompaction() {
+        return mDeadBytes > COMPACTION_MIN_DEAD_BYTES && mDeadBytes > mLiveBytes;
+    }
+
+    /**
+     * Rewrites the live records into a fresh segment and swaps it in with a rename.
+     */
+    synchronized void compact() throws IOException {
+        ensureOpen();
+
+        final File compacted = new File(mFile.getParentFile(), mFile.getName() + ".compact");
+        final Map<String, Long> index = new HashMap<>(mIndex.size());
+        final FileOutputStream fileOut = new FileOutputStream(compacted);
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                fileOut, BUFFER_SIZE));
+        long position = HEADER_SIZE;
+
+        try {
+            out.writeInt(MAGIC);
+
+            for (Map.Entry<String, Long> entry : mIndex.entrySet()) {
+                mSegment.seek(entry.getValue());
+                mSegment.readByte();
+                mSegment.skipBytes(mSegment.readUnsignedShort());
+                final byte[] payload = new byte[mSegment.readInt()];
+                mSegment.readFully(payload);
+
+                index.put(entry.getKey(), position);
+                writeRecord(out, OP_PUT, entry.getKey(), payload);
+                position += recordSize(entry.getKey(), payload.length);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        close();
+
+        if (!compacted.renameTo(mFile)) {
+            throw new IOException("Unable to replace " + mFile);
+        }
+
+        mSegment = new RandomAccessFile(mFile, "rw");
+        mIndex.putAll(index);
+        mLiveBytes = position - HEADER_SIZE;
+        mDeadBytes = 0;
+    }
+
+    synchronized void close() {
+        if (mSegment == null) {
+            return;
+        }
+
+        try {
+            mSegment.close();
+        } catch (IOException ignored) {
+        }
+
+        mSegment = null;
+        mIndex.clear();
+        mLiveBytes = 0;
+        mDeadBytes = 0;
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mSegment != null) {
+            return;
+        }
+
+        mSegment = new RandomAccessFile(mFile, "rw");
+
+        if (mSegment.length() < HEADER_SIZE) {
+            mSegment.setLength(0);
+            mSegment.writeInt(MAGIC);
+            return;
+        }
+
+        if (mSegment.readInt() != MAGIC) {
+            close();
+            throw new IOException("Unrecognized segment " + mFile);
+        }
+
+        rebuildIndex();
+    }
+
+    /**
+     * Replays the segment; a torn trailing record (crash mid-append) is truncated away.
+     */
+    private void rebuildIndex() throws IOException {
+        final long end = mSegment.length();
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(mFile), BUFFER_SIZE));
+        long position = HEADER_SIZE;
+
+        try {
+            in.skipBytes(HEADER_SIZE);
+
+            while (position < end) {
+                final byte op;
+                final String id;
+                final int length;
+                try {
+                    op = in.readByte();
+                    id = readId(in);
+                    length = in.readInt();
+                    skipFully(in, length);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length < 0) {
+                    break;
+                }
+
+                final long size = recordSize(id, length);
+                if (position + size > end) {
+                    break;
+                }
+
+                index(op, id, position, size);
+                position += size;
+            }
+        } finally {
+            in.close();
+        }
+
+        if (position < end) {
+            mSegment.setLength(position);
+        }
+    }
+
+    private void replaceSegment(byte[] records) throws IOException {
+        final File temp = new File(mFile.getParentFile(), mFile.getName() + ".tmp");
+        final FileOutputStream fileOut = new FileOutputStream(temp);
+        final DataOutputStream out = new DataOutputStream(fileOut);
+
+        try {
+            out.writeInt(MAGIC);
+            out.write(records);
+            out.flush();
+            fileOut.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        close();
+
+        if (!temp.renameTo(mFile)) {
+            temp.delete();
+            ensureOpen();
+            throw new IOException("Unable to replace " + mFile);
+        }
+
+        mSegment = new RandomAccessFile(mFile, "rw");
+    }
+
+    private void append(byte op, String id, byte[] payload) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                payload.length + id.length() + 16);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        writeRecord(out, op, id, payload);
+
+        final long position = mSegment.length();
+        mSegment.seek(position);
+        // Single write so a record is either fully appended or torn at the tail.
+        mSegment.write(bytes.toByteArray());
+
+        index(op, id, position, bytes.size());
+    }
+
+    private void index(byte op, String id, long position, long size) throws IOException {
+        final Long previous = mIndex.get(id);
+        if (previous != null) {
+            final long previousSize = sizeAt(previous);
+            mLiveBytes -= previousSize;
+            mDeadBytes += previousSize;
+        }
+
+        if (op == OP_PUT) {
+            mIndex.put(id, position);
+            mLiveBytes += size;
+        } else {
+            mIndex.remove(id);
+            mDeadBytes += size;
+        }
+    }
+
+    private long sizeAt(long offset) throws IOException {
+        final long restore = mSegment.getFilePointer();
+        mSegment.seek(offset + 1);
+        final int idLength = mSegment.readUnsignedShort();
+        mSegment.skipBytes(idLength);
+        final int length = mSegment.readInt();
+        mSegment.seek(restore);
+        return 1 + 2 + idLength + 4 + length;
+    }
+
+    private List<T> decodeAll(final List<ByteBuffer> payloads) throws IOException {
+
+        final int size = payloads.size();
+        final int workers = mDecodePool == null ?
+                1 : Math.min(mDecodeWorkers, size / MIN_RECORDS_PER_WORKER);
+
+        if (workers <= 1) {
+            return decodeRange(payloads, 0, size);
+        }
+
+        final int chunk = (size + workers - 1) / workers;
+        final List<Future<List<T>>> pending = new ArrayList<>(workers - 1);
+
+        for (int start = chunk; start < size; start += chunk) {
+            final int from = start;
+            final int to = Math.min(size, start + chunk);
+            pending.add(mDecodePool.submit(new Callable<List<T>>() {
+                @Override
+                public List<T> call() throws Exception {
+                    return decodeRange(payloads, from, to);
+                }
+            }));
+        }
+
+        final List<T> items = new ArrayList<>(size);
+        items.addAll(decodeRange(payloads, 0, Math.min(size, chunk)));
+
+        try {
+            for (Future<List<T>> future : pending) {
+                items.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted loading " + mFile.getName());
+        } catch (ExecutionException e) {
+            throw new IOException("Error loading " + mFile.getName(), e.getCause());
+        }
+
+        return items;
+    }
+
+    private List<T> decodeRange(List<ByteBuffer> payloads, int from, int to) {
+        final List<T> items = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            try {
+                items.add(mCodec.decode(payloads.get(i)));
+            } catch (IOException e) {
+                Log.e(Constant.TAG, "! Skipping corrupt record in " + mFile.getName(), e);
+            }
+        }
+        return items;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte op, String id, byte[] payload)
+            throws IOException {
+        final byte[] idBytes = id.getBytes(UTF_8);
+        out.writeByte(op);
+        out.writeShort(idBytes.length);
+        out.write(idBytes);
+        out.writeInt(payload.length);
+        out.write(payload);
+    }
+
+    private static String readId(DataInputStream in) throws IOException {
+        final byte[] idBytes = new byte[in.readUnsignedShort()];
+        in.readFully(idBytes);
+        return new String(idBytes, UTF_8);
+    }
+
+    private static long recordSize(String id, int length) {
+        return 1 + 2 + id.getBytes(UTF_8).length + 4 + length;
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            final int skipped = in.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.tealium.digitalvelocity.data;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.util.Constant;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the loaded contents of whole tables so repeated {@code LoadRequest}s skip the disk.
+ * <p/>
+ * A table stays cached until a write to it invalidates it. Every invalidation bumps the table's
+ * generation, and a load that raced with a write is not cached. Tables are evicted least recently
+ * used first once their estimated size exceeds the budget.
+ */
+final class TableCache implements ComponentCallbacks2 {
+
+    private final long mBudgetBytes;
+    private final LinkedHashMap<Class<?>, Table<?>> mTables;
+    private final Map<Class<?>, Long> mGenerations;
+
+    private long mEpoch;
+    private long mSizeBytes;
+
+    TableCache(long budgetBytes) {
+        mBudgetBytes = budgetBytes;
+        mTables = new LinkedHashMap<>(8, 0.75f, true);
+        mGenerations = new HashMap<>(8);
+    }
+
+    /**
+     * @return the token to pass to {@link #put} once the table has been read.
+     */
+    synchronized long generation(Class<?> itemClass) {
+        final Long generation = mGenerations.get(itemClass);
+        return mEpoch + (generation == null ? 0 : generation);
+    }
+
+    @SuppressWarnings("unchecked")
+    synchronized <T extends ParseItem> Table<T> get(Class<T> itemClass) {
+        return (Table<T>) mTables.get(itemClass);
+    }
+
+    /**
+     * Caches a table read at the given generation, unless it has been written to since.
+     */
+    synchronized <T extends ParseItem> Table<T> put(Class<T> itemClass, long generation,
+                                                   List<T> items, long sizeBytes) {
+        final Table<T> table = new Table<>(items, sizeBytes);
+
+        if (generation != generation(itemClass) || sizeBytes > mBudgetBytes) {
+            return table;
+        }
+
+        remove(itemClass);
+        mTables.put(itemClass, table);
+        mSizeBytes += sizeBytes;
+        trimTo(mBudgetBytes);
+        return table;
+    }
+
+    synchronized void invalidate(Class<?> itemClass) {
+        final Long generation = mGenerations.get(itemClass);
+        mGenerations.put(itemClass, generation == null ? 1 : generation + 1);
+        remove(itemClass);
+    }
+
+    synchronized void invalidateAll() {
+        mEpoch++;
+        mTables.clear();
+        mSizeBytes = 0;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimTo(0);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            trimTo(mBudgetBytes / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimTo(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    private synchronized void trimTo(long maxBytes) {
+        final Iterator<Table<?>> iterator = mTables.values().iterator();
+        while (mSizeBytes > maxBytes && iterator.hasNext()) {
+            mSizeBytes -= iterator.next().mSizeBytes;
+            iterator.remove();
+        }
+
+        if (BuildConfig.DEBUG && maxBytes < mBudgetBytes) {
+            Log.d(Constant.TAG, "# Table cache trimmed to " + mSizeBytes + " bytes.");
+        }
+    }
+
+    private void remove(Class<?> itemClass) {
+        final Table<?> previous = mTables.remove(itemClass);
+        if (previous != null) {
+            mSizeBytes -= previous.mSizeBytes;
+        }
+    }
+
+    static final class Table<T extends ParseItem> {
+
+        private final List<T> mItems;
+        private final Map<String, T> mItemsById;
+        private final long mLatestUpdatedAt;
+        private final long mSizeBytes;
+
+        Table(List<T> items, long sizeBytes) {
+            final Map<String, T> itemsById = new HashMap<>(items.size() * 4 / 3 + 1);
+            long latestUpdatedAt = 0;
+            for (int i = 0; i < items.size(); i++) {
+                final T item = items.get(i);
+                itemsById.put(item.getId(), item);
+                latestUpdatedAt = Math.max(latestUpdatedAt, item.getUpdatedAt());
+            }
+
+            mItems = Collections.unmodifiableList(items);
+            mItemsById = itemsById;
+            mLatestUpdatedAt = latestUpdatedAt;
+            mSizeBytes = sizeBytes;
+        }
+
+        List<T> getItems() {
+            return mItems;
+        }
+
+        long getLatestUpdatedAt() {
+            return mLatestUpdatedAt;
+        }
+
+        T find(String id) {
+            return mItemsById.get(id);
+        }
+    }
+}
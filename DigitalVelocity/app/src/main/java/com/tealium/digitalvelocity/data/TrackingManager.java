@@ -63,7 +63,7 @@ public final class TrackingManager implements Application.ActivityLifecycleCallb
             attemptToStartDemoInstance();
         }
 
-        mHasBluetoothLE = EstimoteManager.getInstance().hasBluetoothLE();
+        mHasBluetoothLE = EstimoteManager.isBluetoothLeAvailable(application);
 
         mStaticData = new HashMap<>(3);
         mStaticData.put("parse_channel", "vid-" + model.getVisitorId());
@@ -7,6 +7,7 @@ import android.text.format.DateFormat;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -46,6 +47,57 @@ public final class AgendaItem extends ParseItem implements Comparable<AgendaItem
         }
     }
 
+    AgendaItem(String id, boolean isVisible, long createdAt, long updatedAt, String title,
+               String subtitle, String description, String url, String imageUrl,
+               String locationId, String fontAwesomeValue, Category category, String roomName,
+               long start, long end) {
+        super(id, isVisible, createdAt, updatedAt);
+        mTitle = title;
+        mSubtitle = subtitle;
+        mDescription = description;
+        mUrl = url;
+        mImageUrl = imageUrl;
+        mLocationId = locationId;
+        mFontAwesomeValue = fontAwesomeValue;
+        mCategory = category;
+        mRoomName = roomName;
+        mStart = start;
+        mEnd = end;
+    }
+
+    public AgendaItem(RecordReader in) throws IOException {
+        super(in);
+
+        mStart = in.readVarLong();
+        mEnd = in.readVarLong();
+
+        mTitle = in.readString();
+        mCategory = in.readCategoryReference();
+        mSubtitle = in.readString();
+        mLocationId = in.readString();
+        mUrl = in.readString();
+        mDescription = in.readString();
+        mFontAwesomeValue = in.readString();
+        mRoomName = in.readString();
+        mImageUrl = in.readString();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeVarLong(mStart)
+                .writeVarLong(mEnd)
+                .writeString(mTitle)
+                .writeCategoryReference(mCategory)
+                .writeString(mSubtitle)
+                .writeString(mLocationId)
+                .writeString(mUrl)
+                .writeString(mDescription)
+                .writeString(mFontAwesomeValue)
+                .writeString(mRoomName)
+                .writeString(mImageUrl);
+    }
+
     public String getTitle() {
         return mTitle;
     }
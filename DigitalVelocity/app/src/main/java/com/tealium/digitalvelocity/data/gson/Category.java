@@ -7,6 +7,8 @@ import com.tealium.digitalvelocity.parse.ParseHelper;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public final class Category extends ParseItem implements Comparable<Category> {
     private String name;
     private int priority;
@@ -30,6 +32,32 @@ public final class Category extends ParseItem implements Comparable<Category> {
         this.priority = priority;
     }
 
+    Category(String id, boolean isVisible, long createdAt, long updatedAt, String name,
+             int priority, Long eventDate) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.name = name;
+        this.priority = priority;
+        this.eventDate = eventDate;
+    }
+
+    public Category(RecordReader in) throws IOException {
+        super(in);
+        this.name = in.readString();
+        this.priority = in.readVarInt();
+        this.eventDate = in.readBoolean() ? in.readVarLong() : null;
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(this.name)
+                .writeVarInt(this.priority)
+                .writeBoolean(this.eventDate != null);
+        if (this.eventDate != null) {
+            out.writeVarLong(this.eventDate);
+        }
+    }
+
     public String getName() {
         return name;
     }
@@ -7,6 +7,8 @@ import com.google.android.gms.maps.model.LatLng;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public final class Coordinates extends ParseItem implements Comparable<Coordinates> {
     private String name;
     private double latitude;
@@ -22,6 +24,33 @@ public final class Coordinates extends ParseItem implements Comparable<Coordinat
         this.priority = o.getInt("priority");
     }
 
+    Coordinates(String id, boolean isVisible, long createdAt, long updatedAt, String name,
+                double latitude, double longitude, int priority) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.name = name;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.priority = priority;
+    }
+
+    public Coordinates(RecordReader in) throws IOException {
+        super(in);
+
+        this.name = in.readString();
+        this.latitude = in.readDouble();
+        this.longitude = in.readDouble();
+        this.priority = in.readVarInt();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(this.name)
+                .writeDouble(this.latitude)
+                .writeDouble(this.longitude)
+                .writeVarInt(this.priority);
+    }
+
     public String getName() {
         return name;
     }
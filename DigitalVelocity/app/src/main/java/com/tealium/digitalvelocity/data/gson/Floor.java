@@ -8,6 +8,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
+import java.io.IOException;
 
 
 public final class Floor extends ParseItem implements Comparable<Floor> {
@@ -23,6 +24,30 @@ public final class Floor extends ParseItem implements Comparable<Floor> {
         this.imageUri = o.getJSONObject("imageData").getString("url");
     }
 
+    Floor(String id, boolean isVisible, long createdAt, long updatedAt, String name,
+          String imageUri, int priority) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.name = name;
+        this.imageUri = imageUri;
+        this.priority = priority;
+    }
+
+    public Floor(RecordReader in) throws IOException {
+        super(in);
+
+        this.name = in.readString();
+        this.priority = in.readVarInt();
+        this.imageUri = in.readString();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(this.name)
+                .writeVarInt(this.priority)
+                .writeString(this.imageUri);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,481 @@
+package com.tealium.digitalvelocity.data.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typed adapters for the JSON that items were stored as before the binary record format, in
+ * the field layout Gson's reflection wrote it. Registered up front, they stream each field
+ * straight into the item instead of resolving it reflectively per row.
+ * <p/>
+ * Writing is left to Gson's reflection, which produces that same layout; items are stored with
+ * {@link ParseItem#write(RecordWriter)}.
+ */
+public final class JsonAdapters {
+
+    private JsonAdapters() {
+    }
+
+    public static GsonBuilder register(GsonBuilder builder) {
+        final CategoryAdapter categoryAdapter = new CategoryAdapter();
+        final Map<Class<?>, ItemAdapter<?>> adapters = new HashMap<>(8);
+        adapters.put(AgendaItem.class, new AgendaItemAdapter(categoryAdapter));
+        adapters.put(Sponsor.class, new SponsorAdapter(categoryAdapter));
+        adapters.put(Category.class, categoryAdapter);
+        adapters.put(Floor.class, new FloorAdapter());
+        adapters.put(Coordinates.class, new CoordinatesAdapter());
+        adapters.put(Survey.class, new SurveyAdapter());
+        adapters.put(Question.class, new QuestionAdapter());
+        adapters.put(Notification.class, new NotificationAdapter());
+        return builder.registerTypeAdapterFactory(new Factory(adapters));
+    }
+
+    /**
+     * Pairs each item's reader with the reflective adapter Gson would otherwise use, to write.
+     */
+    private static final class Factory implements TypeAdapterFactory {
+
+        private final Map<Class<?>, ItemAdapter<?>> mAdapters;
+
+        Factory(Map<Class<?>, ItemAdapter<?>> adapters) {
+            mAdapters = adapters;
+        }
+
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            final ItemAdapter<?> reader = mAdapters.get(type.getRawType());
+            if (reader == null) {
+                return null;
+            }
+
+            final TypeAdapter<T> writer = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<T>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    writer.write(out, value);
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    // Registered for its own class only.
+                    return (T) reader.read(in);
+                }
+            };
+        }
+    }
+
+    /**
+     * Reads the {@link ParseItem} fields itself and hands every other name to a per-item
+     * {@link Fields}, which builds the item once the object is consumed.
+     */
+    private static abstract class ItemAdapter<T extends ParseItem> {
+
+        abstract Fields<T> newFields();
+
+        final T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            final Fields<T> fields = newFields();
+            String id = null;
+            boolean isVisible = false;
+            long createdAt = 0;
+            long updatedAt = 0;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                final String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "mId":
+                        id = in.nextString();
+                        break;
+                    case "mIsVisible":
+                        isVisible = in.nextBoolean();
+                        break;
+                    case "mCreatedAt":
+                        createdAt = in.nextLong();
+                        break;
+                    case "mUpdatedAt":
+                        updatedAt = in.nextLong();
+                        break;
+                    default:
+                        if (!fields.read(name, in)) {
+                            in.skipValue();
+                        }
+                }
+            }
+            in.endObject();
+
+            return fields.build(id, isVisible, createdAt, updatedAt);
+        }
+    }
+
+    private static abstract class Fields<T extends ParseItem> {
+
+        /**
+         * @return false if the name isn't a field of the item, leaving its value unread.
+         */
+        abstract boolean read(String name, JsonReader in) throws IOException;
+
+        abstract T build(String id, boolean isVisible, long createdAt, long updatedAt);
+    }
+
+    private static List<String> readStringList(JsonReader in) throws IOException {
+        final List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(in.nextString());
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static final class AgendaItemAdapter extends ItemAdapter<AgendaItem> {
+
+        private final CategoryAdapter mCategoryAdapter;
+
+        AgendaItemAdapter(CategoryAdapter categoryAdapter) {
+            mCategoryAdapter = categoryAdapter;
+        }
+
+        @Override
+        Fields<AgendaItem> newFields() {
+            return new Fields<AgendaItem>() {
+                String title;
+                String subtitle;
+                String description;
+                String url;
+                String imageUrl;
+                String locationId;
+                String fontAwesomeValue;
+                Category category;
+                String roomName;
+                long start;
+                long end;
+
+                @Override
+                boolean read(String name, JsonReader in) throws IOException {
+                    switch (name) {
+                        case "mTitle":
+                            title = in.nextString();
+                            return true;
+                        case "mSubtitle":
+                            subtitle = in.nextString();
+                            return true;
+                        case "mDescription":
+                            description = in.nextString();
+                            return true;
+                        case "mUrl":
+                            url = in.nextString();
+                            return true;
+                        case "mImageUrl":
+                            imageUrl = in.nextString();
+                            return true;
+                        case "mLocationId":
+                            locationId = in.nextString();
+                            return true;
+                        case "mFontAwesomeValue":
+                            fontAwesomeValue = in.nextString();
+                            return true;
+                        case "mCategory":
+                            category = mCategoryAdapter.read(in);
+                            return true;
+                        case "mRoomName":
+                            roomName = in.nextString();
+                            return true;
+                        case "mStart":
+                            start = in.nextLong();
+                            return true;
+                        case "mEnd":
+                            end = in.nextLong();
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                AgendaItem build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new AgendaItem(id, isVisible, createdAt, updatedAt, title, subtitle,
+                            description, url, imageUrl, locationId, fontAwesomeValue, category,
+                            roomName, start, end);
+                }
+            };
+        }
+    }
+
+    private static final class SponsorAdapter extends ItemAdapter<Sponsor> {
+
+        private final CategoryAdapter mCategoryAdapter;
+
+        SponsorAdapter(CategoryAdapter categoryAdapter) {
+            mCategoryAdapter = categoryAdapter;
+        }
+
+        @Override
+        Fields<Sponsor> newFields() {
+            return new Fields<Sponsor>() {
+                String name;
+                String description;
+                String url;
+                String logoUri;
+                String email;
+                String emailMessage;
+                Category category;
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "name":
+                            name = in.nextString();
+                            return true;
+                        case "description":
+                            description = in.nextString();
+                            return true;
+                        case "url":
+                            url = in.nextString();
+                            return true;
+                        case "logoUri":
+                            logoUri = in.nextString();
+                            return true;
+                        case "email":
+                            email = in.nextString();
+                            return true;
+                        case "emailMessage":
+                            emailMessage = in.nextString();
+                            return true;
+                        case "category":
+                            category = mCategoryAdapter.read(in);
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Sponsor build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Sponsor(id, isVisible, createdAt, updatedAt, name, description, url,
+                            logoUri, email, emailMessage, category);
+                }
+            };
+        }
+    }
+
+    private static final class CategoryAdapter extends ItemAdapter<Category> {
+
+        @Override
+        Fields<Category> newFields() {
+            return new Fields<Category>() {
+                String name;
+                int priority;
+                Long eventDate;
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "name":
+                            name = in.nextString();
+                            return true;
+                        case "priority":
+                            priority = in.nextInt();
+                            return true;
+                        case "eventDate":
+                            eventDate = in.nextLong();
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Category build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Category(id, isVisible, createdAt, updatedAt, name, priority,
+                            eventDate);
+                }
+            };
+        }
+    }
+
+    private static final class FloorAdapter extends ItemAdapter<Floor> {
+
+        @Override
+        Fields<Floor> newFields() {
+            return new Fields<Floor>() {
+                String name;
+                String imageUri;
+                int priority;
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "name":
+                            name = in.nextString();
+                            return true;
+                        case "imageUri":
+                            imageUri = in.nextString();
+                            return true;
+                        case "priority":
+                            priority = in.nextInt();
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Floor build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Floor(id, isVisible, createdAt, updatedAt, name, imageUri, priority);
+                }
+            };
+        }
+    }
+
+    private static final class CoordinatesAdapter extends ItemAdapter<Coordinates> {
+
+        @Override
+        Fields<Coordinates> newFields() {
+            return new Fields<Coordinates>() {
+                String name;
+                double latitude;
+                double longitude;
+                int priority;
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "name":
+                            name = in.nextString();
+                            return true;
+                        case "latitude":
+                            latitude = in.nextDouble();
+                            return true;
+                        case "longitude":
+                            longitude = in.nextDouble();
+                            return true;
+                        case "priority":
+                            priority = in.nextInt();
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Coordinates build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Coordinates(id, isVisible, createdAt, updatedAt, name, latitude,
+                            longitude, priority);
+                }
+            };
+        }
+    }
+
+    private static final class SurveyAdapter extends ItemAdapter<Survey> {
+
+        @Override
+        Fields<Survey> newFields() {
+            return new Fields<Survey>() {
+                String title;
+                List<String> questionIds = new ArrayList<>(0);
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "title":
+                            title = in.nextString();
+                            return true;
+                        case "questionIds":
+                            questionIds = readStringList(in);
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Survey build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Survey(id, isVisible, createdAt, updatedAt, title, questionIds);
+                }
+            };
+        }
+    }
+
+    private static final class QuestionAdapter extends ItemAdapter<Question> {
+
+        @Override
+        Fields<Question> newFields() {
+            return new Fields<Question>() {
+                String title;
+                List<String> answers = new ArrayList<>(0);
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "title":
+                            title = in.nextString();
+                            return true;
+                        case "answers":
+                            answers = readStringList(in);
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Question build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Question(id, isVisible, createdAt, updatedAt, title, answers);
+                }
+            };
+        }
+    }
+
+    private static final class NotificationAdapter extends ItemAdapter<Notification> {
+
+        @Override
+        Fields<Notification> newFields() {
+            return new Fields<Notification>() {
+                String text;
+                int source;
+
+                @Override
+                boolean read(String field, JsonReader in) throws IOException {
+                    switch (field) {
+                        case "text":
+                            text = in.nextString();
+                            return true;
+                        case "source":
+                            source = in.nextInt();
+                            return true;
+                        default:
+                            return false;
+                    }
+                }
+
+                @Override
+                Notification build(String id, boolean isVisible, long createdAt, long updatedAt) {
+                    return new Notification(id, isVisible, createdAt, updatedAt, text, source);
+                }
+            };
+        }
+    }
+}
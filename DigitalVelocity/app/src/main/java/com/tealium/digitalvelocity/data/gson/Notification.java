@@ -8,6 +8,8 @@ import com.tealium.digitalvelocity.push.event.PushMessage;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public final class Notification extends ParseItem implements Comparable<Notification> {
 
     private static final int SRC_TABLE = 1;
@@ -17,9 +19,14 @@ public final class Notification extends ParseItem implements Comparable<Notifica
     private int source;
 
     private Notification(String id, boolean isVisible, long createdAt, long updatedAt, String text) {
+        this(id, isVisible, createdAt, updatedAt, text, SRC_PUSH);
+    }
+
+    Notification(String id, boolean isVisible, long createdAt, long updatedAt, String text,
+                 int source) {
         super(id, isVisible, createdAt, updatedAt);
         this.text = text;
-        this.source = SRC_PUSH;
+        this.source = source;
     }
 
     public Notification(JSONObject o) throws JSONException {
@@ -29,6 +36,20 @@ public final class Notification extends ParseItem implements Comparable<Notifica
         this.source = SRC_TABLE;
     }
 
+    public Notification(RecordReader in) throws IOException {
+        super(in);
+
+        this.text = in.readString();
+        this.source = in.readVarInt();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(this.text)
+                .writeVarInt(this.source);
+    }
+
     public static Notification createNotification(PushMessage pushMessage) {
 
         if (Util.isEmptyOrNull(pushMessage.getMessage())) {
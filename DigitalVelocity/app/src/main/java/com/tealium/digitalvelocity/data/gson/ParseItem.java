@@ -1,21 +1,14 @@
 package com.tealium.digitalvelocity.data.gson;
 
+import com.tealium.digitalvelocity.util.Iso8601;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Locale;
-import java.util.TimeZone;
+import java.io.IOException;
 
 public class ParseItem {
 
-    private static final SimpleDateFormat format =
-            new SimpleDateFormat("yyyy-LL-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
-    {
-        format.setTimeZone(TimeZone.getTimeZone("UTC"));
-    }
-
     private String mId;
     private boolean mIsVisible;
     private long mCreatedAt;
@@ -31,12 +24,27 @@ public class ParseItem {
     public ParseItem(JSONObject o) throws JSONException {
         mId = o.getString("objectId");
         mIsVisible = o.optBoolean("visible", true);
-        try {
-            mCreatedAt = format.parse(o.getString("createdAt")).getTime();
-            mUpdatedAt = format.parse(o.getString("updatedAt")).getTime();
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        mCreatedAt = Iso8601.parse(o.getString("createdAt"));
+        mUpdatedAt = Iso8601.parse(o.getString("updatedAt"));
+    }
+
+    protected ParseItem(RecordReader in) throws IOException {
+        mId = in.readString();
+        mIsVisible = in.readBoolean();
+        mCreatedAt = in.readVarLong();
+        mUpdatedAt = in.readVarLong();
+    }
+
+    /**
+     * Writes this item in the binary record format; subclasses append their own fields after
+     * calling through, and read them back in the same order in their {@link RecordReader}
+     * constructor.
+     */
+    public void write(RecordWriter out) {
+        out.writeString(mId)
+                .writeBoolean(mIsVisible)
+                .writeVarLong(mCreatedAt)
+                .writeVarLong(mUpdatedAt);
     }
 
     public final String getId() {
@@ -56,10 +64,6 @@ public class ParseItem {
     }
 
     protected static long extractTimeStamp(JSONObject dateObject) throws JSONException {
-        try {
-            return format.parse(dateObject.getString("iso")).getTime();
-        } catch (ParseException e) {
-            throw new RuntimeException(e);
-        }
+        return Iso8601.parse(dateObject.getString("iso"));
     }
 }
@@ -4,6 +4,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -19,6 +21,26 @@ public final class Question extends ParseItem {
         answers = Collections.unmodifiableList(parseAnswers(o.optJSONArray("answers")));
     }
 
+    Question(String id, boolean isVisible, long createdAt, long updatedAt, String title,
+             List<String> answers) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.title = title;
+        this.answers = Collections.unmodifiableList(answers);
+    }
+
+    public Question(RecordReader in) throws IOException {
+        super(in);
+        title = in.readString();
+        answers = in.readStringList();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(title)
+                .writeStringList(answers);
+    }
+
     @Override
     public int hashCode() {
         return getId().hashCode();
@@ -0,0 +1,101 @@
+package com.tealium.digitalvelocity.data.gson;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the format written by {@link RecordWriter}.
+ */
+public final class RecordReader {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final Map<String, Category> mCategories;
+    private byte[] mScratch;
+
+    /**
+     * @param categories resolves category references, may be null for tables without them.
+     */
+    public RecordReader(ByteBuffer buffer, Map<String, Category> categories) {
+        mBuffer = buffer;
+        mCategories = categories;
+    }
+
+    public int readByte() {
+        return mBuffer.get() & 0xFF;
+    }
+
+    public boolean readBoolean() {
+        return mBuffer.get() != 0;
+    }
+
+    public long readVarLong() throws IOException {
+        long zigZag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = mBuffer.get();
+            zigZag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    public double readDouble() {
+        return mBuffer.getDouble();
+    }
+
+    public String readString() throws IOException {
+        final int length = readVarInt() - 1;
+        if (length < 0) {
+            return null;
+        }
+        if (length > mBuffer.remaining()) {
+            throw new IOException("Truncated string");
+        }
+
+        if (mBuffer.hasArray()) {
+            final int start = mBuffer.arrayOffset() + mBuffer.position();
+            mBuffer.position(mBuffer.position() + length);
+            return new String(mBuffer.array(), start, length, UTF_8);
+        }
+
+        if (mScratch == null || mScratch.length < length) {
+            mScratch = new byte[Math.max(64, length)];
+        }
+        mBuffer.get(mScratch, 0, length);
+        return new String(mScratch, 0, length, UTF_8);
+    }
+
+    public List<String> readStringList() throws IOException {
+        final int size = readVarInt() - 1;
+        if (size < 0) {
+            return Collections.emptyList();
+        }
+        // Every entry takes at least its length prefix.
+        if (size > mBuffer.remaining()) {
+            throw new IOException("Truncated list");
+        }
+
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString());
+        }
+        return Collections.unmodifiableList(values);
+    }
+
+    public Category readCategoryReference() throws IOException {
+        final String id = readString();
+        return id == null || mCategories == null ? null : mCategories.get(id);
+    }
+}
@@ -0,0 +1,101 @@
+package com.tealium.digitalvelocity.data.gson;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Growable buffer for the binary record format: zig-zag varint numbers and
+ * length-prefixed UTF-8 strings, where a length prefix of 0 encodes null.
+ */
+public final class RecordWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] mBuffer;
+    private int mSize;
+
+    public RecordWriter(int initialCapacity) {
+        mBuffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    public RecordWriter writeByte(int value) {
+        ensureCapacity(1);
+        mBuffer[mSize++] = (byte) value;
+        return this;
+    }
+
+    public RecordWriter writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    public RecordWriter writeVarLong(long value) {
+        ensureCapacity(10);
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            mBuffer[mSize++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) zigZag;
+        return this;
+    }
+
+    public RecordWriter writeVarInt(int value) {
+        return writeVarLong(value);
+    }
+
+    public RecordWriter writeDouble(double value) {
+        final long bits = Double.doubleToLongBits(value);
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mBuffer[mSize++] = (byte) (bits >>> shift);
+        }
+        return this;
+    }
+
+    public RecordWriter writeString(String value) {
+        if (value == null) {
+            return writeVarInt(0);
+        }
+
+        final byte[] bytes = value.getBytes(UTF_8);
+        writeVarInt(bytes.length + 1);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, mBuffer, mSize, bytes.length);
+        mSize += bytes.length;
+        return this;
+    }
+
+    public RecordWriter writeStringList(List<String> values) {
+        if (values == null) {
+            return writeVarInt(0);
+        }
+
+        writeVarInt(values.size() + 1);
+        for (int i = 0; i < values.size(); i++) {
+            writeString(values.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Categories are stored once in their own table and referenced by id.
+     */
+    public RecordWriter writeCategoryReference(Category category) {
+        return writeString(category == null ? null : category.getId());
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+        }
+    }
+}
@@ -5,6 +5,8 @@ import android.support.annotation.NonNull;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 public final class Sponsor extends ParseItem implements Comparable<Sponsor> {
     private String name;
     private String description;
@@ -29,6 +31,43 @@ public final class Sponsor extends ParseItem implements Comparable<Sponsor> {
         this.logoUri = logo == null ? null : logo.getString("url");
     }
 
+    Sponsor(String id, boolean isVisible, long createdAt, long updatedAt, String name,
+            String description, String url, String logoUri, String email, String emailMessage,
+            Category category) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.name = name;
+        this.description = description;
+        this.url = url;
+        this.logoUri = logoUri;
+        this.email = email;
+        this.emailMessage = emailMessage;
+        this.category = category;
+    }
+
+    public Sponsor(RecordReader in) throws IOException {
+        super(in);
+
+        this.name = in.readString();
+        this.description = in.readString();
+        this.url = in.readString();
+        this.category = in.readCategoryReference();
+        this.email = in.readString();
+        this.emailMessage = in.readString();
+        this.logoUri = in.readString();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(this.name)
+                .writeString(this.description)
+                .writeString(this.url)
+                .writeCategoryReference(this.category)
+                .writeString(this.email)
+                .writeString(this.emailMessage)
+                .writeString(this.logoUri);
+    }
+
     public String getName() {
         return name;
     }
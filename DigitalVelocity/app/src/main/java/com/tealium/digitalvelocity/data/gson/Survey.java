@@ -4,6 +4,8 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -19,6 +21,26 @@ public final class Survey extends ParseItem implements Comparable<Survey> {
         questionIds = Collections.unmodifiableList(parseQuestions(o.optJSONArray("questionIds")));
     }
 
+    Survey(String id, boolean isVisible, long createdAt, long updatedAt, String title,
+           List<String> questionIds) {
+        super(id, isVisible, createdAt, updatedAt);
+        this.title = title;
+        this.questionIds = Collections.unmodifiableList(questionIds);
+    }
+
+    public Survey(RecordReader in) throws IOException {
+        super(in);
+        title = in.readString();
+        questionIds = in.readStringList();
+    }
+
+    @Override
+    public void write(RecordWriter out) {
+        super.write(out);
+        out.writeString(title)
+                .writeStringList(questionIds);
+    }
+
     public String getTitle() {
         return title;
     }
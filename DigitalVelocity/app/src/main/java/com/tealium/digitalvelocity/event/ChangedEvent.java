@@ -0,0 +1,42 @@
+package com.tealium.digitalvelocity.event;
+
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Posted after stored data changes, carrying only what the write changed.
+ */
+public final class ChangedEvent {
+    private ChangedEvent() {
+    }
+
+    public static final class Agenda {
+        private final List<AgendaItem> added;
+        private final List<AgendaItem> updated;
+        private final List<String> removedIds;
+
+        public Agenda(List<AgendaItem> added, List<AgendaItem> updated, List<String> removedIds) {
+            this.added = Collections.unmodifiableList(added);
+            this.updated = Collections.unmodifiableList(updated);
+            this.removedIds = Collections.unmodifiableList(removedIds);
+        }
+
+        public List<AgendaItem> getAdded() {
+            return added;
+        }
+
+        public List<AgendaItem> getUpdated() {
+            return updated;
+        }
+
+        public List<String> getRemovedIds() {
+            return removedIds;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && removedIds.isEmpty();
+        }
+    }
+}
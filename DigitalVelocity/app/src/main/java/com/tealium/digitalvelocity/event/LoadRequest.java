@@ -72,25 +72,51 @@ public class LoadRequest {
 
     private static class Image<T> {
         private final T item;
+        private final int width;
+        private final int height;
 
-        private Image(T item) {
+        private Image(T item, int width, int height) {
             this.item = item;
+            this.width = width;
+            this.height = height;
         }
 
         public T getItem() {
             return item;
         }
+
+        /**
+         * @return in pixels, of where the image is shown; 0 if unspecified.
+         */
+        public int getWidth() {
+            return width;
+        }
+
+        /**
+         * @return in pixels, of where the image is shown; 0 if unspecified.
+         */
+        public int getHeight() {
+            return height;
+        }
     }
 
     public static final class SponsorLogo extends Image<Sponsor> {
         public SponsorLogo(Sponsor item) {
-            super(item);
+            this(item, 0, 0);
+        }
+
+        public SponsorLogo(Sponsor item, int width, int height) {
+            super(item, width, height);
         }
     }
 
     public static final class FloorImage extends Image<Floor> {
         public FloorImage(Floor item) {
-            super(item);
+            this(item, 0, 0);
+        }
+
+        public FloorImage(Floor item, int width, int height) {
+            super(item, width, height);
         }
     }
 }
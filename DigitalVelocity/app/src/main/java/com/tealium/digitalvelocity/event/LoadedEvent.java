@@ -93,6 +93,10 @@ public class LoadedEvent {
         }
     }
 
+    /**
+     * The bitmap comes from {@link com.tealium.digitalvelocity.util.BitmapDecoder}, and should
+     * be handed back to it once replaced.
+     */
     private static class Image<T> {
         private final Bitmap bitmap;
         private final T item;
@@ -1,5 +1,9 @@
 package com.tealium.digitalvelocity.event;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 public class SaveRequest<T> {
     private final T item;
 
@@ -52,4 +56,50 @@ public class SaveRequest<T> {
             super(item);
         }
     }
+
+    /**
+     * Carries every row of one table so they are committed together.
+     */
+    public static final class Batch<T extends com.tealium.digitalvelocity.data.gson.ParseItem> {
+        private final Class<T> itemClass;
+        private final List<T> items;
+
+        public Batch(Class<T> itemClass, List<T> items) {
+            if ((this.itemClass = itemClass) == null || items == null) {
+                throw new IllegalArgumentException();
+            }
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public Class<T> getItemClass() {
+            return itemClass;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+    }
+
+    /**
+     * Removes every stored row of the class whose id is not among those the server still has.
+     */
+    public static final class RetainOnly {
+        private final Class<? extends com.tealium.digitalvelocity.data.gson.ParseItem> itemClass;
+        private final Set<String> ids;
+
+        public RetainOnly(Class<? extends com.tealium.digitalvelocity.data.gson.ParseItem> itemClass, Set<String> ids) {
+            if ((this.itemClass = itemClass) == null || ids == null) {
+                throw new IllegalArgumentException();
+            }
+            this.ids = Collections.unmodifiableSet(ids);
+        }
+
+        public Class<? extends com.tealium.digitalvelocity.data.gson.ParseItem> getItemClass() {
+            return itemClass;
+        }
+
+        public Set<String> getIds() {
+            return ids;
+        }
+    }
 }
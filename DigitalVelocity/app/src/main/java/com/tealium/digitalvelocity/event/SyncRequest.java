@@ -2,4 +2,20 @@ package com.tealium.digitalvelocity.event;
 
 public class SyncRequest {
 
+    private final boolean mIsForced;
+
+    public SyncRequest() {
+        this(false);
+    }
+
+    /**
+     * @param isForced whether every table is fetched now, however recently it was synced.
+     */
+    public SyncRequest(boolean isForced) {
+        mIsForced = isForced;
+    }
+
+    public boolean isForced() {
+        return mIsForced;
+    }
 }
@@ -2,42 +2,41 @@ package com.tealium.digitalvelocity.location;
 
 
 import android.app.Activity;
-import android.net.Uri;
+import android.graphics.Bitmap;
 import android.util.Log;
 import android.view.View;
-import android.webkit.WebSettings;
-import android.webkit.WebView;
+import android.widget.ImageView;
 import android.widget.RadioButton;
 
 import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.IOUtils;
 import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.event.LoadRequest;
 import com.tealium.digitalvelocity.event.LoadedEvent;
 import com.tealium.digitalvelocity.event.SyncCompleteEvent;
+import com.tealium.digitalvelocity.util.BitmapDecoder;
 import com.tealium.digitalvelocity.util.Constant;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+
+import de.greenrobot.event.EventBus;
 
 public class LayoutController extends BaseController implements View.OnClickListener {
 
     private final List<Floor> mFloors = new ArrayList<>(2);
     private final View mLoadingIndicator;
-    private final WebView mWebView;
+    private final ImageView mImageView;
     private Floor mSelectedFloor;
+    // Decoded by the BitmapDecoder, handed back once no longer shown.
+    private Bitmap mBitmap;
+    private String mBitmapFloorId;
 
     public LayoutController(Activity activity) {
         super(activity);
 
-        mWebView = (WebView) getContentView().findViewById(R.id.location_content_layout);
+        mImageView = (ImageView) getContentView().findViewById(R.id.location_content_layout);
         mLoadingIndicator = activity.findViewById(R.id.location_activity_indicator);
-
-        WebSettings settings = mWebView.getSettings();
-        settings.setLoadWithOverviewMode(true);
-        settings.setUseWideViewPort(true);
-        settings.setBuiltInZoomControls(true);
     }
 
     @SuppressWarnings("unused")
@@ -52,20 +51,55 @@ public class LayoutController extends BaseController implements View.OnClickList
     @SuppressWarnings("unused")
     public void onEventMainThread(SyncCompleteEvent.Image event) {
         if (mSelectedFloor != null && mSelectedFloor.getId().equals(event.getId())) {
+            // The image changed, so the one shown is decoded again.
+            mBitmapFloorId = null;
             loadSelectedFloor();
         }
     }
 
+    @SuppressWarnings("unused")
+    public void onEventMainThread(LoadedEvent.FloorImage event) {
+        if (!isSelected() || mSelectedFloor == null ||
+                !mSelectedFloor.getId().equals(event.getItem().getId())) {
+            // Switched away from while it was decoded.
+            BitmapDecoder.getInstance().release(event.getBitmap());
+            return;
+        }
+
+        final Bitmap previous = mBitmap;
+        mBitmap = event.getBitmap();
+        mBitmapFloorId = event.getItem().getId();
+        mImageView.setImageBitmap(mBitmap);
+        mImageView.setVisibility(View.VISIBLE);
+        mLoadingIndicator.setVisibility(View.GONE);
+
+        if (previous != null && previous != mBitmap) {
+            BitmapDecoder.getInstance().release(previous);
+        }
+    }
+
+    /**
+     * Hands the floor image back to the decoder, to be decoded again once shown.
+     */
+    public void releaseImage() {
+        mImageView.setImageBitmap(null);
+        if (mBitmap != null) {
+            BitmapDecoder.getInstance().release(mBitmap);
+            mBitmap = null;
+        }
+        mBitmapFloorId = null;
+    }
+
     @Override
     protected void onDeselected() {
         mSelectedFloor = null;
-        mWebView.setVisibility(View.GONE);
+        releaseImage();
+        mImageView.setVisibility(View.GONE);
         mLoadingIndicator.setVisibility(View.GONE);
     }
 
     @Override
     protected void onRefresh() {
-        mWebView.setVisibility(View.VISIBLE);
         loadSelectedFloor();
     }
 
@@ -116,34 +150,26 @@ public class LayoutController extends BaseController implements View.OnClickList
     private void loadSelectedFloor() {
         if (mSelectedFloor == null) {
             Log.w(Constant.TAG, "No floor selected.");
-            mWebView.loadUrl(null);
+            releaseImage();
             return;
         }
 
-        final File imageFile = IOUtils.getImageFile(
-                getActivity(), mSelectedFloor.getId());
-
-        if (imageFile != null) {
-            final String html = String.format(Locale.ROOT,
-                    "<!DOCTYPE html>" +
-                            "<html>" +
-                            "   <body style=\"background-color: black;\"> " +
-                            "       <img " +
-                            "           style=\"position: absolute; " +
-                            "               top: 10%%; " +
-                            //"               transform: translate(0%%, -50%%);" +
-                            "               \"" +
-                            "           src=\"%s\" " +
-                            "           alt=\"Floor Image\"/>" +
-                            "   </body>" +
-                            "</html>",
-                    Uri.fromFile(imageFile).toString());
-
-            mWebView.loadDataWithBaseURL("", html, "text/html", "UTF-8", "");
-            mWebView.setVisibility(View.VISIBLE);
+        if (mSelectedFloor.getId().equals(mBitmapFloorId)) {
+            mImageView.setVisibility(View.VISIBLE);
             mLoadingIndicator.setVisibility(View.GONE);
+            return;
+        }
+
+        if (IOUtils.getImageFile(getActivity(), mSelectedFloor.getId()) != null) {
+            // Decoded no larger than the screen; shown, and the previous floor released, once
+            // LoadedEvent.FloorImage arrives.
+            EventBus.getDefault().post(new LoadRequest.FloorImage(mSelectedFloor));
+            if (mBitmap == null) {
+                mLoadingIndicator.setVisibility(View.VISIBLE);
+            }
         } else {
-            mWebView.setVisibility(View.GONE);
+            releaseImage();
+            mImageView.setVisibility(View.GONE);
             mLoadingIndicator.setVisibility(View.VISIBLE);
         }
     }
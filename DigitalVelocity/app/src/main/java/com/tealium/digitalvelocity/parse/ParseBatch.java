@@ -0,0 +1,115 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.util.Log;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.tealium.digitalvelocity.BuildConfig;
+import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpClient;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends several class queries through Parse's batch endpoint, {@link #MAX_SIZE} per round trip.
+ * <p/>
+ * A backend that rejects the endpoint itself (a 4xx status or a body that is not one result per
+ * query) disables batching for the rest of the process; callers then issue the queries one by
+ * one.
+ */
+final class ParseBatch {
+
+    static final int MAX_SIZE = 50;
+
+    private final HttpClient mHttpClient;
+    private volatile boolean mIsSupported;
+
+    ParseBatch(HttpClient httpClient) {
+        mHttpClient = httpClient;
+        mIsSupported = true;
+    }
+
+    boolean isSupported() {
+        return mIsSupported;
+    }
+
+    /**
+     * Blocks until every batch has completed.
+     *
+     * @return a response per table, in order; null where the query must be retried on its own.
+     */
+    List<ParseResponse> execute(List<Table> tables, List<Request> requests) {
+
+        final int size = requests.size();
+        final List<ParseResponse> responses = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            responses.add(null);
+        }
+
+        for (int start = 0; start < size && mIsSupported; start += MAX_SIZE) {
+            executeBatch(tables, requests, start, Math.min(size, start + MAX_SIZE), responses);
+        }
+
+        return responses;
+    }
+
+    private void executeBatch(
+            List<Table> tables,
+            List<Request> requests,
+            int start,
+            int end,
+            List<ParseResponse> responses) {
+
+        final JSONArray results;
+
+        try {
+            final String body = mHttpClient.execute(
+                    ParseHelper.createBatchRequest(requests.subList(start, end)),
+                    new HttpClient.BodyReader<String>() {
+                        @Override
+                        public String read(Response response, InputStream body) throws IOException {
+                            final int status = response.code();
+                            if (status >= 400 && status < 500) {
+                                return null;
+                            } else if (status < 200 || status >= 300) {
+                                throw new IOException("Batch failed with status " + status);
+                            }
+                            return HttpClient.STRING.read(response, body);
+                        }
+                    });
+
+            results = body == null ? null : new JSONArray(body);
+        } catch (JSONException e) {
+            Log.e(Constant.TAG, "! Unexpected batch response", e);
+            mIsSupported = false;
+            return;
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Batch request failed", e);
+            return;
+        }
+
+        if (results == null || results.length() != end - start) {
+            if (BuildConfig.DEBUG) Log.d(Constant.TAG, "# Batching unavailable, disabled.");
+            mIsSupported = false;
+            return;
+        }
+
+        for (int i = start; i < end; i++) {
+            final JSONObject result = results.optJSONObject(i - start);
+            final JSONObject success = result == null ? null : result.optJSONObject("success");
+
+            if (success != null) {
+                responses.set(i, new ParseResponse(tables.get(i), success));
+            } else {
+                Log.e(Constant.TAG, "! Batched " + tables.get(i) + " query failed: " + result);
+            }
+        }
+    }
+}
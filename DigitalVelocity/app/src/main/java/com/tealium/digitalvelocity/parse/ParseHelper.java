@@ -10,16 +10,14 @@ import com.squareup.okhttp.RequestBody;
 import com.tealium.digitalvelocity.BuildConfig;
 import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.Model;
+import com.tealium.digitalvelocity.util.Iso8601;
 import com.tealium.digitalvelocity.util.Util;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 import java.util.TimeZone;
 
 public final class ParseHelper {
@@ -29,7 +27,9 @@ public final class ParseHelper {
     }
 
     public static final MediaType MEDIA_TYPE_JSON;
-    private static final SimpleDateFormat FORMAT;
+    static final String DEFAULT_ENDPOINT = "https://api.parse.com";
+    private static final String HEADER_APP_ID = "X-Parse-Application-Id";
+    private static final String HEADER_API_KEY = "X-Parse-REST-API-Key";
 
     public static final class Column {
         private Column() {
@@ -45,11 +45,29 @@ public final class ParseHelper {
         public static final String VISIBLE = "visible";
     }
 
+    private static volatile Uri sEndpoint;
+
     static {
         MEDIA_TYPE_JSON = MediaType.parse("application/json; charset=utf-8");
+        sEndpoint = Uri.parse(DEFAULT_ENDPOINT);
+    }
 
-        FORMAT = new SimpleDateFormat("yyyy-LL-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
-        FORMAT.setTimeZone(TimeZone.getTimeZone("UTC"));
+    /**
+     * Points every request built from now on at another Parse-compatible server, such as a local
+     * stand-in for tests and benchmarks.
+     *
+     * @param baseUrl scheme and authority, e.g. "http://127.0.0.1:8080"; null for Parse itself.
+     */
+    static void setEndpoint(String baseUrl) {
+        sEndpoint = Uri.parse(baseUrl == null ? DEFAULT_ENDPOINT : baseUrl);
+    }
+
+    private static Uri.Builder createEndpointBuilder() {
+        final Uri endpoint = sEndpoint;
+        return new Uri.Builder()
+                .scheme(endpoint.getScheme())
+                .encodedAuthority(endpoint.getEncodedAuthority())
+                .appendPath("1");
     }
 
     static Request createContactRequest() {
@@ -135,11 +153,15 @@ public final class ParseHelper {
         return createClassRequest("Category", "objectId,title,eventDate,priority", null);
     }
 
+    /**
+     * @return a query for the id of every row, hidden ones included.
+     */
+    static Request createIdRequest(Table table) {
+        return createClassRequest(table.name(), "objectId", null);
+    }
+
     static Request createClassRequest(String className, String keys, String where) {
-        Uri.Builder builder = new Uri.Builder()
-                .scheme("https")
-                .authority("api.parse.com")
-                .appendPath("1")
+        Uri.Builder builder = createEndpointBuilder()
                 .appendPath("classes")
                 .appendPath(className);
 
@@ -160,6 +182,112 @@ public final class ParseHelper {
         return reqBuilder.build();
     }
 
+    /**
+     * @param after null for the first page, otherwise the {@link ParsePager#getCursor cursor} of
+     *              the last row of the previous one.
+     * @return the query restricted to one page of at most {@link ParsePager#PAGE_SIZE} rows,
+     * in updatedAt order and then objectId order among rows updated at the same time.
+     */
+    static Request createPageRequest(Request query, String after) throws JSONException {
+        final Uri uri = Uri.parse(query.urlString());
+        final Uri.Builder builder = uri.buildUpon().clearQuery();
+        JSONObject where = null;
+
+        for (String name : uri.getQueryParameterNames()) {
+            final String value = uri.getQueryParameter(name);
+            if ("where".equals(name)) {
+                where = new JSONObject(value);
+            } else if (!"order".equals(name) && !"limit".equals(name)) {
+                builder.appendQueryParameter(name, value);
+            }
+        }
+
+        if (after != null) {
+            final int split = after.indexOf(' ');
+            if (split == -1) {
+                throw new JSONException("Malformed cursor " + after);
+            }
+
+            final JSONObject updatedAt = new JSONObject()
+                    .put("__type", "Date")
+                    .put("iso", after.substring(0, split));
+            final String objectId = after.substring(split + 1);
+
+            if (where == null) {
+                where = new JSONObject();
+            }
+            where.put("$or", new JSONArray()
+                    .put(new JSONObject()
+                            .put("updatedAt", new JSONObject().put("$gt", updatedAt)))
+                    .put(new JSONObject()
+                            .put("updatedAt", updatedAt)
+                            .put("objectId", new JSONObject().put("$gt", objectId))));
+        }
+
+        if (where != null) {
+            builder.appendQueryParameter("where", where.toString());
+        }
+
+        builder.appendQueryParameter("order", "updatedAt,objectId")
+                .appendQueryParameter("limit", Integer.toString(ParsePager.PAGE_SIZE));
+
+        return query.newBuilder().url(builder.build().toString()).build();
+    }
+
+    /**
+     * Combines queries into one call to the batch endpoint of the host they target. Each
+     * query's parameters become its sub-request body, and the credentials of the first query
+     * authenticate the whole batch.
+     */
+    static Request createBatchRequest(List<Request> requests) throws JSONException {
+
+        final JSONArray batch = new JSONArray();
+
+        for (Request request : requests) {
+            final Uri uri = Uri.parse(request.urlString());
+            final JSONObject params = new JSONObject();
+
+            for (String name : uri.getQueryParameterNames()) {
+                final String value = uri.getQueryParameter(name);
+                if ("where".equals(name)) {
+                    params.put(name, new JSONObject(value));
+                } else if ("limit".equals(name)) {
+                    params.put(name, Integer.parseInt(value));
+                } else {
+                    params.put(name, value);
+                }
+            }
+
+            batch.put(new JSONObject()
+                    .put("method", request.method())
+                    .put("path", uri.getPath())
+                    .put("body", params));
+        }
+
+        final Request first = requests.get(0);
+        final Uri origin = Uri.parse(first.urlString());
+
+        final Request.Builder builder = new Request.Builder()
+                .url(new Uri.Builder()
+                        .scheme(origin.getScheme())
+                        .encodedAuthority(origin.getEncodedAuthority())
+                        .appendPath("1")
+                        .appendPath("batch")
+                        .build().toString())
+                .post(RequestBody.create(
+                        MEDIA_TYPE_JSON,
+                        new JSONObject().put("requests", batch).toString()));
+
+        for (String header : new String[]{HEADER_APP_ID, HEADER_API_KEY}) {
+            final String value = first.header(header);
+            if (value != null) {
+                builder.addHeader(header, value);
+            }
+        }
+
+        return builder.build();
+    }
+
     static Request createPUSHRegistrationRequest(Context context, String senderId, String token) {
         try {
 
@@ -185,10 +313,7 @@ public final class ParseHelper {
             }
 
             Request.Builder request = new Request.Builder()
-                    .url(new Uri.Builder()
-                            .scheme("https")
-                            .authority("api.parse.com")
-                            .appendPath("1")
+                    .url(createEndpointBuilder()
                             .appendPath("installations")
                             .build().toString())
                     .post(RequestBody.create(
@@ -217,27 +342,27 @@ public final class ParseHelper {
     }
 
     public static long parseDate(String s, long defaultValue) {
-        try {
-            return FORMAT.parse(s).getTime();
-        } catch (ParseException e) {
-            return defaultValue;
-        }
+        return Iso8601.parse(s, defaultValue);
     }
 
     private static void addAuthHeaders(Request.Builder req) {
         final Model model = Model.getInstance();
-        req.addHeader("X-Parse-Application-Id", model.getKeyManager().getParseAppId());
-        req.addHeader("X-Parse-REST-API-Key", model.getKeyManager().getParseApiKey());
+        req.addHeader(HEADER_APP_ID, model.getKeyManager().getParseAppId());
+        req.addHeader(HEADER_API_KEY, model.getKeyManager().getParseApiKey());
     }
 
+    /**
+     * @return a clause for the rows updated after the table's watermark, the newest updatedAt of
+     * the last complete sync; server time, so the device clock does not matter.
+     */
     private static String createWhereStatement(Table table) {
 
         SharedPreferences sp = Model.getInstance().getSharedPreferences();
 
         try {
             return new JSONObject()
-                    .put("updatedAt", new JSONObject().put("$gte",
-                            FORMAT.format(new Date(sp.getLong(table.getSPKey(), 0)))))
+                    .put("updatedAt", new JSONObject().put("$gt",
+                            Iso8601.format(sp.getLong(table.getSPKey(), 0))))
                     .toString();
         } catch (JSONException e) {
             return "{}";
@@ -0,0 +1,305 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.os.SystemClock;
+import android.util.JsonReader;
+
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.tealium.digitalvelocity.util.HttpCache;
+import com.tealium.digitalvelocity.util.CountingInputStream;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Metrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Walks a class query page by page in updatedAt order, streaming each page out of the response
+ * so that at most {@link #PAGE_SIZE} rows are held at once, however large the table is. A row
+ * edited during the walk moves past the cursor and is seen again on a later page, so the last
+ * row seen is always the newest and may serve as the table's watermark.
+ * <p/>
+ * With an {@link HttpCache}, each page is requested conditionally against the validators of the
+ * last response for the same table and cursor. An unchanged page is reported through
+ * {@link ParseResponse#isNotModified()} without being downloaded or parsed, except for
+ * Categories, whose cached body is replayed because every sync needs them in memory.
+ * <p/>
+ * Every page records, under "&lt;prefix&gt;&lt;Table&gt;.", the time to the response headers
+ * (network_ms), spent waiting on the body (download_ms) and spent parsing it (parse_ms), along
+ * with the bytes and rows received. The rows are timed again as they are saved, by the store.
+ */
+final class ParsePager {
+
+    static final int PAGE_SIZE = 1000;
+
+    interface Listener {
+        /**
+         * Handles the page before the next is requested; throwing stops the walk.
+         */
+        void onPage(ParseResponse page) throws IOException, JSONException;
+    }
+
+    private final HttpClient mHttpClient;
+    private final HttpCache mCache;
+    private final Metrics mMetrics;
+    private final String mMetricPrefix;
+
+    /**
+     * @param cache null to always download.
+     */
+    ParsePager(HttpClient httpClient, HttpCache cache) {
+        this(httpClient, cache, Metrics.getInstance(), "sync.");
+    }
+
+    ParsePager(HttpClient httpClient, HttpCache cache, Metrics metrics, String metricPrefix) {
+        mHttpClient = httpClient;
+        mCache = cache;
+        mMetrics = metrics;
+        mMetricPrefix = metricPrefix;
+    }
+
+    /**
+     * @return whether the backend has sent validators, so that repeat queries can be answered
+     * with "304 Not Modified".
+     */
+    boolean hasValidators() {
+        return mCache != null && mCache.getEntryCount() > 0;
+    }
+
+    /**
+     * Fetches every page after the cursor on the calling thread, handing each to the listener
+     * before requesting the next.
+     *
+     * @param after null to start from the first row, otherwise a {@link #getCursor cursor}.
+     */
+    void fetch(Table table, Request query, String after, Listener listener)
+            throws IOException, JSONException {
+
+        final String metric = mMetricPrefix + table.name() + '.';
+
+        while (true) {
+            // Names the order, so that entries cached by objectId walks never match.
+            final String key = table.name() + ".updatedAt@" + after;
+            final HttpCache.Entry cached = mCache == null ? null : mCache.get(key);
+
+            Request request = ParseHelper.createPageRequest(query, after);
+            if (cached != null) {
+                request = createConditionalRequest(request, cached);
+            }
+
+            final boolean keepBody = table == Table.Category;
+            final long requestedAt = SystemClock.uptimeMillis();
+            final Page page = mHttpClient.execute(request, new PageReader(keepBody));
+            final String next;
+
+            mMetrics.count(metric + "pages", 1);
+            mMetrics.record(metric + "network_ms", page.mHeadersAt - requestedAt);
+
+            if (page.mIsNotModified) {
+                if (cached == null) {
+                    throw new IOException("Not Modified without validators");
+                }
+
+                mCache.recordHit();
+                mMetrics.count(metric + "not_modified", 1);
+                next = cached.getMetadata();
+
+                if (cached.getBody() == null) {
+                    listener.onPage(ParseResponse.notModified(table, next == null));
+                } else {
+                    listener.onPage(new ParseResponse(table, parse(cached.getBody()), next == null));
+                }
+            } else {
+                final JSONArray results = page.mData.optJSONArray("results");
+                next = isFull(results) ? getCursor(results) : null;
+
+                mMetrics.record(metric + "download_ms", page.mDownloadMs);
+                mMetrics.record(metric + "parse_ms",
+                        page.mReadAt - page.mHeadersAt - page.mDownloadMs);
+                mMetrics.count(metric + "bytes", page.mBytes);
+                mMetrics.count(metric + "rows", results == null ? 0 : results.length());
+
+                listener.onPage(new ParseResponse(table, page.mData, next == null));
+
+                if (mCache != null) {
+                    mCache.recordMiss();
+                    // Only once handled, so a failure is not later mistaken for "unchanged".
+                    if (page.mIsSuccessful && (page.mETag != null || page.mLastModified != null)) {
+                        mCache.put(key, new HttpCache.Entry(request.urlString(),
+                                page.mETag, page.mLastModified, next, page.mBody));
+                    }
+                }
+            }
+
+            if (next == null) {
+                return;
+            }
+
+            after = next;
+        }
+    }
+
+    private static Request createConditionalRequest(Request request, HttpCache.Entry cached) {
+        final Request.Builder builder = request.newBuilder();
+
+        if (cached.getETag() != null) {
+            builder.header("If-None-Match", cached.getETag());
+        }
+
+        // The date only validates the exact same query; an ETag validates the content itself.
+        if (cached.getLastModified() != null && cached.getUrl().equals(request.urlString())) {
+            builder.header("If-Modified-Since", cached.getLastModified());
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * @return whether another page may follow this one.
+     */
+    static boolean isFull(JSONArray results) {
+        return results != null &&
+                results.length() >= PAGE_SIZE &&
+                getCursor(results) != null;
+    }
+
+    /**
+     * @return the updatedAt and objectId of the page's last row, which the next page starts
+     * after; null if it has neither.
+     */
+    static String getCursor(JSONArray results) {
+        final JSONObject last = results.optJSONObject(results.length() - 1);
+        if (last == null) {
+            return null;
+        }
+
+        final String updatedAt = last.optString("updatedAt", null);
+        final String objectId = last.optString("objectId", null);
+        return updatedAt == null || objectId == null ? null : updatedAt + ' ' + objectId;
+    }
+
+    private static JSONObject parse(InputStream in) throws IOException {
+        final JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            return (JSONObject) readValue(reader);
+        } catch (JSONException | IllegalStateException | ClassCastException e) {
+            throw new IOException("Malformed page", e);
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static JSONObject parse(byte[] body) throws IOException {
+        return parse(new ByteArrayInputStream(body));
+    }
+
+    /**
+     * Reads the next value into the types {@link JSONObject} itself produces.
+     */
+    static Object readValue(JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                final JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    object.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            case BEGIN_ARRAY:
+                final JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Unexpected " + reader.peek());
+        }
+    }
+
+    private static final class Page {
+        private boolean mIsNotModified;
+        private boolean mIsSuccessful;
+        private JSONObject mData;
+        private String mETag;
+        private String mLastModified;
+        private byte[] mBody;
+        private long mHeadersAt;
+        private long mReadAt;
+        private long mDownloadMs;
+        private long mBytes;
+    }
+
+    private static final class PageReader implements HttpClient.BodyReader<Page> {
+
+        private final boolean mKeepBody;
+
+        private PageReader(boolean keepBody) {
+            mKeepBody = keepBody;
+        }
+
+        @Override
+        public Page read(Response response, InputStream body) throws IOException {
+            final Page page = new Page();
+            final int status = response.code();
+            page.mHeadersAt = SystemClock.uptimeMillis();
+
+            if (status == 304) {
+                page.mIsNotModified = true;
+                return page;
+            }
+
+            page.mIsSuccessful = status >= 200 && status < 300;
+            page.mETag = response.header("ETag");
+            page.mLastModified = response.header("Last-Modified");
+
+            final CountingInputStream counted = new CountingInputStream(body);
+            if (mKeepBody) {
+                final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+                HttpClient.copy(counted, copy);
+                page.mBody = copy.toByteArray();
+                page.mData = parse(page.mBody);
+            } else {
+                page.mData = parse(counted);
+            }
+
+            page.mReadAt = SystemClock.uptimeMillis();
+            page.mDownloadMs = counted.getReadNanos() / 1000000L;
+            page.mBytes = counted.getCount();
+            return page;
+        }
+    }
+
+    private static Number parseNumber(String number) {
+        if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+            try {
+                final long value = Long.parseLong(number);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // Too large for a long.
+            }
+        }
+        return Double.valueOf(number);
+    }
+}
@@ -6,11 +6,30 @@ final class ParseResponse {
 
     private final Table table;
     private final JSONObject data;
+    private final boolean isLastPage;
+    private final boolean isNotModified;
 
     ParseResponse(Table table, JSONObject jsonObject) {
+        this(table, jsonObject, true);
+    }
+
+    ParseResponse(Table table, JSONObject jsonObject, boolean isLastPage) {
+        this(table, jsonObject, isLastPage, false);
+    }
+
+    private ParseResponse(Table table, JSONObject jsonObject, boolean isLastPage, boolean isNotModified) {
         if ((this.table = table) == null || ((this.data = jsonObject) == null)) {
             throw new IllegalArgumentException();
         }
+        this.isLastPage = isLastPage;
+        this.isNotModified = isNotModified;
+    }
+
+    /**
+     * @return a page the server reports unchanged since it was last handled; it has no data.
+     */
+    static ParseResponse notModified(Table table, boolean isLastPage) {
+        return new ParseResponse(table, new JSONObject(), isLastPage, true);
     }
 
     public Table getTable() {
@@ -20,4 +39,15 @@ final class ParseResponse {
     public JSONObject getData() {
         return data;
     }
+
+    /**
+     * @return false if more rows of the table follow in another response.
+     */
+    public boolean isLastPage() {
+        return isLastPage;
+    }
+
+    public boolean isNotModified() {
+        return isNotModified;
+    }
 }
@@ -5,77 +5,50 @@ import com.tealium.digitalvelocity.data.gson.Category;
 import org.json.JSONArray;
 import org.json.JSONException;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * What one sync run gathers: the Categories its Events and Companies refer to, and the newest
+ * updatedAt seen of each table until its last page commits it. Every run has its own, so a run
+ * starting while the pages of another are still being handled cannot clear what those need.
+ * Whether the Categories have all arrived is left to the {@link SyncGraph}, which only fetches
+ * Events and Companies once they have.
+ */
 final class SyncData {
 
     private final Map<String, Category> categories;
-    private boolean categoriesLoaded;
-    private boolean isRequestMade;
-    private JSONArray agendaData;
-    private JSONArray sponsorData;
+    private final Map<Table, Long> watermarks;
 
     SyncData() {
         this.categories = new HashMap<>();
+        this.watermarks = new EnumMap<>(Table.class);
     }
 
-    void loadCategories(JSONArray array) throws JSONException {
-
-        if (this.categoriesLoaded) {
-            return;
-        }
-
+    synchronized void loadCategories(JSONArray page) throws JSONException {
         Category category;
-        for (int i = 0; i < array.length(); i++) {
-            category = new Category(array.getJSONObject(i));
+        for (int i = 0; i < page.length(); i++) {
+            category = new Category(page.getJSONObject(i));
             categories.put(category.getId(), category);
         }
-
-        this.categoriesLoaded = true;
-    }
-
-    Map<String, Category> getCategories() {
-        return categories;
-    }
-
-    boolean isAgendaReady() {
-        return this.categoriesLoaded && this.agendaData != null;
-    }
-
-    boolean isSponsorReady() {
-        return this.categoriesLoaded && this.sponsorData != null;
     }
 
-    public boolean isRequestMade() {
-        return isRequestMade;
+    synchronized Category getCategory(String id) {
+        return categories.get(id);
     }
 
-    public void setRequestMade(boolean isRequestMade) {
-        this.isRequestMade = isRequestMade;
-    }
-
-    JSONArray getAgendaData() {
-        return agendaData;
-    }
-
-    JSONArray getSponsorData() {
-        return sponsorData;
-    }
-
-    void setAgendaData(JSONArray agendaData) {
-        this.agendaData = agendaData;
-    }
-
-    void setSponsorData(JSONArray sponsorData) {
-        this.sponsorData = sponsorData;
+    synchronized void observeWatermark(Table table, long updatedAt) {
+        final Long pending = watermarks.get(table);
+        if (pending == null || updatedAt > pending) {
+            watermarks.put(table, updatedAt);
+        }
     }
 
-    void reset() {
-        this.categoriesLoaded = false;
-        this.isRequestMade = false;
-        this.categories.clear();
-        this.agendaData = null;
-        this.sponsorData = null;
+    /**
+     * @return the newest updatedAt seen of the table, or null if none.
+     */
+    synchronized Long removeWatermark(Table table) {
+        return watermarks.remove(table);
     }
 }
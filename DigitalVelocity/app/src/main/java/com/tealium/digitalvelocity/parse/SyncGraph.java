@@ -0,0 +1,192 @@
+package com.tealium.digitalvelocity.parse;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the table fetches of one sync, each once the tables it depends on have been fetched, and
+ * independent ones in parallel. A fetch whose dependency failed is skipped, and reported as
+ * failed itself.
+ * <p/>
+ * Fetches become ready in the order they were added, so with a sequential executor a run is
+ * deterministic. Nothing here depends on Android, so the graph can be exercised on the JVM with
+ * fake fetches.
+ */
+final class SyncGraph {
+
+    interface Task {
+        void run() throws Exception;
+    }
+
+    interface Listener {
+        /**
+         * Called on the thread that ran the fetch, or that skipped it.
+         *
+         * @param error  null if the fetch succeeded.
+         * @param waitMs from the start of the graph to the start of the fetch.
+         * @param runMs  0 if the fetch was skipped.
+         */
+        void onNodeFinished(Table table, Throwable error, long waitMs, long runMs);
+    }
+
+    static final class SkippedException extends Exception {
+        SkippedException(Table dependency) {
+            super("Dependency " + dependency.name() + " failed");
+        }
+    }
+
+    private final Executor mExecutor;
+    private final Listener mListener;
+    private final Map<Table, Node> mNodes;
+
+    private CountDownLatch mDone;
+    private long mStartedAt;
+
+    SyncGraph(Executor executor, Listener listener) {
+        mExecutor = executor;
+        mListener = listener;
+        mNodes = new LinkedHashMap<>();
+    }
+
+    /**
+     * @param dependencies must have been added already, so the graph cannot contain cycles.
+     */
+    synchronized SyncGraph add(Table table, Task task, Table... dependencies) {
+        if (mDone != null) {
+            throw new IllegalStateException("Already started");
+        }
+
+        if (mNodes.containsKey(table)) {
+            throw new IllegalArgumentException("Duplicate fetch of " + table.name());
+        }
+
+        final Node node = new Node(table, task);
+        for (Table dependency : dependencies) {
+            final Node parent = mNodes.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException(
+                        table.name() + " depends on unknown " + dependency.name());
+            }
+            parent.mDependents.add(node);
+            node.mPending++;
+        }
+
+        mNodes.put(table, node);
+        return this;
+    }
+
+    synchronized boolean contains(Table table) {
+        return mNodes.containsKey(table);
+    }
+
+    void start() {
+        final List<Node> ready = new ArrayList<>();
+
+        synchronized (this) {
+            if (mDone != null) {
+                throw new IllegalStateException("Already started");
+            }
+
+            mDone = new CountDownLatch(mNodes.size());
+            mStartedAt = now();
+
+            for (Node node : mNodes.values()) {
+                if (node.mPending == 0) {
+                    ready.add(node);
+                }
+            }
+        }
+
+        for (Node node : ready) {
+            dispatch(node);
+        }
+    }
+
+    /**
+     * @return false if a fetch was still pending when the timeout elapsed.
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        final CountDownLatch done;
+        synchronized (this) {
+            if ((done = mDone) == null) {
+                throw new IllegalStateException("Not started");
+            }
+        }
+        return done.await(timeout, unit);
+    }
+
+    private void dispatch(final Node node) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = now();
+                Throwable error = null;
+                try {
+                    node.mTask.run();
+                } catch (Throwable t) {
+                    error = t;
+                }
+                finish(node, error, start - mStartedAt, now() - start);
+            }
+        });
+    }
+
+    private void finish(Node node, Throwable error, long waitMs, long runMs) {
+        try {
+            mListener.onNodeFinished(node.mTable, error, waitMs, runMs);
+        } finally {
+            release(node, error != null);
+        }
+    }
+
+    private void release(Node node, boolean isFailed) {
+        final List<Node> ready = new ArrayList<>(node.mDependents.size());
+        final List<Node> skipped = new ArrayList<>(node.mDependents.size());
+
+        synchronized (this) {
+            for (Node dependent : node.mDependents) {
+                if (isFailed && dependent.mFailedDependency == null) {
+                    dependent.mFailedDependency = node.mTable;
+                }
+                if (--dependent.mPending == 0) {
+                    (dependent.mFailedDependency == null ? ready : skipped).add(dependent);
+                }
+            }
+        }
+
+        mDone.countDown();
+
+        for (Node dependent : skipped) {
+            finish(dependent, new SkippedException(dependent.mFailedDependency),
+                    now() - mStartedAt, 0);
+        }
+
+        for (Node dependent : ready) {
+            dispatch(dependent);
+        }
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1000000L;
+    }
+
+    private static final class Node {
+        private final Table mTable;
+        private final Task mTask;
+        private final List<Node> mDependents;
+
+        private int mPending;
+        private Table mFailedDependency;
+
+        private Node(Table table, Task task) {
+            mTable = table;
+            mTask = task;
+            mDependents = new ArrayList<>(2);
+        }
+    }
+}
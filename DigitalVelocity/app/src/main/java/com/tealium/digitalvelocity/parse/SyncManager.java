@@ -3,11 +3,12 @@ package com.tealium.digitalvelocity.parse;
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import com.squareup.okhttp.OkHttpClient;
 import com.squareup.okhttp.Request;
-import com.squareup.okhttp.Response;
 import com.tealium.digitalvelocity.BuildConfig;
 import com.tealium.digitalvelocity.data.Model;
 import com.tealium.digitalvelocity.data.TrackingManager;
@@ -15,6 +16,7 @@ import com.tealium.digitalvelocity.data.gson.AgendaItem;
 import com.tealium.digitalvelocity.data.gson.Category;
 import com.tealium.digitalvelocity.data.gson.Coordinates;
 import com.tealium.digitalvelocity.data.gson.Floor;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
 import com.tealium.digitalvelocity.data.gson.Question;
 import com.tealium.digitalvelocity.data.gson.Sponsor;
 import com.tealium.digitalvelocity.data.gson.Survey;
@@ -27,33 +29,99 @@ import com.tealium.digitalvelocity.event.TrackUpdateEvent;
 import com.tealium.digitalvelocity.push.PushManager;
 import com.tealium.digitalvelocity.push.event.PushTokenUpdateEvent;
 import com.tealium.digitalvelocity.util.Constant;
+import com.tealium.digitalvelocity.util.HttpCache;
+import com.tealium.digitalvelocity.util.HttpClient;
+import com.tealium.digitalvelocity.util.Iso8601;
+import com.tealium.digitalvelocity.util.Metrics;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import de.greenrobot.event.EventBus;
 
 public final class SyncManager {
 
-    private final SyncData mSyncData;
+    /**
+     * The tables whose rows a {@link Purge} deletes.
+     */
+    private static final Table[] PURGED_TABLES = {
+            Table.Category, Table.Event, Table.Company, Table.Location,
+            Table.Survey, Table.Question};
+
     private final Context mContext;
+    private final ParseBatch mBatch;
+    private final HttpCache mCache;
+    private final ParsePager mPager;
+    private final ParsePager mIdPager;
+    private final SyncGraph.Listener mGraphListener;
+    private final SyncScheduler mScheduler;
+    private final Handler mRetryHandler;
+    private final Runnable mRetry;
+    private volatile Purge mOwnPurge;
 
     public SyncManager(Context context) {
-        mSyncData = new SyncData();
         mContext = context.getApplicationContext();
+        mBatch = new ParseBatch(HttpClient.getInstance());
+        mCache = HttpCache.getInstance(mContext);
+        mPager = new ParsePager(HttpClient.getInstance(), mCache);
+        mIdPager = new ParsePager(
+                HttpClient.getInstance(), null, Metrics.getInstance(), "reconcile.");
+        mGraphListener = new SyncGraph.Listener() {
+            @Override
+            public void onNodeFinished(Table table, Throwable error, long waitMs, long runMs) {
+                if (BuildConfig.DEBUG) Log.d(Constant.TAG, String.format(
+                        Locale.ROOT,
+                        "# %s fetch waited %d ms, ran %d ms.",
+                        table.name(), waitMs, runMs));
+
+                final Metrics metrics = Metrics.getInstance();
+                metrics.record("sync." + table.name() + ".queue_ms", waitMs);
+                metrics.record("sync." + table.name() + ".fetch_ms", runMs);
+
+                if (error != null) {
+                    metrics.count("sync." + table.name() + ".failures", 1);
+                    Log.e(Constant.TAG, "Error loading " + table.name(), error);
+                    onSyncFailed(table);
+                }
+            }
+        };
+        mScheduler = new SyncScheduler(mContext);
+        mRetryHandler = new Handler(Looper.getMainLooper());
+        mRetry = new Runnable() {
+            @Override
+            public void run() {
+                EventBus.getDefault().post(new SyncRequest());
+            }
+        };
     }
 
     @SuppressWarnings("unused")
     public void onEventBackgroundThread(SyncRequest req) {
+        if (req.isForced()) {
+            mScheduler.expedite(Table.values());
+        }
+
         if (!syncConfig()) {
             // In case config synced and nothing else did.
             syncData();
         }
 
+        // Tables still backing off from an earlier failure.
+        scheduleRetry();
+
         // Check push
 
         final Model model = Model.getInstance();
@@ -88,99 +156,109 @@ public final class SyncManager {
     }
 
     @SuppressWarnings("unused")
-    public void onEventBackgroundThread(ParseResponse parseResponse) {
-        JSONArray results = parseResponse.getData().optJSONArray("results");
-        if (results == null) {
+    public void onEventBackgroundThread(Purge event) {
+        if (event != mOwnPurge) {
+            purge();
+        }
+    }
 
-            String data;
+    /**
+     * Forgets everything that would have the next sync skip the purged rows rather than
+     * download them again: their watermarks, the validators that would be answered with
+     * "Not Modified", and when their tables last synced.
+     */
+    private void purge() {
+        final SharedPreferences.Editor editor = Model.getInstance().getSharedPreferences().edit();
+        for (Table table : PURGED_TABLES) {
+            editor.remove(table.getSPKey());
+        }
+        editor.commit();
 
-            try {
-                data = parseResponse.getData().toString(4);
-            } catch (JSONException e) {
-                throw new RuntimeException(e);
-            }
+        mCache.clear();
+        mScheduler.reset(PURGED_TABLES);
+    }
 
-            Log.e(Constant.TAG, "Unexpected Response: " + data, new IllegalArgumentException());
+    /**
+     * Handles and persists the page on the pager's thread, so that the next page is requested
+     * only once this one is on disk. Throws, failing the table, if it could not be.
+     */
+    private void handlePage(SyncData run, ParseResponse parseResponse)
+            throws IOException, JSONException {
+        if (parseResponse.isNotModified()) {
+            processNotModified(run, parseResponse.getTable(), parseResponse.isLastPage());
             return;
         }
 
-        try {
-            switch (parseResponse.getTable()) {
-                case Installation:
-                    if (BuildConfig.DEBUG) {
-                        Log.d(Constant.TAG, parseResponse.getData().toString(4));
-                    }
-                    break;
-                case Config:
-                    processConfigData(results);
-                    break;
-                case Company:
-                    if (results.length() == 0) {
-                        if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received 0 Companies.");
-                        updateLastSyncTimestamp(Table.Company);
-                        break;
-                    }
-
-                    if (!mSyncData.isRequestMade()) {
-                        performRequest(ParseHelper.createCategoryRequest(), Table.Category);
-                        mSyncData.setRequestMade(true);
-                    }
+        final JSONArray results = getResults(parseResponse);
+        final boolean isLastPage = parseResponse.isLastPage();
+        observeWatermark(run, parseResponse.getTable(), results);
 
-                    mSyncData.setSponsorData(results);
-
-                    if (mSyncData.isSponsorReady()) {
-                        processCompanyData();
+        switch (parseResponse.getTable()) {
+            case Installation:
+                if (BuildConfig.DEBUG) {
+                    Log.d(Constant.TAG, parseResponse.getData().toString(4));
+                }
+                break;
+            case Config:
+                processConfigData(run, results);
+                break;
+            case Company:
+                if (results.length() == 0) {
+                    if (isLastPage) {
+                        if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received 0 Companies.");
+                        commitWatermark(run, Table.Company);
                     }
                     break;
-                case Category:
-                    mSyncData.loadCategories(results);
-
-                    if (mSyncData.isAgendaReady()) {
-                        processEventData();
-                    }
+                }
 
-                    if (mSyncData.isSponsorReady()) {
-                        processCompanyData();
-                    }
-                    break;
-                case Location:
-                    processLocationData(results);
-                    break;
-                case Survey:
-                    processParseItemData(Table.Survey, results);
-                    break;
-                case Question:
-                    processParseItemData(Table.Question, results);
-                    break;
-                case Event:
-                    if (results.length() == 0) {
+                processCompanyData(run, results, isLastPage);
+                break;
+            case Location:
+                processLocationData(run, results, isLastPage);
+                break;
+            case Survey:
+                processParseItemData(run, Table.Survey, results, isLastPage);
+                break;
+            case Question:
+                processParseItemData(run, Table.Question, results, isLastPage);
+                break;
+            case Event:
+                if (results.length() == 0) {
+                    if (isLastPage) {
                         if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received 0 Events.");
-                        updateLastSyncTimestamp(Table.Event);
-                        break;
-                    }
-
-                    if (!mSyncData.isRequestMade()) {
-                        performRequest(ParseHelper.createCategoryRequest(), Table.Category);
-                        mSyncData.setRequestMade(true);
+                        commitWatermark(run, Table.Event);
                     }
+                    break;
+                }
 
-                    mSyncData.setAgendaData(results);
+                processEventData(run, results, isLastPage);
+                break;
+            case Attendee:
+                processAttendeeData(results);
+                break;
+            case Contact:
+                Model.getInstance().setContactInfo(results.length() == 0 ? null : results.getJSONObject(0));
+                onSynced(Table.Contact);
+                break;
+        }
+    }
 
-                    if (mSyncData.isAgendaReady()) {
-                        processEventData();
-                    }
-                    break;
-                case Attendee:
-                    processAttendeeData(results);
-                    break;
-                case Contact:
-                    Model.getInstance().setContactInfo(results.length() == 0 ? null : results.getJSONObject(0));
-                    break;
-            }
-        } catch (Throwable t) {
-            Log.e(Constant.TAG, null, t);
+    private static JSONArray getResults(ParseResponse page) throws IOException, JSONException {
+        final JSONArray results = page.getData().optJSONArray("results");
+        if (results == null) {
+            throw new IOException("Unexpected Response: " + page.getData().toString(4));
         }
+        return results;
+    }
 
+    /**
+     * Commits the rows before returning, rather than posting them to be written later.
+     */
+    private static void save(SaveRequest.Batch<?> batch) throws IOException {
+        if (!Model.getInstance().save(batch)) {
+            throw new IOException("Error saving " + batch.getItems().size() + " " +
+                    batch.getItemClass().getSimpleName() + " rows");
+        }
     }
 
     @SuppressWarnings("unused")
@@ -216,44 +294,81 @@ public final class SyncManager {
 
     private void syncData() {
 
-        // Reset for incoming.
-        mSyncData.reset();
-
         final Model model = Model.getInstance();
         final long now = System.currentTimeMillis();
         final long syncRate = model.getParseSyncRate();
 
+        final List<Table> tables = new ArrayList<>(8);
+        final List<Request> requests = new ArrayList<>(8);
+
         if (readyToSync(now, syncRate, Table.Event)) {
-            performRequest(ParseHelper.createEventRequest(), Table.Event);
+            tables.add(Table.Event);
+            requests.add(ParseHelper.createEventRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Location)) {
-            performRequest(ParseHelper.createLocationRequest(), Table.Location);
+            tables.add(Table.Location);
+            requests.add(ParseHelper.createLocationRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Company)) {
-            performRequest(ParseHelper.createCompanyRequest(), Table.Company);
+            tables.add(Table.Company);
+            requests.add(ParseHelper.createCompanyRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Survey)) {
-            performRequest(ParseHelper.createSurveyRequest(), Table.Survey);
+            tables.add(Table.Survey);
+            requests.add(ParseHelper.createSurveyRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Question)) {
-            performRequest(ParseHelper.createQuestionRequest(), Table.Question);
+            tables.add(Table.Question);
+            requests.add(ParseHelper.createQuestionRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Contact)) {
-            performRequest(ParseHelper.createContactRequest(), Table.Contact);
+            tables.add(Table.Contact);
+            requests.add(ParseHelper.createContactRequest());
         }
 
         if (readyToSync(now, syncRate, Table.Attendee) && model.getUserEmail() != null) {
             try {
-                performRequest(ParseHelper.createAttendeeRequest(model.getUserEmail()), Table.Attendee);
+                requests.add(ParseHelper.createAttendeeRequest(model.getUserEmail()));
+                tables.add(Table.Attendee);
             } catch (JSONException e) {
                 Log.e(Constant.TAG, e.getMessage(), e);
             }
         }
+
+        // Events and Companies need the Categories; fetch them first.
+        if (tables.contains(Table.Event) || tables.contains(Table.Company)) {
+            tables.add(0, Table.Category);
+            requests.add(0, ParseHelper.createCategoryRequest());
+        }
+
+        performRequests(new SyncData(), tables, requests);
+    }
+
+    /**
+     * Nothing to parse or persist; the table is as current as if it had been downloaded.
+     */
+    private void processNotModified(SyncData run, Table table, boolean isLastPage) {
+        if (!isLastPage) {
+            return;
+        }
+
+        if (BuildConfig.DEBUG) Log.d(Constant.TAG, "# " + table.name() + " not modified.");
+
+        if (table == Table.Contact || table == Table.Attendee) {
+            // Queried whole rather than since the last sync.
+            onSynced(table);
+        } else if (table.getSPKey() != null) {
+            commitWatermark(run, table);
+        }
+
+        if (table == Table.Config) {
+            this.syncData();
+        }
     }
 
     private void processAttendeeData(JSONArray results) throws JSONException {
@@ -273,19 +388,19 @@ public final class SyncManager {
         * */
 
         if (results.length() == 0) {
+            onSynced(Table.Attendee);
             return;
         }
 
         Model.getInstance().updateVipInfo(results.getJSONObject(0));
-        updateLastSyncTimestamp(Table.Attendee);
+        onSynced(Table.Attendee);
     }
 
-    private void processConfigData(JSONArray results) throws JSONException {
+    private void processConfigData(SyncData run, JSONArray results) throws JSONException {
 
         final EventBus bus = EventBus.getDefault();
         final Model model = Model.getInstance();
         JSONObject config;
-        final SharedPreferences.Editor editor = Model.getInstance().getSharedPreferences().edit();
 
         if (results.length() > 0) {
             model.setConfig(config = results.getJSONObject(0));
@@ -298,15 +413,18 @@ public final class SyncManager {
             }
 
             if (config.optBoolean("purge", false)) {
-                bus.post(new Purge());
-
-                editor.remove(Constant.SP.KEY_LAST_SYNC_COMPANY)
-                        .remove(Constant.SP.KEY_LAST_SYNC_EVENT)
-                        .remove(Constant.SP.KEY_LAST_SYNC_LOCATION);
+                // Before the sync below starts, which would otherwise ask only for changes.
+                purge();
+
+                // Posted from this background thread, the stores are emptied before post()
+                // returns, so none of the rows synced below is deleted with them.
+                final Purge purge = new Purge();
+                mOwnPurge = purge;
+                bus.post(purge);
             }
         }
 
-        updateLastSyncTimestamp(Table.Config);
+        commitWatermark(run, Table.Config);
 
         if (BuildConfig.DEBUG) {
             Log.i(Constant.TAG, "Received " + results.length() + " Config keys.");
@@ -315,20 +433,20 @@ public final class SyncManager {
         this.syncData();
     }
 
-    private void processEventData() throws JSONException, ParseException {
+    private void processEventData(SyncData run, JSONArray page, boolean isLastPage)
+            throws IOException, JSONException {
 
         final Model model = Model.getInstance();
         final EventBus bus = EventBus.getDefault();
+        final List<AgendaItem> agendaItems = new ArrayList<>(page.length());
         JSONObject item;
         Category category;
-        AgendaItem newItem;
 
-        for (int i = 0; i < mSyncData.getAgendaData().length(); i++) {
-            item = mSyncData.getAgendaData().getJSONObject(i);
+        for (int i = 0; i < page.length(); i++) {
+            item = page.getJSONObject(i);
             try {
-                category = mSyncData.getCategories().get(item.getString("categoryId"));
-                bus.post(new SaveRequest.AgendaItem(newItem = new AgendaItem(item, category)));
-                model.enqueueImageDownload(newItem.getId(), newItem.getImageURL());
+                category = run.getCategory(item.getString("categoryId"));
+                agendaItems.add(new AgendaItem(item, category));
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
                     Log.e(Constant.TAG, "Error parsing " + item, e);
@@ -336,131 +454,414 @@ public final class SyncManager {
             }
         }
 
-        updateLastSyncTimestamp(Table.Event);
+        save(new SaveRequest.Batch<>(AgendaItem.class, agendaItems));
+
+        for (AgendaItem agendaItem : agendaItems) {
+            if (agendaItem.isVisible()) {
+                model.enqueueImageDownload(agendaItem.getId(), agendaItem.getImageURL());
+            }
+        }
 
         if (BuildConfig.DEBUG) {
-            Log.i(Constant.TAG, "Received " + mSyncData.getAgendaData().length() + " Events.");
+            Log.i(Constant.TAG, "Received " + page.length() + " Events.");
         }
 
-        // Data is processed, nulling it out
-        mSyncData.setAgendaData(null);
-        bus.post(new SyncCompleteEvent.ParseEvent());
+        if (isLastPage) {
+            commitWatermark(run, Table.Event);
+            bus.post(new SyncCompleteEvent.ParseEvent());
+        }
     }
 
-    private void processCompanyData() throws JSONException {
+    private void processCompanyData(SyncData run, JSONArray page, boolean isLastPage)
+            throws IOException, JSONException {
 
         final Model model = Model.getInstance();
         final EventBus bus = EventBus.getDefault();
+        final List<Sponsor> sponsors = new ArrayList<>(page.length());
         JSONObject item;
         Category category;
-        Sponsor sponsor;
 
-        for (int i = 0; i < this.mSyncData.getSponsorData().length(); i++) {
-            item = this.mSyncData.getSponsorData().getJSONObject(i);
-            category = this.mSyncData.getCategories().get(item.getString("categoryId"));
-            bus.post(new SaveRequest.Sponsor(sponsor = new Sponsor(item, category)));
-            model.enqueueImageDownload(sponsor.getId(), sponsor.getLogoUri());
+        for (int i = 0; i < page.length(); i++) {
+            item = page.getJSONObject(i);
+            category = run.getCategory(item.getString("categoryId"));
+            sponsors.add(new Sponsor(item, category));
         }
 
-        updateLastSyncTimestamp(Table.Company);
+        save(new SaveRequest.Batch<>(Sponsor.class, sponsors));
 
-        if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received " +
-                this.mSyncData.getSponsorData().length() + " Companies.");
-        this.mSyncData.setSponsorData(null);
-        bus.post(new SyncCompleteEvent.ParseCompany());
-    }
+        for (Sponsor sponsor : sponsors) {
+            if (sponsor.isVisible()) {
+                model.enqueueImageDownload(sponsor.getId(), sponsor.getLogoUri());
+            }
+        }
 
-    private void processParseItemData(Table table, JSONArray array) throws JSONException {
-        final EventBus bus = EventBus.getDefault();
+        if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received " + page.length() + " Companies.");
 
+        if (isLastPage) {
+            commitWatermark(run, Table.Company);
+            bus.post(new SyncCompleteEvent.ParseCompany());
+        }
+    }
+
+    private void processParseItemData(SyncData run, Table table, JSONArray array,
+                                      boolean isLastPage)
+            throws IOException, JSONException {
 
         switch (table) {
             case Survey:
+                final List<Survey> surveys = new ArrayList<>(array.length());
                 for (int i = 0; i < array.length(); i++) {
-                    bus.post(new SaveRequest.Survey(new Survey(array.getJSONObject(i))));
+                    surveys.add(new Survey(array.getJSONObject(i)));
                 }
+                save(new SaveRequest.Batch<>(Survey.class, surveys));
                 break;
             case Question:
+                final List<Question> questions = new ArrayList<>(array.length());
                 for (int i = 0; i < array.length(); i++) {
-                    bus.post(new SaveRequest.Question(new Question(array.getJSONObject(i))));
+                    questions.add(new Question(array.getJSONObject(i)));
                 }
+                save(new SaveRequest.Batch<>(Question.class, questions));
                 break;
             default:
                 throw new UnsupportedOperationException();
         }
 
 
-        updateLastSyncTimestamp(table);
+        if (isLastPage) {
+            commitWatermark(run, table);
+        }
         if (BuildConfig.DEBUG) {
             Log.i(Constant.TAG, "Received " + array.length() + " " + table.name() + "s.");
         }
     }
 
-    private void processLocationData(JSONArray array) throws JSONException {
+    private void processLocationData(SyncData run, JSONArray array, boolean isLastPage)
+            throws IOException, JSONException {
 
         final Model model = Model.getInstance();
         final EventBus bus = EventBus.getDefault();
+        final List<Coordinates> coordinates = new ArrayList<>(array.length());
+        final List<Floor> floors = new ArrayList<>();
         JSONObject item;
-        Floor newFloor;
 
         for (int i = 0; i < array.length(); i++) {
             item = array.getJSONObject(i);
 
             if (item.has("latitude") && item.has("longitude")) {
-                bus.post(new SaveRequest.Coordinates(new Coordinates(item)));
+                coordinates.add(new Coordinates(item));
             } else if (item.has("imageData")) {
-                bus.post(new SaveRequest.Floor(newFloor = new Floor(item)));
-                model.enqueueImageDownload(newFloor.getId(), newFloor.getImageUri());
+                floors.add(new Floor(item));
             } else {
                 Log.e(Constant.TAG, "Ambiguous Location : " + item.toString(4));
             }
         }
 
-        updateLastSyncTimestamp(Table.Location);
+        save(new SaveRequest.Batch<>(Coordinates.class, coordinates));
+        save(new SaveRequest.Batch<>(Floor.class, floors));
+
+        for (Floor floor : floors) {
+            if (floor.isVisible()) {
+                model.enqueueImageDownload(floor.getId(), floor.getImageUri());
+            }
+        }
 
         if (BuildConfig.DEBUG) Log.i(Constant.TAG, "Received " + array.length() + " Locations.");
-        bus.post(new SyncCompleteEvent.ParseLocation());
+
+        if (isLastPage) {
+            commitWatermark(run, Table.Location);
+            bus.post(new SyncCompleteEvent.ParseLocation());
+        }
+    }
+
+    /**
+     * Keeps the newest updatedAt of the table's rows seen in this run.
+     */
+    private static void observeWatermark(SyncData run, Table table, JSONArray page) {
+        long newest = 0;
+        for (int i = 0; i < page.length(); i++) {
+            final JSONObject row = page.optJSONObject(i);
+            if (row != null) {
+                newest = Math.max(newest, Iso8601.parse(row.optString("updatedAt"), 0));
+            }
+        }
+
+        if (newest != 0) {
+            run.observeWatermark(table, newest);
+        }
+    }
+
+    /**
+     * Once every page has been handled, advances the table's watermark to the newest updatedAt
+     * the server sent, so the next query asks only for rows changed since, by the server's clock
+     * rather than the device's; and marks the table synced.
+     */
+    private void commitWatermark(SyncData run, Table table) {
+        final Long newest = run.removeWatermark(table);
+        final SharedPreferences sp = Model.getInstance().getSharedPreferences();
+
+        if (newest != null && newest > sp.getLong(table.getSPKey(), 0)) {
+            sp.edit().putLong(table.getSPKey(), newest).apply();
+        }
+
+        onSynced(table);
+    }
+
+    private void onSynced(Table table) {
+        mScheduler.onSuccess(table, System.currentTimeMillis(), Model.getInstance().getParseSyncRate());
     }
 
-    private static void updateLastSyncTimestamp(Table table) {
+    /**
+     * Backs the table off and schedules a retry, rather than waiting for the next wake.
+     */
+    private void onSyncFailed(Table table) {
+        if (table == Table.Category) {
+            // Fails the Events or Companies that needed them instead.
+            return;
+        }
+
         final long now = System.currentTimeMillis();
-        Model.getInstance().getSharedPreferences()
-                .edit().putLong(table.getSPKey(), now)
-                .apply();
-        table.setLastSyncTS(now);
+        final long next = mScheduler.onFailure(table, now, Model.getInstance().getParseSyncRate());
+
+        if (BuildConfig.DEBUG) Log.d(Constant.TAG, String.format(
+                Locale.ROOT,
+                "# %s failed %d time(s); retrying in %ds.",
+                table.name(), mScheduler.getFailureCount(table), (next - now) / 1000L));
+
+        scheduleRetry();
+
+        if (table == Table.Config) {
+            // The rest need not wait for it.
+            this.syncData();
+        }
     }
 
-    private static void performRequest(final Request request, final Table table) {
+    private void scheduleRetry() {
+        final long now = System.currentTimeMillis();
+        final long next = mScheduler.getNextRetryTime(now);
+
+        mRetryHandler.removeCallbacks(mRetry);
+        if (next != 0) {
+            mRetryHandler.postDelayed(mRetry, next - now);
+        }
+    }
+
+    /**
+     * Fetches the tables through a {@link SyncGraph}: Events and Companies only once the
+     * Categories they refer to are in memory, so that each of their pages is persisted as soon as
+     * it arrives, and everything else in parallel.
+     * <p/>
+     * The first page of every query is sent as one batch where the backend allows it, and with
+     * its table otherwise. Tables larger than a page are then walked page by page.
+     * <p/>
+     * Once the backend is known to send validators the queries also go individually, since
+     * only those can be made conditional and an unchanged table then costs a bodiless 304.
+     *
+     * @param run what this run gathers, which no other run shares.
+     */
+    private void performRequests(final SyncData run, final List<Table> tables,
+                                 final List<Request> requests) {
+
+        final boolean isBatched =
+                requests.size() > 1 && mBatch.isSupported() && !mPager.hasValidators();
+
         new AsyncTask<Void, Void, Void>() {
             @Override
             protected Void doInBackground(Void... params) {
-                try {
-                    OkHttpClient client = new OkHttpClient();
-                    Response res = client.newCall(request).execute();
+                final Map<Table, ParseResponse> firstPages = isBatched ?
+                        fetchFirstPages(tables, requests) :
+                        Collections.<Table, ParseResponse>emptyMap();
+
+                final SyncGraph graph = new SyncGraph(AsyncTask.THREAD_POOL_EXECUTOR, mGraphListener);
+
+                for (int i = 0; i < tables.size(); i++) {
+                    final Table table = tables.get(i);
+                    final SyncGraph.Task task = createFetchTask(table, requests.get(i),
+                            firstPages.get(table),
+                            table == Table.Category ?
+                                    createCategoryLoader(run) : createPageHandler(run));
+
+                    if ((table == Table.Event || table == Table.Company) &&
+                            graph.contains(Table.Category)) {
+                        graph.add(table, task, Table.Category);
+                    } else {
+                        graph.add(table, task);
+                    }
+                }
+
+                graph.start();
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private ParsePager.Listener createPageHandler(final SyncData run) {
+        return new ParsePager.Listener() {
+            @Override
+            public void onPage(ParseResponse page) throws IOException, JSONException {
+                handlePage(run, page);
+            }
+        };
+    }
+
+    private static ParsePager.Listener createCategoryLoader(final SyncData run) {
+        return new ParsePager.Listener() {
+            @Override
+            public void onPage(ParseResponse page) throws IOException, JSONException {
+                run.loadCategories(getResults(page));
+            }
+        };
+    }
+
+    /**
+     * @return the first page of each table the batch answered; the rest fetch their own.
+     */
+    private Map<Table, ParseResponse> fetchFirstPages(List<Table> tables, List<Request> requests) {
+        final List<Request> firstPages = new ArrayList<>(requests.size());
+        try {
+            for (Request request : requests) {
+                firstPages.add(ParseHelper.createPageRequest(request, null));
+            }
+        } catch (JSONException e) {
+            Log.e(Constant.TAG, null, e);
+            return Collections.emptyMap();
+        }
+
+        final long start = SystemClock.uptimeMillis();
+        final List<ParseResponse> responses = mBatch.execute(tables, firstPages);
+        Metrics.getInstance().record("sync.batch_ms", SystemClock.uptimeMillis() - start);
+        final Map<Table, ParseResponse> answered = new EnumMap<>(Table.class);
+        for (ParseResponse response : responses) {
+            if (response != null) {
+                answered.put(response.getTable(), response);
+            }
+        }
+        return answered;
+    }
 
-                    if (BuildConfig.DEBUG) {
-                        Log.v(Constant.TAG, request + ", Status: " + res.code());
+    /**
+     * @param firstPage the table's first page if already fetched, otherwise null.
+     */
+    private SyncGraph.Task createFetchTask(final Table table, final Request request,
+                                           final ParseResponse firstPage,
+                                           final ParsePager.Listener listener) {
+        return new SyncGraph.Task() {
+            @Override
+            public void run() throws Exception {
+                if (!getItemClasses(table).isEmpty() &&
+                        mScheduler.isReconcileDue(table, System.currentTimeMillis())) {
+                    // Before the rows, so that none fetched now could be mistaken for deleted.
+                    try {
+                        reconcile(table);
+                    } catch (Throwable t) {
+                        Log.e(Constant.TAG, "Error reconciling " + table.name(), t);
                     }
+                }
 
-                    JSONObject data = new JSONObject(res.body().string());
+                String after = null;
 
-                    EventBus.getDefault().post(new ParseResponse(table, data));
-                } catch (Throwable t) {
-                    Log.e(Constant.TAG, "Error loading " + request, t);
+                if (firstPage != null) {
+                    final JSONArray results = firstPage.getData().optJSONArray("results");
+                    final boolean isLast = !ParsePager.isFull(results);
+
+                    listener.onPage(isLast ?
+                            firstPage : new ParseResponse(table, firstPage.getData(), false));
+
+                    // The pager records its own pages; this one came with the batch.
+                    final Metrics metrics = Metrics.getInstance();
+                    metrics.count("sync." + table.name() + ".pages", 1);
+                    metrics.count("sync." + table.name() + ".rows",
+                            results == null ? 0 : results.length());
+
+                    if (isLast) {
+                        return;
+                    }
+                    after = ParsePager.getCursor(results);
+                }
+
+                mPager.fetch(table, request, after, listener);
+            }
+        };
+    }
+
+    /**
+     * Fetches only the ids of the table's rows, and has the stored rows the server no longer
+     * has deleted.
+     */
+    private void reconcile(Table table) throws IOException, JSONException {
+        final Set<String> ids = new HashSet<>();
+
+        mIdPager.fetch(table, ParseHelper.createIdRequest(table), null, new ParsePager.Listener() {
+            @Override
+            public void onPage(ParseResponse page) throws IOException, JSONException {
+                final JSONArray results = getResults(page);
+                for (int i = 0; i < results.length(); i++) {
+                    final JSONObject row = results.optJSONObject(i);
+                    if (row != null && row.has("objectId")) {
+                        ids.add(row.optString("objectId"));
+                    }
                 }
+            }
+        });
+
+        if (ids.isEmpty()) {
+            // More likely a misconfigured query than an emptied table; keep what we have.
+            if (BuildConfig.DEBUG) Log.d(Constant.TAG, "# No " + table.name() + " ids; skipped.");
+            return;
+        }
+
+        final EventBus bus = EventBus.getDefault();
+        for (Class<? extends ParseItem> itemClass : getItemClasses(table)) {
+            bus.post(new SaveRequest.RetainOnly(itemClass, ids));
+        }
+
+        mScheduler.onReconciled(table, System.currentTimeMillis());
+    }
+
+    /**
+     * @return the classes stored from the table's rows; empty if none is kept per row.
+     */
+    private static List<Class<? extends ParseItem>> getItemClasses(Table table) {
+        switch (table) {
+            case Event:
+                return Collections.<Class<? extends ParseItem>>singletonList(AgendaItem.class);
+            case Company:
+                return Collections.<Class<? extends ParseItem>>singletonList(Sponsor.class);
+            case Location:
+                return Arrays.<Class<? extends ParseItem>>asList(Floor.class, Coordinates.class);
+            case Survey:
+                return Collections.<Class<? extends ParseItem>>singletonList(Survey.class);
+            case Question:
+                return Collections.<Class<? extends ParseItem>>singletonList(Question.class);
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    private void performRequest(final Request request, final Table table) {
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(Void... params) {
+                fetchPages(request, table);
                 return null;
             }
         }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
     }
 
-    private static boolean readyToSync(long now, long syncTimeout, Table table) {
-        final long delta = now - table.getLastSyncTS();
+    private void fetchPages(Request request, Table table) {
+        try {
+            mPager.fetch(table, request, null, createPageHandler(new SyncData()));
+        } catch (Throwable t) {
+            Log.e(Constant.TAG, "Error loading " + request, t);
+            onSyncFailed(table);
+        }
+    }
 
-        if (delta < syncTimeout) {
+    private boolean readyToSync(long now, long syncTimeout, Table table) {
+        if (!mScheduler.isDue(table, now, syncTimeout)) {
             if (BuildConfig.DEBUG) Log.d(Constant.TAG, String.format(
                     Locale.ROOT,
                     "%d minutes until " + table.name() + " refresh.",
-                    (syncTimeout - delta) / (60000L)));
+                    mScheduler.getTimeUntilDue(table, now) / (60000L)));
             return false;
         }
 
@@ -479,8 +880,7 @@ public final class SyncManager {
                             model.getGcmSenderId(),
                             gcmToken);
 
-                    Response response = new OkHttpClient().newCall(request).execute();
-                    final int status = response.code();
+                    final int status = HttpClient.getInstance().execute(request, HttpClient.STATUS);
 
                     if (status >= 200 && status < 300) {
                         if (BuildConfig.DEBUG) {
@@ -0,0 +1,200 @@
+package com.tealium.digitalvelocity.parse;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Decides when each table may be queried next, persisting its last success, consecutive failures
+ * and next eligible time so that they survive process death.
+ * <p/>
+ * A successful table waits the sync rate plus up to a tenth more, so that devices which synced
+ * together drift apart. A failing table backs off exponentially from {@link #BASE_BACKOFF_MS},
+ * up to the sync rate, waiting a random time between half and all of the delay; a crowd of
+ * devices reconnecting at once after a network outage therefore retries spread out rather than
+ * together.
+ */
+final class SyncScheduler {
+
+    static final String SP_NAME = "sync_scheduler";
+    static final long BASE_BACKOFF_MS = 30000L;
+    static final long RECONCILE_INTERVAL_MS = 24 * 60 * 60000L;
+
+    private static final String KEY_LAST_SUCCESS = "_last_success";
+    private static final String KEY_FAILURES = "_failures";
+    private static final String KEY_NEXT = "_next";
+    private static final String KEY_LAST_RECONCILE = "_last_reconcile";
+
+    private final Context mContext;
+    private final Random mRandom;
+    private final Map<Table, State> mStates;
+
+    private SharedPreferences mSharedPreferences;
+
+    SyncScheduler(Context context) {
+        this(context, new Random());
+    }
+
+    SyncScheduler(Context context, Random random) {
+        mContext = context.getApplicationContext();
+        mRandom = random;
+        mStates = new EnumMap<>(Table.class);
+    }
+
+    /**
+     * @param syncRate the minimum time between successful syncs of a table, in milliseconds.
+     */
+    synchronized boolean isDue(Table table, long now, long syncRate) {
+        final State state = getState(table);
+        // A next time further away than could ever have been scheduled means the clock went back.
+        return now >= state.mNext || state.mNext - now > getMaxDelay(syncRate);
+    }
+
+    synchronized long getTimeUntilDue(Table table, long now) {
+        return Math.max(0, getState(table).mNext - now);
+    }
+
+    synchronized void onSuccess(Table table, long now, long syncRate) {
+        final State state = getState(table);
+        state.mLastSuccess = now;
+        state.mFailures = 0;
+        state.mNext = now + syncRate + nextLong(syncRate / 10 + 1);
+        save(table, state);
+    }
+
+    /**
+     * @return the time at which the table may be retried.
+     */
+    synchronized long onFailure(Table table, long now, long syncRate) {
+        final State state = getState(table);
+        state.mFailures++;
+
+        final long delay = getBackoff(state.mFailures, syncRate);
+        state.mNext = now + delay / 2 + nextLong(delay / 2 + 1);
+        save(table, state);
+
+        return state.mNext;
+    }
+
+    /**
+     * @return whether the table's ids are due to be compared against the server's.
+     */
+    synchronized boolean isReconcileDue(Table table, long now) {
+        final long last = getState(table).mLastReconcile;
+        return now - last >= RECONCILE_INTERVAL_MS || last > now;
+    }
+
+    synchronized void onReconciled(Table table, long now) {
+        getState(table).mLastReconcile = now;
+        getSharedPreferences().edit()
+                .putLong(table.name() + KEY_LAST_RECONCILE, now)
+                .apply();
+    }
+
+    /**
+     * Makes the tables due immediately, forgetting their failures.
+     */
+    synchronized void reset(Table... tables) {
+        final SharedPreferences.Editor editor = getSharedPreferences().edit();
+        for (Table table : tables) {
+            mStates.put(table, new State());
+            editor.remove(table.name() + KEY_LAST_SUCCESS)
+                    .remove(table.name() + KEY_FAILURES)
+                    .remove(table.name() + KEY_NEXT)
+                    .remove(table.name() + KEY_LAST_RECONCILE);
+        }
+        editor.apply();
+    }
+
+    /**
+     * Makes the tables due immediately, forgetting their failures but not when they last
+     * succeeded or were reconciled.
+     */
+    synchronized void expedite(Table... tables) {
+        for (Table table : tables) {
+            final State state = getState(table);
+            state.mFailures = 0;
+            state.mNext = 0;
+            save(table, state);
+        }
+    }
+
+    /**
+     * @return the earliest time after now that a failed table may be retried, or 0 if none is
+     * waiting.
+     */
+    synchronized long getNextRetryTime(long now) {
+        long next = 0;
+        for (Table table : Table.values()) {
+            final State state = getState(table);
+            if (state.mFailures > 0 && state.mNext > now && (next == 0 || state.mNext < next)) {
+                next = state.mNext;
+            }
+        }
+        return next;
+    }
+
+    synchronized long getLastSuccess(Table table) {
+        return getState(table).mLastSuccess;
+    }
+
+    synchronized int getFailureCount(Table table) {
+        return getState(table).mFailures;
+    }
+
+    static long getBackoff(int failures, long syncRate) {
+        final long max = getMaxDelay(syncRate);
+        // Shifting past the cap would overflow.
+        if (failures > 30) {
+            return max;
+        }
+        return Math.min(BASE_BACKOFF_MS << (failures - 1), max);
+    }
+
+    private static long getMaxDelay(long syncRate) {
+        return Math.max(syncRate + syncRate / 10 + 1, BASE_BACKOFF_MS);
+    }
+
+    private long nextLong(long bound) {
+        return (long) (mRandom.nextDouble() * bound);
+    }
+
+    private State getState(Table table) {
+        State state = mStates.get(table);
+        if (state == null) {
+            final SharedPreferences sp = getSharedPreferences();
+            state = new State();
+            state.mLastSuccess = sp.getLong(table.name() + KEY_LAST_SUCCESS, 0);
+            state.mFailures = sp.getInt(table.name() + KEY_FAILURES, 0);
+            state.mNext = sp.getLong(table.name() + KEY_NEXT, 0);
+            state.mLastReconcile = sp.getLong(table.name() + KEY_LAST_RECONCILE, 0);
+            mStates.put(table, state);
+        }
+        return state;
+    }
+
+    private void save(Table table, State state) {
+        getSharedPreferences().edit()
+                .putLong(table.name() + KEY_LAST_SUCCESS, state.mLastSuccess)
+                .putInt(table.name() + KEY_FAILURES, state.mFailures)
+                .putLong(table.name() + KEY_NEXT, state.mNext)
+                .apply();
+    }
+
+    private SharedPreferences getSharedPreferences() {
+        if (mSharedPreferences == null) {
+            mSharedPreferences = mContext.getSharedPreferences(SP_NAME, Context.MODE_PRIVATE);
+        }
+        return mSharedPreferences;
+    }
+
+    private static final class State {
+        private long mLastSuccess;
+        private int mFailures;
+        private long mNext;
+        private long mLastReconcile;
+    }
+}
@@ -16,7 +16,6 @@ enum Table {
     Contact(Constant.SP.KEY_LAST_SYNC_CONTACT);
 
     private final String spKey;
-    private long lastSyncTS;
 
     Table(String spKey) {
         this.spKey = spKey;
@@ -25,12 +24,4 @@ enum Table {
     public String getSPKey() {
         return spKey;
     }
-
-    public long getLastSyncTS() {
-        return lastSyncTS;
-    }
-
-    public void setLastSyncTS(long lastSyncTS) {
-        this.lastSyncTS = lastSyncTS;
-    }
 }
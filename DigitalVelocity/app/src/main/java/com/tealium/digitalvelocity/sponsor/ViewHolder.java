@@ -13,10 +13,10 @@ import android.widget.Toast;
 
 import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
-import com.squareup.picasso.RequestCreator;
 import com.tealium.digitalvelocity.BuildConfig;
 import com.tealium.digitalvelocity.R;
 import com.tealium.digitalvelocity.data.IOUtils;
+import com.tealium.digitalvelocity.data.Model;
 import com.tealium.digitalvelocity.data.gson.Sponsor;
 import com.tealium.digitalvelocity.util.Constant;
 import com.tealium.digitalvelocity.util.Util;
@@ -31,6 +31,7 @@ final class ViewHolder implements Animation.AnimationListener, Callback, View.On
     private final TextView mSubtitleLabel;
     private final View mDemoClickable;
     private final TextView mDemoLabel;
+    private final int mImageSize;
     private String mSponsorEmail;
     private String mSponsorEmailMessage;
     private String mSponsorId;
@@ -42,6 +43,7 @@ final class ViewHolder implements Animation.AnimationListener, Callback, View.On
         mSubtitleLabel = (TextView) view.findViewById(R.id.item_sponsor_label_subtitle);
         mDemoClickable = view.findViewById(R.id.item_sponsor_button_demo);
         mDemoLabel = (TextView) view.findViewById(R.id.item_sponsor_label_demo);
+        mImageSize = view.getResources().getDimensionPixelSize(R.dimen.item_image_size);
 
         view.findViewById(R.id.item_sponsor_button_location)
                 .setVisibility(View.GONE);
@@ -76,18 +78,19 @@ final class ViewHolder implements Animation.AnimationListener, Callback, View.On
         mSubtitleLabel.setText(sponsor.getDescription());
         mSubtitleLabel.setVisibility(Util.isEmptyOrNull(sponsor.getDescription()) ? View.GONE : View.VISIBLE);
 
-        File file = IOUtils.getImageFile(mLogoImageView.getContext(), mSponsorId);
+        File file = IOUtils.getImageFile(mLogoImageView.getContext(), mSponsorId, mImageSize);
         if (file != null) {
-            RequestCreator req = Picasso.with(mLogoImageView.getContext())
+            // Only the original until its thumbnail is made, which this then scales.
+            Picasso.with(mLogoImageView.getContext())
                     .load(file)
-                    .tag(sponsor.getId());
-
-            if (mLogoImageView.getWidth() > 0 && mLogoImageView.getHeight() > 0) {
-                req.resize(mLogoImageView.getWidth(), mLogoImageView.getHeight())
-                        .centerInside();
-            }
-
-            req.into(mLogoImageView, this);
+                    .tag(sponsor.getId())
+                    .resize(mImageSize, mImageSize)
+                    .centerInside()
+                    .onlyScaleDown()
+                    .into(mLogoImageView, this);
+        } else {
+            // On screen, so ahead of the logos of rows that are not.
+            Model.getInstance().prioritizeImageDownload(mSponsorId);
         }
     }
 
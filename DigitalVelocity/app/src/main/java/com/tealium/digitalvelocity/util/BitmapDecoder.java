@@ -0,0 +1,329 @@
+package com.tealium.digitalvelocity.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.BuildConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+/**
+ * Decodes image files no larger than they're shown, into bitmaps recycled through a pool, so
+ * that switching between large images neither churns the heap nor exhausts it.
+ * <p/>
+ * Bounds are read first, and the largest power-of-two sample size still at least as large as the
+ * requested size is used. Bitmaps handed back with {@link #release} are kept, bucketed by size,
+ * and decoded into again via {@link BitmapFactory.Options#inBitmap}: from KitKat any pooled
+ * bitmap at least as large will do, before that only one of the same dimensions, and only for
+ * unsampled decodes.
+ * <p/>
+ * Decoded bitmaps, pooled, still referenced or being decoded, are kept within
+ * {@link #getMaxBytes}: the pool is emptied first, and then images are sampled further down
+ * until they fit. The bytes of a decode are reserved before it starts, so that concurrent
+ * decodes can't each find room for themselves in the same space.
+ */
+public final class BitmapDecoder implements ComponentCallbacks2 {
+
+    private static BitmapDecoder sInstance;
+
+    private final long mMaxBytes;
+    /**
+     * Pooled bitmaps by allocation size, oldest first.
+     */
+    private final TreeMap<Long, LinkedList<Bitmap>> mPool;
+    /**
+     * Bitmaps handed out and not yet released; collected ones drop out by themselves.
+     */
+    private final Map<Bitmap, Boolean> mLive;
+    private long mPooledBytes;
+    // Of the decodes under way.
+    private long mReservedBytes;
+
+    public static synchronized BitmapDecoder getInstance() {
+        if (sInstance == null) {
+            // An eighth of the heap: 8 MB of the 64 MB a 1 GB device typically allows.
+            sInstance = new BitmapDecoder(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return sInstance;
+    }
+
+    public BitmapDecoder(long maxBytes) {
+        mMaxBytes = maxBytes;
+        mPool = new TreeMap<>();
+        mLive = new WeakHashMap<>();
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    /**
+     * Decodes on the calling thread.
+     *
+     * @param width  in pixels, of where the image is shown; 0 for no limit.
+     * @param height in pixels, of where the image is shown; 0 for no limit.
+     * @return a mutable bitmap, to be handed to {@link #release} once no longer shown.
+     * @throws IOException if the file can't be decoded, or is too large to fit even once
+     *                     sampled down sixteenfold.
+     */
+    public Bitmap decode(File file, int width, int height) throws IOException {
+        final long start = SystemClock.uptimeMillis();
+        final String path = file.getAbsolutePath();
+
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to decode " + path);
+        }
+
+        int sampleSize = getSampleSize(options.outWidth, options.outHeight, width, height);
+        final int maxSampleSize = Math.max(sampleSize, 16);
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+
+        while (true) {
+            final int sampledWidth = divideRoundingUp(options.outWidth, sampleSize);
+            final int sampledHeight = divideRoundingUp(options.outHeight, sampleSize);
+            // In long, as a very large image overflows an int.
+            final long byteCount = (long) sampledWidth * sampledHeight * 4;
+
+            options.inSampleSize = sampleSize;
+            final long reserved;
+            synchronized (this) {
+                options.inBitmap = takeReusable(sampledWidth, sampledHeight, sampleSize, byteCount);
+                reserved = options.inBitmap != null ? getByteCount(options.inBitmap) :
+                        fits(byteCount) ? byteCount : 0;
+                mReservedBytes += reserved;
+            }
+
+            if (reserved > 0) {
+                Bitmap bitmap = null;
+                try {
+                    bitmap = decode(path, options);
+                } finally {
+                    synchronized (this) {
+                        // Live from now on, or not at all if the decode failed.
+                        mReservedBytes -= reserved;
+                        if (bitmap != null) {
+                            mLive.put(bitmap, Boolean.TRUE);
+                        }
+                        publish();
+                    }
+                }
+
+                final Metrics metrics = Metrics.getInstance();
+                metrics.count("bitmap.decodes", 1);
+                metrics.record("bitmap.decode_ms", SystemClock.uptimeMillis() - start);
+                if (BuildConfig.DEBUG) {
+                    Log.v(Constant.TAG, "# Decoded " + file.getName() + " at 1/" + sampleSize +
+                            ", " + bitmap.getWidth() + "x" + bitmap.getHeight() +
+                            (options.inBitmap == null ? "" : ", reusing a pooled bitmap"));
+                }
+                return bitmap;
+            }
+
+            if (sampleSize >= maxSampleSize) {
+                throw new IOException(path + " doesn't fit in " + mMaxBytes + " bytes");
+            }
+            // Less detail rather than an OutOfMemoryError.
+            sampleSize *= 2;
+            Metrics.getInstance().count("bitmap.downsampled", 1);
+        }
+    }
+
+    /**
+     * Keeps the bitmap to decode into again. It must no longer be drawn.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+
+        mLive.remove(bitmap);
+
+        final long byteCount = getByteCount(bitmap);
+        final long budget = mMaxBytes - getLiveBytes() - mReservedBytes - byteCount;
+        if (!bitmap.isMutable() || budget < 0) {
+            bitmap.recycle();
+            publish();
+            return;
+        }
+
+        evict(budget);
+
+        LinkedList<Bitmap> bucket = mPool.get(byteCount);
+        if (bucket == null) {
+            mPool.put(byteCount, bucket = new LinkedList<>());
+        }
+        bucket.add(bitmap);
+        mPooledBytes += byteCount;
+        publish();
+    }
+
+    @Override
+    public synchronized void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            evict(0);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            evict(mPooledBytes / 2);
+        }
+        publish();
+    }
+
+    @Override
+    public synchronized void onLowMemory() {
+        evict(0);
+        publish();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    static int getSampleSize(int imageWidth, int imageHeight, int width, int height) {
+        int sampleSize = 1;
+        while ((width <= 0 || imageWidth / (sampleSize * 2) >= width) &&
+                (height <= 0 || imageHeight / (sampleSize * 2) >= height) &&
+                (width > 0 || height > 0)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Bitmap decode(String path, BitmapFactory.Options options) throws IOException {
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap didn't suit after all; it is left to be collected.
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeFile(path, options);
+        }
+
+        if (bitmap == null) {
+            throw new IOException("Unable to decode " + path);
+        }
+
+        if (options.inBitmap != null) {
+            Metrics.getInstance().count("bitmap.reused", 1);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return a pooled bitmap to decode into, removed from the pool, or null if none suits. Must
+     * hold the lock.
+     */
+    private Bitmap takeReusable(int width, int height, int sampleSize, long byteCount) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            // The smallest at least as large, if not wastefully so.
+            final Map.Entry<Long, LinkedList<Bitmap>> entry = mPool.ceilingEntry(byteCount);
+            if (entry != null && entry.getKey() <= byteCount * 2) {
+                return take(entry.getKey(), entry.getValue().getFirst());
+            }
+            return null;
+        }
+
+        if (sampleSize != 1) {
+            return null;
+        }
+
+        final LinkedList<Bitmap> bucket = mPool.get(byteCount);
+        if (bucket != null) {
+            for (Bitmap bitmap : bucket) {
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    return take(byteCount, bitmap);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return whether a new bitmap of the size fits, once as much of the pool as needed is
+     * recycled. Must hold the lock.
+     */
+    private boolean fits(long byteCount) {
+        final long available = mMaxBytes - getLiveBytes() - mReservedBytes - byteCount;
+        evict(available);
+        return available >= 0;
+    }
+
+    /**
+     * Recycles the oldest pooled bitmaps of each size, largest first, until the pool is no
+     * larger than the budget. Must hold the lock.
+     */
+    private void evict(long budget) {
+        final Iterator<Map.Entry<Long, LinkedList<Bitmap>>> buckets =
+                mPool.descendingMap().entrySet().iterator();
+        while (mPooledBytes > Math.max(0, budget) && buckets.hasNext()) {
+            final Map.Entry<Long, LinkedList<Bitmap>> bucket = buckets.next();
+            while (mPooledBytes > Math.max(0, budget) && !bucket.getValue().isEmpty()) {
+                bucket.getValue().removeFirst().recycle();
+                mPooledBytes -= bucket.getKey();
+                Metrics.getInstance().count("bitmap.evicted", 1);
+            }
+            if (bucket.getValue().isEmpty()) {
+                buckets.remove();
+            }
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private Bitmap take(long byteCount, Bitmap bitmap) {
+        final LinkedList<Bitmap> bucket = mPool.get(byteCount);
+        bucket.remove(bitmap);
+        if (bucket.isEmpty()) {
+            mPool.remove(byteCount);
+        }
+        mPooledBytes -= byteCount;
+        return bitmap;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private long getLiveBytes() {
+        long bytes = 0;
+        for (Bitmap bitmap : mLive.keySet()) {
+            if (bitmap != null && !bitmap.isRecycled()) {
+                bytes += getByteCount(bitmap);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void publish() {
+        final Metrics metrics = Metrics.getInstance();
+        metrics.set("bitmap.pooled_bytes", mPooledBytes);
+        metrics.set("bitmap.live_bytes", getLiveBytes());
+    }
+
+    private static long getByteCount(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT ?
+                bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    private static int divideRoundingUp(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
@@ -7,6 +7,8 @@ public final class Constant {
 
     public final static String VIP_PREFERENCES = "vip_preferences";
     public final static String AGENDA_FAVORITES = "agenda_favorites";
+    public final static String IMAGE_MANIFEST = "image_manifest";
+    public final static String IMAGE_URLS = "image_urls";
 
     public static class IMG_QUEUE {
         public static final String NAME = "img_queue";
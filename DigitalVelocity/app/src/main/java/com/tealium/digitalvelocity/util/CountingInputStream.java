@@ -0,0 +1,61 @@
+package com.tealium.digitalvelocity.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read or skipped through it, and the time spent waiting on the wrapped stream
+ * for them. Not thread-safe, like the streams it wraps.
+ */
+public final class CountingInputStream extends FilterInputStream {
+
+    private long mCount;
+    private long mReadNanos;
+
+    public CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        final long start = System.nanoTime();
+        final int b = super.read();
+        mReadNanos += System.nanoTime() - start;
+        if (b != -1) {
+            mCount++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        final long start = System.nanoTime();
+        final int len = super.read(buffer, offset, count);
+        mReadNanos += System.nanoTime() - start;
+        if (len > 0) {
+            mCount += len;
+        }
+        return len;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long start = System.nanoTime();
+        final long skipped = super.skip(n);
+        mReadNanos += System.nanoTime() - start;
+        mCount += skipped;
+        return skipped;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return the time spent in the wrapped stream, as opposed to consuming what it returned.
+     */
+    public long getReadNanos() {
+        return mReadNanos;
+    }
+}
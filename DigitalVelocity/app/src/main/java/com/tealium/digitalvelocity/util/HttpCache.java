@@ -0,0 +1,299 @@
+package com.tealium.digitalvelocity.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk cache of response validators (ETag, Last-Modified), and optionally bodies, used to make
+ * repeat queries conditional.
+ * <p/>
+ * Each entry is one file named after a hash of its key. Reading an entry touches its file, so
+ * modification times give the LRU order across restarts; once the files exceed the size bound
+ * the least recently used are deleted.
+ */
+public final class HttpCache {
+
+    public static final long MAX_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static HttpCache sInstance;
+
+    private final File mDir;
+    private final long mMaxBytes;
+    private final LinkedHashMap<String, Long> mSizes;
+
+    private boolean mIsLoaded;
+    private long mTotalBytes;
+    private int mHitCount;
+    private int mMissCount;
+
+    public static synchronized HttpCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new HttpCache(new File(context.getCacheDir(), "http"), MAX_SIZE_BYTES);
+        }
+        return sInstance;
+    }
+
+    public HttpCache(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+        mSizes = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the entry stored under the key, or null.
+     */
+    public synchronized Entry get(String key) {
+        load();
+
+        final String name = hash(key);
+        if (!mSizes.containsKey(name)) {
+            return null;
+        }
+
+        final File file = new File(mDir, name);
+
+        try {
+            final DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)));
+            try {
+                if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) {
+                    return null;
+                }
+
+                final String url = in.readUTF();
+                final String etag = readNullable(in);
+                final String lastModified = readNullable(in);
+                final String metadata = readNullable(in);
+                final byte[] body = in.readBoolean() ? new byte[in.readInt()] : null;
+                if (body != null) {
+                    in.readFully(body);
+                }
+
+                // Touch, in memory and on disk.
+                mSizes.get(name);
+                file.setLastModified(System.currentTimeMillis());
+                return new Entry(url, etag, lastModified, metadata, body);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Dropping unreadable cache entry " + key, e);
+            remove(name);
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, Entry entry) {
+        load();
+
+        if (!mDir.isDirectory() && !mDir.mkdirs()) {
+            Log.e(Constant.TAG, "! Unable to create " + mDir.getAbsolutePath());
+            return;
+        }
+
+        final String name = hash(key);
+        final File temp = new File(mDir, name + ".tmp");
+
+        try {
+            final DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(key);
+                out.writeUTF(entry.getUrl());
+                writeNullable(out, entry.getETag());
+                writeNullable(out, entry.getLastModified());
+                writeNullable(out, entry.getMetadata());
+                out.writeBoolean(entry.mBody != null);
+                if (entry.mBody != null) {
+                    out.writeInt(entry.mBody.length);
+                    out.write(entry.mBody);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Log.e(Constant.TAG, "! Unable to cache " + key, e);
+            temp.delete();
+            return;
+        }
+
+        final File file = new File(mDir, name);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+
+        final Long previous = mSizes.put(name, file.length());
+        mTotalBytes += file.length() - (previous == null ? 0 : previous);
+        trim();
+    }
+
+    public synchronized void recordHit() {
+        mHitCount++;
+    }
+
+    public synchronized void recordMiss() {
+        mMissCount++;
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized int getEntryCount() {
+        load();
+        return mSizes.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        load();
+        return mTotalBytes;
+    }
+
+    public synchronized void clear() {
+        load();
+        for (String name : mSizes.keySet().toArray(new String[mSizes.size()])) {
+            remove(name);
+        }
+    }
+
+    private void load() {
+        if (mIsLoaded) {
+            return;
+        }
+        mIsLoaded = true;
+
+        final File[] files = mDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                final long l = lhs.lastModified();
+                final long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (file.getName().endsWith(".tmp")) {
+                file.delete();
+            } else {
+                mSizes.put(file.getName(), file.length());
+                mTotalBytes += file.length();
+            }
+        }
+
+        trim();
+    }
+
+    private void trim() {
+        final Iterator<Map.Entry<String, Long>> it = mSizes.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && it.hasNext()) {
+            final Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            mTotalBytes -= eldest.getValue();
+            new File(mDir, eldest.getKey()).delete();
+        }
+    }
+
+    private void remove(String name) {
+        final Long size = mSizes.remove(name);
+        if (size != null) {
+            mTotalBytes -= size;
+        }
+        new File(mDir, name).delete();
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            final StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16))
+                        .append(Character.forDigit(b & 0xF, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static final class Entry {
+        private final String mUrl;
+        private final String mETag;
+        private final String mLastModified;
+        private final String mMetadata;
+        private final byte[] mBody;
+
+        /**
+         * @param metadata caller-defined, e.g. where to continue after this response.
+         * @param body     null to keep only the validators.
+         */
+        public Entry(String url, String etag, String lastModified, String metadata, byte[] body) {
+            mUrl = url;
+            mETag = etag;
+            mLastModified = lastModified;
+            mMetadata = metadata;
+            mBody = body;
+        }
+
+        public String getUrl() {
+            return mUrl;
+        }
+
+        public String getETag() {
+            return mETag;
+        }
+
+        public String getLastModified() {
+            return mLastModified;
+        }
+
+        public String getMetadata() {
+            return mMetadata;
+        }
+
+        public byte[] getBody() {
+            return mBody;
+        }
+    }
+}
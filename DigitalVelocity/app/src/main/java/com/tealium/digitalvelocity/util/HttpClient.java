@@ -0,0 +1,186 @@
+package com.tealium.digitalvelocity.util;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.Response;
+import com.tealium.digitalvelocity.BuildConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide HTTP layer shared by the Parse sync and the image downloads.
+ * <p/>
+ * One {@link OkHttpClient} keeps connections (and their TLS sessions) alive between requests,
+ * negotiates HTTP/2 or SPDY where the server offers it, and transparently requests and inflates
+ * gzip bodies. Requests to the same host are limited to {@link #MAX_REQUESTS_PER_HOST} at a
+ * time, and each one's duration and body size is recorded.
+ */
+public final class HttpClient {
+
+    public static final long CONNECT_TIMEOUT_MS = 15000;
+    public static final long READ_TIMEOUT_MS = 20000;
+    public static final long WRITE_TIMEOUT_MS = 20000;
+    public static final int MAX_IDLE_CONNECTIONS = 5;
+    public static final long KEEP_ALIVE_MS = 5 * 60 * 1000;
+    public static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    public static final BodyReader<String> STRING = new BodyReader<String>() {
+        @Override
+        public String read(Response response, InputStream body) throws IOException {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            copy(body, out);
+            return out.toString("UTF-8");
+        }
+    };
+
+    /**
+     * Discards the body and returns the status code.
+     */
+    public static final BodyReader<Integer> STATUS = new BodyReader<Integer>() {
+        @Override
+        public Integer read(Response response, InputStream body) throws IOException {
+            return response.code();
+        }
+    };
+
+    private static HttpClient sInstance;
+
+    private final OkHttpClient mClient;
+    private final int mMaxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> mHostPermits;
+    private final AtomicLong mRequestCount;
+    private final AtomicLong mBytesReceived;
+    private final AtomicLong mTimeSpentMs;
+
+    public static synchronized HttpClient getInstance() {
+        if (sInstance == null) {
+            final OkHttpClient client = new OkHttpClient();
+            client.setConnectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            client.setReadTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            client.setWriteTimeout(WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MS));
+            client.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.SPDY_3, Protocol.HTTP_1_1));
+            sInstance = new HttpClient(client, MAX_REQUESTS_PER_HOST);
+        }
+        return sInstance;
+    }
+
+    public HttpClient(OkHttpClient client, int maxRequestsPerHost) {
+        mClient = client;
+        mMaxRequestsPerHost = maxRequestsPerHost;
+        mHostPermits = new ConcurrentHashMap<>();
+        mRequestCount = new AtomicLong();
+        mBytesReceived = new AtomicLong();
+        mTimeSpentMs = new AtomicLong();
+    }
+
+    /**
+     * Performs the request on the calling thread, waiting first if the host already has
+     * {@link #MAX_REQUESTS_PER_HOST} requests in flight.
+     *
+     * @param reader consumes the body before the connection is released.
+     */
+    public <T> T execute(Request request, BodyReader<T> reader) throws IOException {
+
+        final Semaphore permits = getPermits(request.url().getHost());
+        permits.acquireUninterruptibly();
+
+        final long start = SystemClock.uptimeMillis();
+        CountingInputStream body = null;
+        int status = -1;
+
+        try {
+            final Response response = mClient.newCall(request).execute();
+            status = response.code();
+            body = new CountingInputStream(response.body().byteStream());
+            return reader.read(response, body);
+        } finally {
+            if (body != null) {
+                body.close();
+            }
+            permits.release();
+
+            final long elapsed = SystemClock.uptimeMillis() - start;
+            final long bytes = body == null ? 0 : body.getCount();
+            mRequestCount.incrementAndGet();
+            mBytesReceived.addAndGet(bytes);
+            mTimeSpentMs.addAndGet(elapsed);
+
+            final Metrics metrics = Metrics.getInstance();
+            metrics.count("http.requests", 1);
+            metrics.count("http.bytes", bytes);
+            metrics.record("http.request_ms", elapsed);
+            if (status == -1) {
+                metrics.count("http.failures", 1);
+            }
+
+            if (BuildConfig.DEBUG) {
+                Log.v(Constant.TAG, String.format(Locale.ROOT, "# %s %s: %d, %d ms, %d bytes",
+                        request.method(), request.urlString(), status, elapsed, bytes));
+            }
+        }
+    }
+
+    public OkHttpClient getClient() {
+        return mClient;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return body bytes read by {@link BodyReader}s, after gzip inflation.
+     */
+    public long getBytesReceived() {
+        return mBytesReceived.get();
+    }
+
+    public long getTimeSpentMs() {
+        return mTimeSpentMs.get();
+    }
+
+    private Semaphore getPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if (permits == null) {
+            final Semaphore created = new Semaphore(mMaxRequestsPerHost, true);
+            permits = mHostPermits.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    public static long copy(InputStream in, OutputStream out) throws IOException {
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+            total += len;
+        }
+        return total;
+    }
+
+    public interface BodyReader<T> {
+        T read(Response response, InputStream body) throws IOException;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tealium.digitalvelocity.util;
+
+/**
+ * Parses and formats Parse's UTC timestamps, "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'".
+ * <p/>
+ * Unlike {@link java.text.SimpleDateFormat} these are plain arithmetic over the characters, so
+ * they are safe to call from any thread and parsing allocates nothing.
+ */
+public final class Iso8601 {
+
+    private static final int LENGTH = 24;
+    private static final long MILLIS_PER_DAY = 86400000L;
+
+    private Iso8601() {
+    }
+
+    /**
+     * @return milliseconds since the epoch.
+     * @throws IllegalArgumentException if the value is not a UTC timestamp.
+     */
+    public static long parse(CharSequence s) {
+        final long millis = parse(s, Long.MIN_VALUE);
+        if (millis == Long.MIN_VALUE) {
+            throw new IllegalArgumentException("Not an ISO-8601 timestamp: " + s);
+        }
+        return millis;
+    }
+
+    /**
+     * Accepts any number of fractional digits, or none, of which milliseconds are kept.
+     *
+     * @return milliseconds since the epoch, or the default if the value is not a UTC timestamp.
+     */
+    public static long parse(CharSequence s, long defaultValue) {
+        if (s == null || s.length() < 20) {
+            return defaultValue;
+        }
+
+        final int year = digits(s, 0, 4);
+        final int month = digits(s, 5, 2);
+        final int day = digits(s, 8, 2);
+        final int hour = digits(s, 11, 2);
+        final int minute = digits(s, 14, 2);
+        final int second = digits(s, 17, 2);
+
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month) ||
+                hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 ||
+                s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T' ||
+                s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return defaultValue;
+        }
+
+        int i = 19;
+        int millis = 0;
+        if (s.charAt(i) == '.') {
+            int scale = 100;
+            while (++i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') {
+                millis += (s.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+            if (i == 20) {
+                return defaultValue;
+            }
+        }
+
+        if (i != s.length() - 1 || s.charAt(i) != 'Z') {
+            return defaultValue;
+        }
+
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY +
+                hour * 3600000L + minute * 60000L + second * 1000L + millis;
+    }
+
+    public static String format(long millis) {
+        return format(millis, new StringBuilder(LENGTH)).toString();
+    }
+
+    /**
+     * Appends the timestamp, always with milliseconds, to the builder.
+     *
+     * @return the builder.
+     */
+    public static StringBuilder format(long millis, StringBuilder out) {
+        long days = millis / MILLIS_PER_DAY;
+        long ms = millis % MILLIS_PER_DAY;
+        if (ms < 0) {
+            ms += MILLIS_PER_DAY;
+            days--;
+        }
+
+        // Civil from days, counting 400-year eras that start on March 1st.
+        final long z = days + 719468;
+        final long era = (z >= 0 ? z : z - 146096) / 146097;
+        final long dayOfEra = z - era * 146097;
+        final long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        final long mp = (5 * dayOfYear + 2) / 153;
+        final int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        final int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        final int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        append(out, year, 4).append('-');
+        append(out, month, 2).append('-');
+        append(out, day, 2).append('T');
+        append(out, (int) (ms / 3600000L), 2).append(':');
+        append(out, (int) (ms / 60000L % 60), 2).append(':');
+        append(out, (int) (ms / 1000L % 60), 2).append('.');
+        append(out, (int) (ms % 1000L), 3).append('Z');
+        return out;
+    }
+
+    /**
+     * @return the value of the digits, or -1 if any is not a digit.
+     */
+    private static int digits(CharSequence s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static StringBuilder append(StringBuilder out, int value, int width) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            out.append((char) ('0' + value / divisor % 10));
+        }
+        return out;
+    }
+
+    private static int pow10(int exponent) {
+        int value = 1;
+        while (exponent-- > 0) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * @return days since 1970-01-01 of the proleptic Gregorian date.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,209 @@
+package com.tealium.digitalvelocity.util;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters and histograms describing what sync, storage and image downloads cost
+ * on this device, shown by the debug screen and exported with the {@code ZipEvent} bundle.
+ * <p/>
+ * Names are dotted, e.g. "sync.Event.network_ms"; the last component carries the unit.
+ * Histograms keep fixed, roughly logarithmic buckets, so recording never allocates and
+ * percentiles are reported as the upper bound of their bucket.
+ */
+public final class Metrics {
+
+    static final long[] BUCKET_BOUNDS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    private static final Metrics sInstance = new Metrics();
+
+    private final ConcurrentMap<String, AtomicLong> mCounters;
+    private final ConcurrentMap<String, Histogram> mHistograms;
+    private final long mCreatedAt;
+
+    public static Metrics getInstance() {
+        return sInstance;
+    }
+
+    Metrics() {
+        mCounters = new ConcurrentHashMap<>();
+        mHistograms = new ConcurrentHashMap<>();
+        mCreatedAt = System.currentTimeMillis();
+    }
+
+    public void count(String name, long delta) {
+        getCounter(name).addAndGet(delta);
+    }
+
+    /**
+     * Sets a gauge, such as a queue depth; it is listed with the counters.
+     */
+    public void set(String name, long value) {
+        getCounter(name).set(value);
+    }
+
+    public void record(String name, long value) {
+        Histogram histogram = mHistograms.get(name);
+        if (histogram == null) {
+            final Histogram created = new Histogram();
+            histogram = mHistograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        histogram.record(value);
+    }
+
+    public long getCount(String name) {
+        final AtomicLong counter = mCounters.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * @return the histogram, or null if nothing has been recorded under the name.
+     */
+    public Histogram getHistogram(String name) {
+        return mHistograms.get(name);
+    }
+
+    /**
+     * @return one line per metric, in name order.
+     */
+    public List<String> describe() {
+        final Map<String, String> lines = new TreeMap<>();
+
+        for (Map.Entry<String, AtomicLong> entry : mCounters.entrySet()) {
+            lines.put(entry.getKey(), entry.getKey() + ": " + entry.getValue().get());
+        }
+
+        for (Map.Entry<String, Histogram> entry : mHistograms.entrySet()) {
+            final Histogram h = entry.getValue();
+            synchronized (h) {
+                lines.put(entry.getKey(), String.format(Locale.ROOT,
+                        "%s: n=%d avg=%d p50=%d p90=%d p99=%d max=%d",
+                        entry.getKey(), h.mCount, h.getMean(), h.getPercentile(0.5),
+                        h.getPercentile(0.9), h.getPercentile(0.99), h.mMax));
+            }
+        }
+
+        return new ArrayList<>(lines.values());
+    }
+
+    public JSONObject toJSON() throws JSONException {
+        final JSONObject counters = new JSONObject();
+        for (Map.Entry<String, AtomicLong> entry : mCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+
+        final JSONObject histograms = new JSONObject();
+        for (Map.Entry<String, Histogram> entry : mHistograms.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().toJSON());
+        }
+
+        return new JSONObject()
+                .put("since", Iso8601.format(mCreatedAt))
+                .put("exported", Iso8601.format(System.currentTimeMillis()))
+                .put("counters", counters)
+                .put("histograms", histograms);
+    }
+
+    private AtomicLong getCounter(String name) {
+        AtomicLong counter = mCounters.get(name);
+        if (counter == null) {
+            final AtomicLong created = new AtomicLong();
+            counter = mCounters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public static final class Histogram {
+        private final long[] mBuckets;
+        private long mCount;
+        private long mSum;
+        private long mMin;
+        private long mMax;
+
+        Histogram() {
+            // The last bucket holds everything above the largest bound.
+            mBuckets = new long[BUCKET_BOUNDS.length + 1];
+        }
+
+        public synchronized void record(long value) {
+            int i = 0;
+            while (i < BUCKET_BOUNDS.length && value > BUCKET_BOUNDS[i]) {
+                i++;
+            }
+            mBuckets[i]++;
+
+            mMin = mCount == 0 ? value : Math.min(mMin, value);
+            mMax = mCount == 0 ? value : Math.max(mMax, value);
+            mCount++;
+            mSum += value;
+        }
+
+        public synchronized long getCount() {
+            return mCount;
+        }
+
+        public synchronized long getSum() {
+            return mSum;
+        }
+
+        public synchronized long getMean() {
+            return mCount == 0 ? 0 : mSum / mCount;
+        }
+
+        /**
+         * @param fraction between 0 and 1.
+         * @return the upper bound of the bucket holding the percentile, or the maximum if lower.
+         */
+        public synchronized long getPercentile(double fraction) {
+            if (mCount == 0) {
+                return 0;
+            }
+
+            final long rank = Math.max(1, (long) Math.ceil(fraction * mCount));
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return i < BUCKET_BOUNDS.length ? Math.min(BUCKET_BOUNDS[i], mMax) : mMax;
+                }
+            }
+            return mMax;
+        }
+
+        private synchronized JSONObject toJSON() throws JSONException {
+            final JSONObject buckets = new JSONObject();
+            for (int i = 0; i < mBuckets.length; i++) {
+                if (mBuckets[i] != 0) {
+                    buckets.put(i < BUCKET_BOUNDS.length ?
+                            "le" + BUCKET_BOUNDS[i] : "gt" + BUCKET_BOUNDS[i - 1], mBuckets[i]);
+                }
+            }
+
+            return new JSONObject()
+                    .put("count", mCount)
+                    .put("sum", mSum)
+                    .put("min", mMin)
+                    .put("max", mMax)
+                    .put("p50", getPercentile(0.5))
+                    .put("p90", getPercentile(0.9))
+                    .put("p99", getPercentile(0.99))
+                    .put("buckets", buckets);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.tealium.digitalvelocity.util;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.tealium.digitalvelocity.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs application initializers once their dependencies have finished, either on a background
+ * thread or posted to the main thread, and records when and where each one ran.
+ * <p/>
+ * Dependencies must be added before their dependents, so the graph cannot contain cycles. The
+ * debug build logs the trace once every initializer has finished.
+ */
+public final class StartupGraph {
+
+    private final long mCreatedAt;
+    private final Handler mMainHandler;
+    private final Map<String, Node> mNodes;
+    private final List<String> mTrace;
+
+    private int mRemaining;
+    private boolean mIsStarted;
+
+    public StartupGraph() {
+        mCreatedAt = SystemClock.uptimeMillis();
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mNodes = new LinkedHashMap<>();
+        mTrace = new ArrayList<>();
+    }
+
+    /**
+     * Runs the task immediately on the calling thread, recording it in the trace.
+     */
+    public void run(String name, Runnable task) {
+        final long start = SystemClock.uptimeMillis();
+        task.run();
+        record(name, start);
+    }
+
+    public StartupGraph addBackground(String name, Runnable task, String... dependencies) {
+        return add(new Node(name, task, false), dependencies);
+    }
+
+    /**
+     * Adds a task posted to the main thread, behind any work already queued there.
+     */
+    public StartupGraph addMain(String name, Runnable task, String... dependencies) {
+        return add(new Node(name, task, true), dependencies);
+    }
+
+    public synchronized void start() {
+        if (mIsStarted) {
+            throw new IllegalStateException("Already started");
+        }
+
+        mIsStarted = true;
+        mRemaining = mNodes.size();
+
+        for (Node node : mNodes.values()) {
+            if (node.mPending == 0) {
+                dispatch(node);
+            }
+        }
+    }
+
+    private synchronized StartupGraph add(Node node, String... dependencies) {
+        if (mIsStarted) {
+            throw new IllegalStateException("Already started");
+        }
+
+        if (mNodes.containsKey(node.mName)) {
+            throw new IllegalArgumentException("Duplicate initializer " + node.mName);
+        }
+
+        for (String dependency : dependencies) {
+            final Node parent = mNodes.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException(node.mName + " depends on unknown " + dependency);
+            }
+            parent.mDependents.add(node);
+            node.mPending++;
+        }
+
+        mNodes.put(node.mName, node);
+        return this;
+    }
+
+    private void dispatch(final Node node) {
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                final long start = SystemClock.uptimeMillis();
+                try {
+                    node.mTask.run();
+                } catch (RuntimeException e) {
+                    Log.e(Constant.TAG, "! Initializer " + node.mName + " failed", e);
+                }
+                record(node.mName, start);
+                onFinished(node);
+            }
+        };
+
+        if (node.mIsMainThread) {
+            mMainHandler.post(runnable);
+        } else {
+            AsyncTask.THREAD_POOL_EXECUTOR.execute(runnable);
+        }
+    }
+
+    private synchronized void onFinished(Node node) {
+        for (Node dependent : node.mDependents) {
+            if (--dependent.mPending == 0) {
+                dispatch(dependent);
+            }
+        }
+
+        if (--mRemaining == 0 && BuildConfig.DEBUG) {
+            final StringBuilder trace = new StringBuilder("Startup trace (start, duration, thread):");
+            for (String line : mTrace) {
+                trace.append("\n    ").append(line);
+            }
+            Log.i(Constant.TAG, trace.toString());
+        }
+    }
+
+    private synchronized void record(String name, long start) {
+        final long end = SystemClock.uptimeMillis();
+        mTrace.add(String.format(Locale.ROOT, "%-12s +%4d ms %4d ms  %s",
+                name, start - mCreatedAt, end - start, Thread.currentThread().getName()));
+    }
+
+    private static final class Node {
+        private final String mName;
+        private final Runnable mTask;
+        private final boolean mIsMainThread;
+        private final List<Node> mDependents;
+        private int mPending;
+
+        private Node(String name, Runnable task, boolean isMainThread) {
+            mName = name;
+            mTask = task;
+            mIsMainThread = isMainThread;
+            mDependents = new ArrayList<>(2);
+        }
+    }
+}
@@ -151,7 +151,7 @@ public final class Util {
     public static void attemptToStartMonitoringBeacons(Context context) {
         final Model model = Model.getInstance();
         final int hour = Calendar.getInstance().get(Calendar.HOUR_OF_DAY);
-        EstimoteManager em = EstimoteManager.getInstance();
+        EstimoteManager em = model.getEstimoteManager();
         if (!em.isListening() &&
                 AlarmReceiver.isInMonitoringWindow() &&
                 model.getMonitoringStartHour() <= hour &&
@@ -0,0 +1,133 @@
+package com.tealium.digitalvelocity.view;
+
+import android.content.Context;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.widget.ImageView;
+
+/**
+ * Shows its image fitted to the view, to be pinched up to {@link #MAX_ZOOM} times larger,
+ * dragged around while zoomed, and double tapped to fit again.
+ */
+public final class ZoomImageView extends ImageView {
+
+    private static final float MAX_ZOOM = 4f;
+
+    private final Matrix mMatrix = new Matrix();
+    private final RectF mBounds = new RectF();
+    private final ScaleGestureDetector mScaleDetector;
+    private final GestureDetector mGestureDetector;
+    private float mFitScale = 1f;
+
+    public ZoomImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        setScaleType(ScaleType.MATRIX);
+
+        mScaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        final float scale = getScale();
+                        final float target = Math.max(mFitScale, Math.min(
+                                mFitScale * MAX_ZOOM, scale * detector.getScaleFactor()));
+                        mMatrix.postScale(target / scale, target / scale,
+                                detector.getFocusX(), detector.getFocusY());
+                        apply();
+                        return true;
+                    }
+                });
+
+        mGestureDetector = new GestureDetector(context,
+                new GestureDetector.SimpleOnGestureListener() {
+                    @Override
+                    public boolean onScroll(
+                            MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                        mMatrix.postTranslate(-distanceX, -distanceY);
+                        apply();
+                        return true;
+                    }
+
+                    @Override
+                    public boolean onDoubleTap(MotionEvent e) {
+                        fit();
+                        return true;
+                    }
+                });
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        super.setImageDrawable(drawable);
+        fit();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        fit();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (getDrawable() == null) {
+            return super.onTouchEvent(event);
+        }
+        mScaleDetector.onTouchEvent(event);
+        if (!mScaleDetector.isInProgress()) {
+            mGestureDetector.onTouchEvent(event);
+        }
+        return true;
+    }
+
+    private void fit() {
+        final Drawable drawable = getDrawable();
+        final int width = getWidth();
+        final int height = getHeight();
+        // Called from the super constructor, before the fields are set.
+        if (mMatrix == null || drawable == null || width == 0 || height == 0 ||
+                drawable.getIntrinsicWidth() <= 0 || drawable.getIntrinsicHeight() <= 0) {
+            return;
+        }
+
+        mBounds.set(0, 0, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+        mMatrix.setRectToRect(mBounds, new RectF(0, 0, width, height), Matrix.ScaleToFit.CENTER);
+        mFitScale = getScale();
+        setImageMatrix(mMatrix);
+    }
+
+    /**
+     * Keeps the image over as much of the view as it can cover, and centered where it can't.
+     */
+    private void apply() {
+        final Drawable drawable = getDrawable();
+        mBounds.set(0, 0, drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
+        mMatrix.mapRect(mBounds);
+
+        mMatrix.postTranslate(
+                getCorrection(mBounds.left, mBounds.right, getWidth()),
+                getCorrection(mBounds.top, mBounds.bottom, getHeight()));
+        setImageMatrix(mMatrix);
+    }
+
+    private float getScale() {
+        final float[] values = new float[9];
+        mMatrix.getValues(values);
+        return values[Matrix.MSCALE_X];
+    }
+
+    private static float getCorrection(float start, float end, int size) {
+        if (end - start <= size) {
+            return (size - (end - start)) / 2 - start;
+        } else if (start > 0) {
+            return -start;
+        } else if (end < size) {
+            return size - end;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,119 @@
+package com.tealium.digitalvelocity.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
+import com.tealium.digitalvelocity.data.gson.ParseItem;
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times {@link ItemCodec} against the reflective Gson JSON that items were stored as before, over
+ * the agenda and sponsor tables, encoding and then decoding every item.
+ */
+public class ItemCodecBenchmark {
+
+    private static final int CORPUS_SIZE = 10000;
+    private static final int CATEGORIES = 10;
+    private static final int ROUNDS = 5;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void agenda() throws Exception {
+        final Map<String, Category> categories = SyntheticItems.createCategories(CATEGORIES);
+        run("agenda items", AgendaItem.class,
+                SyntheticItems.createAgenda(CORPUS_SIZE, categories), categories);
+    }
+
+    @Test
+    public void sponsors() throws Exception {
+        final Map<String, Category> categories = SyntheticItems.createCategories(CATEGORIES);
+        run("sponsors", Sponsor.class,
+                SyntheticItems.createSponsors(CORPUS_SIZE, categories), categories);
+    }
+
+    private static <T extends ParseItem> void run(String name, Class<T> itemClass, List<T> corpus,
+                                                  Map<String, Category> categories)
+            throws Exception {
+        final Gson gson = new Gson();
+        final ItemCodec<T> codec = ItemCodec.create(itemClass,
+                JsonAdapters.register(new GsonBuilder()).create(), categories);
+
+        final byte[][] json = new byte[corpus.size()][];
+        final byte[][] binary = new byte[corpus.size()][];
+        long jsonBytes = 0;
+        long binaryBytes = 0;
+
+        long jsonEncodeNanos = Long.MAX_VALUE;
+        long encodeNanos = Long.MAX_VALUE;
+        long jsonDecodeNanos = Long.MAX_VALUE;
+        long decodeNanos = Long.MAX_VALUE;
+
+        // The best of several rounds, so that the JIT has warmed up both.
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < json.length; i++) {
+                json[i] = gson.toJson(corpus.get(i)).getBytes(UTF_8);
+            }
+            jsonEncodeNanos = Math.min(jsonEncodeNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            for (int i = 0; i < binary.length; i++) {
+                binary[i] = codec.encode(corpus.get(i));
+            }
+            encodeNanos = Math.min(encodeNanos, System.nanoTime() - start);
+
+            long jsonSum = 0;
+            start = System.nanoTime();
+            for (byte[] payload : json) {
+                jsonSum += gson.fromJson(new InputStreamReader(
+                        new ByteArrayInputStream(payload), UTF_8), itemClass).getUpdatedAt();
+            }
+            jsonDecodeNanos = Math.min(jsonDecodeNanos, System.nanoTime() - start);
+
+            long sum = 0;
+            start = System.nanoTime();
+            for (byte[] payload : binary) {
+                sum += codec.decode(ByteBuffer.wrap(payload)).getUpdatedAt();
+            }
+            decodeNanos = Math.min(decodeNanos, System.nanoTime() - start);
+
+            assertEquals(jsonSum, sum);
+        }
+
+        for (int i = 0; i < corpus.size(); i++) {
+            jsonBytes += json[i].length;
+            binaryBytes += binary[i].length;
+
+            final T decoded = codec.decode(ByteBuffer.wrap(binary[i]));
+            assertEquals(corpus.get(i).getId(), decoded.getId());
+            assertEquals(corpus.get(i).getCreatedAt(), decoded.getCreatedAt());
+        }
+
+        report(name, "encode", jsonEncodeNanos, encodeNanos);
+        report(name, "decode", jsonDecodeNanos, decodeNanos);
+        System.out.println(String.format(java.util.Locale.ROOT,
+                "ItemCodec size of %d %s: Gson %d KB, ItemCodec %d KB (%.1fx smaller)",
+                corpus.size(), name, jsonBytes / 1024, binaryBytes / 1024,
+                jsonBytes / (double) binaryBytes));
+    }
+
+    private static void report(String name, String operation, long referenceNanos, long nanos) {
+        System.out.println(String.format(java.util.Locale.ROOT,
+                "ItemCodec %s of %d %s: Gson %d ms, ItemCodec %d ms (%.1fx)",
+                operation, CORPUS_SIZE, name, referenceNanos / 1000000L, nanos / 1000000L,
+                referenceNanos / (double) nanos));
+    }
+}
@@ -0,0 +1,152 @@
+package com.tealium.digitalvelocity.data;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.JsonAdapters;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times a cold load of a synthetic 5k-row agenda: the per-item JSON files read with reflective
+ * Gson that stores replaced, a store of legacy JSON payloads read reflectively and with the typed
+ * {@link JsonAdapters}, and a store of binary records decoded on the caller and on a pool sized
+ * to the cores.
+ */
+public class RecordStoreBenchmark {
+
+    private static final int CORPUS_SIZE = 5000;
+    private static final int CATEGORIES = 10;
+    private static final int ROUNDS = 5;
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void coldLoad() throws Exception {
+        final Map<String, Category> categories = SyntheticItems.createCategories(CATEGORIES);
+        final List<AgendaItem> corpus = SyntheticItems.createAgenda(CORPUS_SIZE, categories);
+        final Gson reflective = new Gson();
+        final Gson typed = JsonAdapters.register(new GsonBuilder()).create();
+
+        final File filesDir = mFolder.newFolder("files");
+        for (AgendaItem item : corpus) {
+            final Writer out = new FileWriter(new File(filesDir, item.getId() + ".agenda"));
+            try {
+                reflective.toJson(item, out);
+            } finally {
+                out.close();
+            }
+        }
+
+        final RecordStore<AgendaItem> legacyReflective = new RecordStore<>(
+                mFolder.newFile("legacy-reflective" + RecordStore.FILE_SUFFIX),
+                ItemCodec.create(AgendaItem.class, reflective, categories));
+        final RecordStore<AgendaItem> legacyTyped = new RecordStore<>(
+                mFolder.newFile("legacy-typed" + RecordStore.FILE_SUFFIX),
+                ItemCodec.create(AgendaItem.class, typed, categories));
+        for (AgendaItem item : corpus) {
+            final byte[] json = reflective.toJson(item).getBytes("UTF-8");
+            legacyReflective.putRaw(item.getId(), json);
+            legacyTyped.putRaw(item.getId(), json);
+        }
+
+        final ExecutorService pool = Executors.newFixedThreadPool(CORES);
+        final File binaryFile = mFolder.newFile("binary" + RecordStore.FILE_SUFFIX);
+        final RecordStore<AgendaItem> binary = new RecordStore<>(binaryFile,
+                ItemCodec.create(AgendaItem.class, typed, categories));
+        binary.putAll(corpus);
+        binary.close();
+        final RecordStore<AgendaItem> binaryPooled = new RecordStore<>(binaryFile,
+                ItemCodec.create(AgendaItem.class, typed, categories), pool, CORES);
+
+        long filesNanos = Long.MAX_VALUE;
+        long reflectiveNanos = Long.MAX_VALUE;
+        long typedNanos = Long.MAX_VALUE;
+        long binaryNanos = Long.MAX_VALUE;
+        long pooledNanos = Long.MAX_VALUE;
+
+        try {
+            // The best of several rounds, so that the JIT has warmed up every path.
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                assertEquals(CORPUS_SIZE, loadFiles(filesDir, reflective).size());
+                filesNanos = Math.min(filesNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                assertEquals(CORPUS_SIZE, legacyReflective.getAll().size());
+                reflectiveNanos = Math.min(reflectiveNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                assertEquals(CORPUS_SIZE, legacyTyped.getAll().size());
+                typedNanos = Math.min(typedNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                assertEquals(CORPUS_SIZE, binary.getAll().size());
+                binaryNanos = Math.min(binaryNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                assertEquals(CORPUS_SIZE, binaryPooled.getAll().size());
+                pooledNanos = Math.min(pooledNanos, System.nanoTime() - start);
+            }
+
+            final AgendaItem expected = corpus.get(CORPUS_SIZE - 1);
+            final AgendaItem actual = legacyTyped.get(expected.getId());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+            assertEquals(expected.getCategory().getName(), actual.getCategory().getName());
+        } finally {
+            legacyReflective.close();
+            legacyTyped.close();
+            binary.close();
+            binaryPooled.close();
+            pool.shutdown();
+        }
+
+        report("files, reflective Gson", filesNanos, filesNanos);
+        report("store, legacy JSON, reflective Gson", filesNanos, reflectiveNanos);
+        report("store, legacy JSON, typed adapters", filesNanos, typedNanos);
+        report("store, binary", filesNanos, binaryNanos);
+        report("store, binary, " + CORES + " workers", filesNanos, pooledNanos);
+    }
+
+    /**
+     * The per-file load stores replaced.
+     */
+    private static List<AgendaItem> loadFiles(File dir, Gson gson) throws Exception {
+        final List<AgendaItem> items = new LinkedList<>();
+        for (File file : dir.listFiles()) {
+            final Reader in = new BufferedReader(new FileReader(file));
+            try {
+                items.add(gson.fromJson(in, AgendaItem.class));
+            } finally {
+                in.close();
+            }
+        }
+        return items;
+    }
+
+    private static void report(String name, long referenceNanos, long nanos) {
+        System.out.println(String.format(java.util.Locale.ROOT,
+                "Cold load of %d agenda items, %s: %d ms (%.1fx)",
+                CORPUS_SIZE, name, nanos / 1000000L, referenceNanos / (double) nanos));
+    }
+}
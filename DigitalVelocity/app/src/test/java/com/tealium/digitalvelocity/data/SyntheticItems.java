@@ -0,0 +1,80 @@
+package com.tealium.digitalvelocity.data;
+
+import com.google.gson.Gson;
+import com.tealium.digitalvelocity.data.gson.AgendaItem;
+import com.tealium.digitalvelocity.data.gson.Category;
+import com.tealium.digitalvelocity.data.gson.Sponsor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark corpora, shaped like the conference tables. Items are built through the JSON layout
+ * stores used to hold, as their public constructors need a server row and org.json is only a
+ * stub off the device.
+ */
+final class SyntheticItems {
+
+    // 2016-09-01, the conference.
+    private static final long EPOCH = 1472688000000L;
+
+    private static final Gson GSON = new Gson();
+
+    private SyntheticItems() {
+    }
+
+    static Map<String, Category> createCategories(int count) {
+        final Map<String, Category> categories = new HashMap<>(count);
+        for (int i = 0; i < count; i++) {
+            final Category category = new Category("category" + i, EPOCH, EPOCH, "Track " + i, i);
+            categories.put(category.getId(), category);
+        }
+        return categories;
+    }
+
+    static List<AgendaItem> createAgenda(int count, Map<String, Category> categories) {
+        final List<AgendaItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> row = createRow("agenda" + i, i);
+            row.put("mTitle", "Session " + i);
+            row.put("mSubtitle", "Speaker " + (i % 97));
+            row.put("mDescription", "A session about customer data, number " + i + ".");
+            row.put("mUrl", "https://example.com/agenda/" + i);
+            row.put("mImageUrl", "https://files.example.com/agenda/" + i + ".png");
+            row.put("mLocationId", "location" + (i % 7));
+            row.put("mRoomName", "Room " + (i % 7));
+            row.put("mStart", EPOCH + 32400000L + i * 60000L);
+            row.put("mEnd", EPOCH + 36000000L + i * 60000L);
+            row.put("mCategory", categories.get("category" + (i % categories.size())));
+            items.add(GSON.fromJson(GSON.toJson(row), AgendaItem.class));
+        }
+        return items;
+    }
+
+    static List<Sponsor> createSponsors(int count, Map<String, Category> categories) {
+        final List<Sponsor> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Map<String, Object> row = createRow("sponsor" + i, i);
+            row.put("name", "Sponsor " + i);
+            row.put("description", "Customer data platforms, number " + i + ".");
+            row.put("url", "https://sponsor" + i + ".example.com");
+            row.put("logoUri", "https://files.example.com/sponsor/" + i + ".png");
+            row.put("email", "demo@sponsor" + i + ".example.com");
+            row.put("emailMessage", "I'm interested in a demo.");
+            row.put("category", categories.get("category" + (i % categories.size())));
+            items.add(GSON.fromJson(GSON.toJson(row), Sponsor.class));
+        }
+        return items;
+    }
+
+    private static Map<String, Object> createRow(String id, int i) {
+        final Map<String, Object> row = new HashMap<>();
+        row.put("mId", id);
+        row.put("mIsVisible", true);
+        row.put("mCreatedAt", EPOCH + i);
+        row.put("mUpdatedAt", EPOCH + i);
+        return row;
+    }
+}
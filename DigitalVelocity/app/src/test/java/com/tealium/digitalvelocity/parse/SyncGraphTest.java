@@ -0,0 +1,140 @@
+package com.tealium.digitalvelocity.parse;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyncGraphTest {
+
+    private static final Executor INLINE = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    @Test
+    public void rowsArePersistedOnlyOnceTheirCategoriesHaveArrived() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final Recorder recorder = new Recorder();
+
+        final SyncGraph graph = new SyncGraph(INLINE, recorder)
+                .add(Table.Category, new FakeFetch(log, "category:1", "category:2"))
+                .add(Table.Event, new FakeFetch(log, "event:1", "event:2"), Table.Category)
+                .add(Table.Location, new FakeFetch(log, "location:1"));
+        graph.start();
+
+        assertTrue(graph.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(
+                "category:1", "category:2", "event:1", "event:2", "location:1"), log);
+        assertEquals(Arrays.asList(
+                "Category ok", "Event ok", "Location ok"), recorder.mFinished);
+    }
+
+    @Test
+    public void failedDependencySkipsItsDependents() throws Exception {
+        final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+        final Recorder recorder = new Recorder();
+
+        final SyncGraph graph = new SyncGraph(INLINE, recorder)
+                .add(Table.Category, new SyncGraph.Task() {
+                    @Override
+                    public void run() throws Exception {
+                        throw new java.io.IOException("offline");
+                    }
+                })
+                .add(Table.Event, new FakeFetch(log, "event:1"), Table.Category)
+                .add(Table.Company, new FakeFetch(log, "company:1"), Table.Category)
+                .add(Table.Survey, new FakeFetch(log, "survey:1"));
+        graph.start();
+
+        assertTrue(graph.await(1, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("survey:1"), log);
+        assertEquals(Arrays.asList(
+                "Category IOException",
+                "Event SkippedException",
+                "Company SkippedException",
+                "Survey ok"), recorder.mFinished);
+    }
+
+    @Test
+    public void independentFetchesRunInParallel() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final CountDownLatch running = new CountDownLatch(3);
+        final Recorder recorder = new Recorder();
+
+        // Each fetch only returns once all three are running at the same time.
+        final SyncGraph.Task rendezvous = new SyncGraph.Task() {
+            @Override
+            public void run() throws Exception {
+                running.countDown();
+                if (!running.await(1, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Ran alone");
+                }
+            }
+        };
+
+        try {
+            final SyncGraph graph = new SyncGraph(executor, recorder)
+                    .add(Table.Survey, rendezvous)
+                    .add(Table.Question, rendezvous)
+                    .add(Table.Contact, rendezvous);
+            graph.start();
+
+            assertTrue(graph.await(2, TimeUnit.SECONDS));
+            assertEquals(3, recorder.mFinished.size());
+            for (String finished : recorder.mFinished) {
+                assertTrue(finished, finished.endsWith(" ok"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dependenciesMustBeAddedFirst() {
+        new SyncGraph(INLINE, new Recorder())
+                .add(Table.Event, new FakeFetch(new ArrayList<String>()), Table.Category);
+    }
+
+    /**
+     * Stands in for a paged fetch, "persisting" one row per page.
+     */
+    private static final class FakeFetch implements SyncGraph.Task {
+        private final List<String> mLog;
+        private final String[] mRows;
+
+        private FakeFetch(List<String> log, String... rows) {
+            mLog = log;
+            mRows = rows;
+        }
+
+        @Override
+        public void run() {
+            mLog.addAll(Arrays.asList(mRows));
+        }
+    }
+
+    private static final class Recorder implements SyncGraph.Listener {
+        private final List<String> mFinished =
+                Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onNodeFinished(Table table, Throwable error, long waitMs, long runMs) {
+            assertTrue(waitMs >= 0 && runMs >= 0);
+            mFinished.add(table.name() + " " +
+                    (error == null ? "ok" : error.getClass().getSimpleName()));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.tealium.digitalvelocity.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CountingInputStreamTest {
+
+    private static final long DELAY_MS = 20;
+
+    @Test
+    public void countsBytesReadAndSkipped() throws Exception {
+        final CountingInputStream in = new CountingInputStream(
+                new ByteArrayInputStream(new byte[100]));
+
+        in.read();
+        in.read(new byte[10], 0, 10);
+        in.skip(20);
+        in.read(new byte[200], 0, 200);
+        assertEquals(-1, in.read());
+
+        assertEquals(100, in.getCount());
+    }
+
+    @Test
+    public void timesOnlyTheWrappedStream() throws Exception {
+        final CountingInputStream in = new CountingInputStream(new InputStream() {
+            private int mRemaining = 3;
+
+            @Override
+            public int read() throws IOException {
+                if (mRemaining == 0) {
+                    return -1;
+                }
+                mRemaining--;
+                sleep(DELAY_MS);
+                return 0;
+            }
+        });
+
+        final long start = System.nanoTime();
+        while (in.read() != -1) {
+            // As long again spent consuming each byte, which must not be counted.
+            sleep(DELAY_MS);
+        }
+        final long totalNanos = System.nanoTime() - start;
+
+        assertTrue(in.getReadNanos() >= 3 * DELAY_MS * 1000000L);
+        assertTrue(in.getReadNanos() < totalNanos - 2 * DELAY_MS * 1000000L);
+    }
+
+    private static void sleep(long ms) throws IOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
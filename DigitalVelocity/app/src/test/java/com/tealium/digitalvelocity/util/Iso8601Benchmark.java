@@ -0,0 +1,103 @@
+package com.tealium.digitalvelocity.util;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Times {@link Iso8601} against the {@link SimpleDateFormat} it replaced, over a corpus shaped
+ * like a sync: every row carries createdAt and updatedAt.
+ */
+public class Iso8601Benchmark {
+
+    private static final int CORPUS_SIZE = 100000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    public void parse() throws Exception {
+        final SimpleDateFormat reference = Iso8601Test.createReference();
+        final String[] corpus = createCorpus(reference);
+
+        long referenceSum = 0;
+        long sum = 0;
+        long referenceNanos = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+
+        // The best of several rounds, so that the JIT has warmed up both.
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            referenceSum = 0;
+            for (String s : corpus) {
+                referenceSum += reference.parse(s).getTime();
+            }
+            referenceNanos = Math.min(referenceNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            sum = 0;
+            for (String s : corpus) {
+                sum += Iso8601.parse(s);
+            }
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+
+        assertEquals(referenceSum, sum);
+        report("parse", referenceNanos, nanos);
+    }
+
+    @Test
+    public void format() throws Exception {
+        final SimpleDateFormat reference = Iso8601Test.createReference();
+        final String[] corpus = createCorpus(reference);
+        final long[] millis = new long[corpus.length];
+        for (int i = 0; i < corpus.length; i++) {
+            millis[i] = Iso8601.parse(corpus[i]);
+        }
+
+        final StringBuilder builder = new StringBuilder(32);
+        long referenceNanos = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        int referenceLength = 0;
+        int length = 0;
+
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            referenceLength = 0;
+            for (long value : millis) {
+                referenceLength += reference.format(value).length();
+            }
+            referenceNanos = Math.min(referenceNanos, System.nanoTime() - start);
+
+            start = System.nanoTime();
+            length = 0;
+            for (long value : millis) {
+                builder.setLength(0);
+                length += Iso8601.format(value, builder).length();
+            }
+            nanos = Math.min(nanos, System.nanoTime() - start);
+        }
+
+        assertEquals(referenceLength, length);
+        report("format", referenceNanos, nanos);
+    }
+
+    private static String[] createCorpus(SimpleDateFormat reference) {
+        final Random random = new Random(2016);
+        final String[] corpus = new String[CORPUS_SIZE];
+        // Around the conference, a year either side of 2016-09-01.
+        final long center = 1472688000000L;
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = reference.format(center + (long) ((random.nextDouble() - 0.5) * 63072000000L));
+        }
+        return corpus;
+    }
+
+    private static void report(String name, long referenceNanos, long nanos) {
+        System.out.println(String.format(java.util.Locale.ROOT,
+                "Iso8601 %s of %d timestamps: SimpleDateFormat %d ms, Iso8601 %d ms (%.1fx)",
+                name, CORPUS_SIZE, referenceNanos / 1000000L, nanos / 1000000L,
+                referenceNanos / (double) nanos));
+    }
+}
@@ -0,0 +1,70 @@
+package com.tealium.digitalvelocity.util;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class Iso8601Test {
+
+    @Test
+    public void agreesWithSimpleDateFormat() throws Exception {
+        final SimpleDateFormat reference = createReference();
+        final Random random = new Random(17);
+
+        for (int i = 0; i < 10000; i++) {
+            // 1900 to 2100.
+            final long millis = -2208988800000L + (long) (random.nextDouble() * 6311433600000L);
+            final String expected = reference.format(millis);
+
+            assertEquals(expected, Iso8601.format(millis));
+            assertEquals(millis, Iso8601.parse(expected));
+        }
+    }
+
+    @Test
+    public void parsesAnyPrecision() {
+        assertEquals(0, Iso8601.parse("1970-01-01T00:00:00Z"));
+        assertEquals(500, Iso8601.parse("1970-01-01T00:00:00.5Z"));
+        assertEquals(123, Iso8601.parse("1970-01-01T00:00:00.123456Z"));
+        assertEquals(951782400000L, Iso8601.parse(new StringBuilder("2000-02-29T00:00:00.000Z")));
+    }
+
+    @Test
+    public void rejectsOtherFormats() {
+        final String[] invalid = {
+                null,
+                "",
+                "2016-03-28",
+                "2016-03-28T21:51:04.169",
+                "2016-03-28T21:51:04.169+01:00",
+                "2016-03-28 21:51:04.169Z",
+                "2016-13-28T21:51:04.169Z",
+                "2015-02-29T21:51:04.169Z",
+                "2016-03-28T24:51:04.169Z",
+                "2016-03-28T21:51:04.Z",
+                "2016-03-28T21:51:04.169Zz",
+                "2016-03-2aT21:51:04.169Z"
+        };
+
+        for (String s : invalid) {
+            assertEquals(s, -1, Iso8601.parse(s, -1));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWithoutDefault() {
+        Iso8601.parse("yesterday");
+    }
+
+    static SimpleDateFormat createReference() {
+        final SimpleDateFormat format =
+                new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
+    }
+}
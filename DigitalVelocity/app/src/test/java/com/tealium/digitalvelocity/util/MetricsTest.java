@@ -0,0 +1,61 @@
+package com.tealium.digitalvelocity.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MetricsTest {
+
+    @Test
+    public void countersAccumulate() {
+        final Metrics metrics = new Metrics();
+        metrics.count("sync.Event.rows", 1000);
+        metrics.count("sync.Event.rows", 12);
+
+        assertEquals(1012, metrics.getCount("sync.Event.rows"));
+        assertEquals(0, metrics.getCount("sync.Company.rows"));
+        assertNull(metrics.getHistogram("sync.Event.rows"));
+    }
+
+    @Test
+    public void percentilesAreBucketUpperBounds() {
+        final Metrics metrics = new Metrics();
+        for (int i = 0; i < 90; i++) {
+            metrics.record("sync.Event.network_ms", 40);
+        }
+        for (int i = 0; i < 10; i++) {
+            metrics.record("sync.Event.network_ms", 700);
+        }
+
+        final Metrics.Histogram histogram = metrics.getHistogram("sync.Event.network_ms");
+        assertEquals(100, histogram.getCount());
+        assertEquals(10600, histogram.getSum());
+        assertEquals(106, histogram.getMean());
+        assertEquals(50, histogram.getPercentile(0.5));
+        assertEquals(50, histogram.getPercentile(0.9));
+        // Never above the largest value actually seen.
+        assertEquals(700, histogram.getPercentile(0.99));
+    }
+
+    @Test
+    public void valuesBeyondTheLastBoundAreKept() {
+        final Metrics metrics = new Metrics();
+        metrics.record("image.download_ms", 120000);
+
+        assertEquals(120000, metrics.getHistogram("image.download_ms").getPercentile(0.5));
+    }
+
+    @Test
+    public void describeListsEveryMetricInNameOrder() {
+        final Metrics metrics = new Metrics();
+        metrics.record("sync.Event.parse_ms", 3);
+        metrics.count("io.Sponsor.saves", 2);
+
+        assertEquals(Arrays.asList(
+                "io.Sponsor.saves: 2",
+                "sync.Event.parse_ms: n=1 avg=3 p50=3 p90=3 p99=3 max=3"), metrics.describe());
+    }
+}
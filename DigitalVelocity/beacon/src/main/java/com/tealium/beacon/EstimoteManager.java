@@ -27,6 +27,13 @@ public final class EstimoteManager {
         return SystemRequirementsHelper.checkAllPermissions(context);
     }
 
+    /**
+     * Same answer as {@link #hasBluetoothLE()}, without having to create the manager first.
+     */
+    public static boolean isBluetoothLeAvailable(Context context) {
+        return SystemRequirementsHelper.isBluetoothLeAvailable(context);
+    }
+
     public static EstimoteManager getInstance() {
         return sInstance;
     }